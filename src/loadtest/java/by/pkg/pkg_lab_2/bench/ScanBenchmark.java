@@ -0,0 +1,106 @@
+package by.pkg.pkg_lab_2.bench;
+
+import by.pkg.pkg_lab_2.service.ByteScan;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+/*
+Сравнение побайтовых циклов, которые раньше были в анализаторах, с ByteScan.
+Данные - direct-буфер без искомых последовательностей, поэтому каждый поиск проходит его целиком,
+как GIF без анимации или длинный хвост JPEG. Для ориентира - сумма long по тому же буферу
+(скорость чтения памяти одним потоком).
+
+./gradlew scanBenchmark -Pbench.sizeMb=256 -Pbench.iterations=10
+*/
+public final class ScanBenchmark {
+    private static volatile long sink;
+
+    private ScanBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int sizeMb = Integer.getInteger("bench.sizeMb", 64);
+        int iterations = Integer.getInteger("bench.iterations", 10);
+
+        ByteBuffer data = ByteBuffer.allocateDirect(sizeMb << 20);
+        Random random = new Random(42);
+        for (int i = 0; i < data.limit(); i++) {
+            // Без 0xFF и 0x21: все поиски до конца буфера
+            int value = random.nextInt(254);
+            data.put(i, (byte) (value >= 0x21 ? value + 1 : value));
+        }
+
+        System.out.printf("Buffer %d MB, best of %d runs%n", sizeMb, iterations);
+        System.out.printf("%-32s %10s %10s%n", "", "MB/s", "ms");
+
+        run("memory read (long sum)", data, iterations, ScanBenchmark::sumLongs);
+        run("0xFF marker: byte loop", data, iterations, ScanBenchmark::scalarIndexOfFF);
+        run("0xFF marker: ByteScan", data, iterations, d -> ByteScan.indexOf(d, 0, d.limit(), (byte) 0xFF));
+        run("0x21 0xF9: byte loop", data, iterations, ScanBenchmark::scalarGifExtension);
+        run("0x21 0xF9: ByteScan", data, iterations, d -> ByteScan.indexOf(d, 0, d.limit(), (byte) 0x21, (byte) 0xF9));
+        run("IHDR: byte loop", data, iterations, ScanBenchmark::scalarIhdr);
+        run("IHDR: ByteScan", data, iterations, d -> ByteScan.indexOf(d, 0, d.limit(), ByteScan.fourCC("IHDR")));
+        run("LE int32: byte assembly", data, iterations, ScanBenchmark::scalarLittleEndianSum);
+        run("LE int32: ByteScan", data, iterations, ScanBenchmark::byteScanLittleEndianSum);
+    }
+
+    private static void run(String name, ByteBuffer data, int iterations, ToLongFunction<ByteBuffer> scan) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < iterations + 3; i++) {
+            long start = System.nanoTime();
+            sink += scan.applyAsLong(data);
+            long elapsed = System.nanoTime() - start;
+            // Первые прогоны - прогрев JIT
+            if (i >= 3) best = Math.min(best, elapsed);
+        }
+        System.out.printf("%-32s %10.0f %10.2f%n", name, data.limit() / 1048576.0 / (best / 1e9), best / 1e6);
+    }
+
+    private static long sumLongs(ByteBuffer data) {
+        long sum = 0;
+        for (int i = 0; i <= data.limit() - 8; i += 8) {
+            sum += data.getLong(i);
+        }
+        return sum;
+    }
+
+    private static long scalarIndexOfFF(ByteBuffer data) {
+        for (int i = 0; i < data.limit(); i++) {
+            if (data.get(i) == (byte) 0xFF) return i;
+        }
+        return -1;
+    }
+
+    private static long scalarGifExtension(ByteBuffer data) {
+        for (int i = 0; i < data.limit() - 1; i++) {
+            if (data.get(i) == 0x21 && data.get(i + 1) == (byte) 0xF9) return i;
+        }
+        return -1;
+    }
+
+    private static long scalarIhdr(ByteBuffer data) {
+        for (int i = 8; i <= data.limit() - 25; i++) {
+            if (data.get(i) == 'I' && data.get(i + 1) == 'H' && data.get(i + 2) == 'D' && data.get(i + 3) == 'R') return i;
+        }
+        return -1;
+    }
+
+    private static long scalarLittleEndianSum(ByteBuffer data) {
+        long sum = 0;
+        for (int i = 0; i + 3 < data.limit(); i += 4) {
+            sum += (data.get(i) & 0xFF) | ((data.get(i + 1) & 0xFF) << 8) |
+                    ((data.get(i + 2) & 0xFF) << 16) | ((data.get(i + 3) & 0xFF) << 24);
+        }
+        return sum;
+    }
+
+    private static long byteScanLittleEndianSum(ByteBuffer data) {
+        long sum = 0;
+        for (int i = 0; i + 3 < data.limit(); i += 4) {
+            sum += ByteScan.s32le(data, i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,36 @@
+package by.pkg.pkg_lab_2.corpus;
+
+public enum ColorMode {
+    GRAY1(1, 1),
+    GRAY8(1, 8),
+    GRAY16(1, 16),
+    INDEXED8(1, 8),
+    RGB24(3, 8),
+    RGBA32(4, 8),
+    RGB48(3, 16);
+
+    final int samplesPerPixel;
+    final int bitsPerSample;
+
+    ColorMode(int samplesPerPixel, int bitsPerSample) {
+        this.samplesPerPixel = samplesPerPixel;
+        this.bitsPerSample = bitsPerSample;
+    }
+
+    int getBitsPerPixel() {
+        return samplesPerPixel * bitsPerSample;
+    }
+
+    // Длина упакованной строки: отсчёты подряд, старшие биты первыми, big endian для 16 бит
+    int getRowBytes(int width) {
+        return (int) (((long) width * getBitsPerPixel() + 7) / 8);
+    }
+
+    boolean isGray() {
+        return this == GRAY1 || this == GRAY8 || this == GRAY16;
+    }
+
+    static ColorMode parse(String value) {
+        return valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,82 @@
+package by.pkg.pkg_lab_2.corpus;
+
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Параметры передаются через -Pcorpus.<имя>=... (см. задачу generateCorpus в build.gradle)
+public record CorpusConfig(Path output, List<String> formats, List<int[]> sizes, List<ColorMode> modes,
+                           List<String> tiffCompressions, List<ByteOrder> tiffByteOrders,
+                           List<String> bmpCompressions, String pngLevel,
+                           String jpegQuality, List<Integer> frames, boolean malformed,
+                           List<Integer> zipEntries, long seed) {
+
+    public static CorpusConfig fromSystemProperties() {
+        return new CorpusConfig(
+                Path.of(System.getProperty("corpus.output", "build/corpus")),
+                list("corpus.formats", "png,jpg,tif,gif,bmp,pcx"),
+                list("corpus.sizes", "64x64,640x480,2048x1536").stream().map(CorpusConfig::parseSize).toList(),
+                list("corpus.modes", "gray8,indexed8,rgb24").stream().map(ColorMode::parse).toList(),
+                list("corpus.tiffCompression", "none,packbits,deflate"),
+                list("corpus.tiffByteOrder", "le,be").stream().map(CorpusConfig::parseByteOrder).toList(),
+                list("corpus.bmpCompression", "none,rle8"),
+                System.getProperty("corpus.pngLevel", "6"),
+                System.getProperty("corpus.jpegQuality", "85"),
+                list("corpus.frames", "1,8").stream().map(Integer::parseInt).toList(),
+                Boolean.parseBoolean(System.getProperty("corpus.malformed", "true")),
+                list("corpus.zipEntries", "100").stream().map(Integer::parseInt).filter(n -> n > 0).toList(),
+                Long.getLong("corpus.seed", 42));
+    }
+
+    // Все поддерживаемые сочетания формата, размера, цветового режима, сжатия, порядка байт и числа кадров
+    public List<ImageSpec> getSpecs() {
+        List<ImageSpec> specs = new ArrayList<>();
+        for (String format : formats) {
+            for (int[] size : sizes) {
+                for (ColorMode mode : modes) {
+                    for (String compression : getCompressions(format)) {
+                        for (int frameCount : format.equals("gif") ? frames : List.of(1)) {
+                            for (ByteOrder byteOrder : format.equals("tif") ? tiffByteOrders : List.of(ByteOrder.LITTLE_ENDIAN)) {
+                                ImageSpec spec = new ImageSpec(format, size[0], size[1], mode, compression, frameCount, seed, byteOrder);
+                                if (SyntheticImageWriter.isSupported(spec)) {
+                                    specs.add(spec);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return specs;
+    }
+
+    private List<String> getCompressions(String format) {
+        return switch (format) {
+            case "tif" -> tiffCompressions;
+            case "bmp" -> bmpCompressions;
+            case "png" -> List.of(pngLevel);
+            case "jpg" -> List.of(jpegQuality);
+            default -> List.of("");
+        };
+    }
+
+    private static int[] parseSize(String value) {
+        String[] parts = value.trim().toLowerCase().split("x");
+        return new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+    }
+
+    private static ByteOrder parseByteOrder(String value) {
+        return switch (value.trim().toLowerCase()) {
+            case "le", "ii" -> ByteOrder.LITTLE_ENDIAN;
+            case "be", "mm" -> ByteOrder.BIG_ENDIAN;
+            default -> throw new IllegalArgumentException("Unknown byte order: " + value);
+        };
+    }
+
+    private static List<String> list(String property, String defaultValue) {
+        String value = System.getProperty(property, defaultValue);
+        return Arrays.stream(value.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+}
@@ -0,0 +1,109 @@
+package by.pkg.pkg_lab_2.corpus;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/*
+Детерминированный синтетический корпус изображений:
+<output>/images     - корректные файлы всех сочетаний из CorpusConfig
+<output>/malformed  - повреждённые варианты изображений наименьшего размера
+<output>/zip_N.zip  - архивы из N записей, файлы из images/ по кругу
+<output>/manifest.csv
+Один и тот же набор параметров и seed всегда даёт побайтно одинаковые файлы.
+*/
+public final class CorpusGenerator {
+
+    public record Entry(Path path, String format, int width, int height, String mode,
+                        String variant, int frames, long size) {
+    }
+
+    private CorpusGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        CorpusConfig config = CorpusConfig.fromSystemProperties();
+        long start = System.nanoTime();
+        List<Entry> entries = generate(config);
+
+        long bytes = entries.stream().mapToLong(Entry::size).sum();
+        System.out.printf("Generated %d files (%.1f MB) in %s in %.1f s%n", entries.size(), bytes / 1048576.0,
+                config.output().toAbsolutePath(), (System.nanoTime() - start) / 1e9);
+    }
+
+    public static List<Entry> generate(CorpusConfig config) throws IOException {
+        Path imagesDir = Files.createDirectories(config.output().resolve("images"));
+        Path malformedDir = Files.createDirectories(config.output().resolve("malformed"));
+        List<Entry> entries = new ArrayList<>();
+        List<Entry> valid = new ArrayList<>();
+
+        long smallest = config.sizes().stream().mapToLong(s -> (long) s[0] * s[1]).min().orElse(0);
+        for (ImageSpec spec : config.getSpecs()) {
+            Path path = imagesDir.resolve(spec.getFileName());
+            SyntheticImageWriter.write(spec, path);
+            Entry entry = new Entry(path, spec.format(), spec.width(), spec.height(), spec.mode().name().toLowerCase(),
+                    "valid", spec.frames(), Files.size(path));
+            entries.add(entry);
+            valid.add(entry);
+
+            if (config.malformed() && (long) spec.width() * spec.height() == smallest) {
+                byte[] data = Files.readAllBytes(path);
+                for (Map.Entry<String, byte[]> variant : MalformedVariants.create(spec.getFileName(), spec.format(), data, config.seed()).entrySet()) {
+                    Path variantPath = malformedDir.resolve(variant.getKey());
+                    Files.write(variantPath, variant.getValue());
+                    String name = variant.getKey();
+                    entries.add(new Entry(variantPath, spec.format(), spec.width(), spec.height(), entry.mode(),
+                            name.substring(name.lastIndexOf('_') + 1, name.lastIndexOf('.')), spec.frames(), variant.getValue().length));
+                }
+            }
+        }
+
+        if (config.malformed()) {
+            Path empty = malformedDir.resolve("empty.png");
+            Files.write(empty, new byte[0]);
+            entries.add(new Entry(empty, "png", 0, 0, "", "empty", 0, 0));
+        }
+
+        for (int count : config.zipEntries()) {
+            if (valid.isEmpty()) break;
+            Path zip = config.output().resolve("zip_" + count + ".zip");
+            writeZip(zip, valid, count);
+            entries.add(new Entry(zip, "zip", 0, 0, "", "archive", count, Files.size(zip)));
+        }
+
+        writeManifest(config.output().resolve("manifest.csv"), config.output(), entries);
+        return entries;
+    }
+
+    private static void writeZip(Path zip, List<Entry> files, int count) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(zip), 1 << 16))) {
+            for (int i = 0; i < count; i++) {
+                Entry file = files.get(i % files.size());
+                ZipEntry zipEntry = new ZipEntry(String.format("%06d_%s", i, file.path().getFileName()));
+                // Фиксированное время, чтобы архив не зависел от момента генерации
+                zipEntry.setTime(0);
+                zos.putNextEntry(zipEntry);
+                Files.copy(file.path(), zos);
+                zos.closeEntry();
+            }
+        }
+    }
+
+    private static void writeManifest(Path manifest, Path root, List<Entry> entries) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(manifest, StandardCharsets.UTF_8))) {
+            writer.println("path,format,width,height,mode,variant,frames,bytes");
+            for (Entry entry : entries) {
+                writer.printf("%s,%s,%d,%d,%s,%s,%d,%d%n", root.relativize(entry.path()).toString().replace('\\', '/'),
+                        entry.format(), entry.width(), entry.height(), entry.mode(), entry.variant(), entry.frames(), entry.size());
+            }
+        }
+    }
+}
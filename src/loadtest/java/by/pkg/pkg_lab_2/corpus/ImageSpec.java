@@ -0,0 +1,31 @@
+package by.pkg.pkg_lab_2.corpus;
+
+import java.nio.ByteOrder;
+
+// compression: для TIFF - none/packbits/deflate, для BMP - none/rle8, для PNG - уровень 0..9, для JPEG - качество 1..100
+// byteOrder: порядок байт TIFF, остальные форматы его не выбирают
+public record ImageSpec(String format, int width, int height, ColorMode mode,
+                        String compression, int frames, long seed, ByteOrder byteOrder) {
+
+    public ImageSpec(String format, int width, int height, ColorMode mode, String compression, int frames, long seed) {
+        this(format, width, height, mode, compression, frames, seed, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public String getFileName() {
+        StringBuilder name = new StringBuilder()
+                .append(format).append('_').append(width).append('x').append(height)
+                .append('_').append(mode.name().toLowerCase());
+        if (compression != null && !compression.isEmpty()) {
+            // Уровень zlib для PNG и качество для JPEG - числа, поэтому с префиксом
+            String prefix = format.equals("png") ? "z" : format.equals("jpg") ? "q" : "";
+            name.append('_').append(prefix).append(compression);
+        }
+        if (format.equals("tif") && byteOrder == ByteOrder.BIG_ENDIAN) {
+            name.append("_be");
+        }
+        if (frames > 1) {
+            name.append("_f").append(frames);
+        }
+        return name.append('.').append(format).toString();
+    }
+}
@@ -0,0 +1,92 @@
+package by.pkg.pkg_lab_2.corpus;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/*
+Повреждённые варианты корректного файла:
+- truncated  - обрезан на середине данных
+- header     - испорчены первые 16 байт (сигнатура и начало заголовка)
+- bitflip    - 16 случайных байт после заголовка инвертированы
+- mislabeled - корректные данные с чужим расширением
+- huge       - заголовок объявляет 100000 x 100000 пикселей (PNG с пересчитанной CRC, BMP, GIF)
+*/
+public final class MalformedVariants {
+    static final int HUGE_DIMENSION = 100_000;
+
+    private MalformedVariants() {
+    }
+
+    // Ключ - имя файла варианта
+    public static Map<String, byte[]> create(String fileName, String format, byte[] valid, long seed) {
+        String base = fileName.substring(0, fileName.lastIndexOf('.'));
+        Map<String, byte[]> variants = new LinkedHashMap<>();
+
+        variants.put(base + "_truncated." + format, Arrays.copyOf(valid, valid.length / 2));
+
+        byte[] header = valid.clone();
+        for (int i = 0; i < Math.min(16, header.length); i++) {
+            header[i] ^= 0x5A;
+        }
+        variants.put(base + "_header." + format, header);
+
+        byte[] flipped = valid.clone();
+        Random random = new Random(seed ^ fileName.hashCode());
+        int bodyStart = Math.min(flipped.length, 128);
+        for (int i = 0; i < 16 && flipped.length > bodyStart; i++) {
+            int position = bodyStart + random.nextInt(flipped.length - bodyStart);
+            flipped[position] = (byte) ~flipped[position];
+        }
+        variants.put(base + "_bitflip." + format, flipped);
+
+        variants.put(base + "_mislabeled." + (format.equals("jpg") ? "png" : "jpg"), valid);
+
+        byte[] huge = declareHugeDimensions(format, valid);
+        if (huge != null) {
+            variants.put(base + "_huge." + format, huge);
+        }
+        return variants;
+    }
+
+    private static byte[] declareHugeDimensions(String format, byte[] valid) {
+        byte[] data = valid.clone();
+        switch (format) {
+            case "png" -> {
+                // IHDR всегда первый: длина(4) тип(4) width(4) height(4) ... crc(4)
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                buffer.putInt(16, HUGE_DIMENSION).putInt(20, HUGE_DIMENSION);
+                CRC32 crc = new CRC32();
+                crc.update(data, 12, 17);
+                buffer.putInt(29, (int) crc.getValue());
+            }
+            case "bmp" -> ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(18, HUGE_DIMENSION).putInt(22, HUGE_DIMENSION);
+            case "gif" -> {
+                // Логический экран и первый дескриптор изображения ограничены 16 битами
+                ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putShort(6, (short) 0xFFFF).putShort(8, (short) 0xFFFF);
+
+                // Пропуск глобальной палитры и блоков расширений до дескриптора 0x2C
+                int i = 13;
+                if ((data[10] & 0x80) != 0) i += 3 << ((data[10] & 0x07) + 1);
+                while (i < data.length && data[i] == 0x21) {
+                    i += 2;
+                    while (i < data.length && data[i] != 0) i += (data[i] & 0xFF) + 1;
+                    i++;
+                }
+                if (i + 9 <= data.length && data[i] == 0x2C) {
+                    buffer.putShort(i + 5, (short) 0xFFFF).putShort(i + 7, (short) 0xFFFF);
+                }
+            }
+            default -> {
+                return null;
+            }
+        }
+        return data;
+    }
+}
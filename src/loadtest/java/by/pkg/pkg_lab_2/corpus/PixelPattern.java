@@ -0,0 +1,109 @@
+package by.pkg.pkg_lab_2.corpus;
+
+import java.util.Arrays;
+
+/*
+Детерминированное содержимое изображения: градиенты, XOR-узор, сдвигающийся от кадра к кадру,
+и псевдослучайный шум от (x, y, seed). Любая строка вычисляется независимо, поэтому большие
+изображения можно записывать построчно, не держа их в памяти.
+*/
+final class PixelPattern {
+    private final int width;
+    private final int height;
+    private final long seed;
+
+    PixelPattern(int width, int height, long seed) {
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+    }
+
+    // RGBA, 16 бит на канал
+    void rgba16(int y, int frame, int[] out) {
+        int shift = frame * 16;
+        for (int x = 0; x < width; x++) {
+            int noise = (int) (mix(seed ^ ((long) x << 32) ^ y) & 0x1FFF);
+            int r = (int) ((long) x * 0xFFFF / Math.max(1, width - 1));
+            int g = (int) ((long) y * 0xFFFF / Math.max(1, height - 1));
+            int b = ((((x + shift) ^ y) & 0xFF) << 8) ^ noise;
+            int a = 0xFFFF - (int) ((long) (x + y) * 0xFFFF / Math.max(1, width + height - 2));
+
+            int i = x * 4;
+            out[i] = Math.min(0xFFFF, r ^ noise);
+            out[i + 1] = Math.min(0xFFFF, g ^ (noise >> 1));
+            out[i + 2] = b & 0xFFFF;
+            out[i + 3] = a;
+        }
+    }
+
+    // Упакованная строка в порядке RGB(A), старшие биты первыми, 16-битные отсчёты big endian
+    void packRow(int y, int frame, ColorMode mode, int[] rgba, byte[] out) {
+        rgba16(y, frame, rgba);
+        Arrays.fill(out, (byte) 0);
+
+        for (int x = 0; x < width; x++) {
+            int i = x * 4;
+            int r = rgba[i], g = rgba[i + 1], b = rgba[i + 2], a = rgba[i + 3];
+            switch (mode) {
+                case GRAY1 -> {
+                    if (luminance(r, g, b) >= 0x8000) out[x >> 3] |= (byte) (0x80 >> (x & 7));
+                }
+                case GRAY8 -> out[x] = (byte) (luminance(r, g, b) >> 8);
+                case GRAY16 -> {
+                    int l = luminance(r, g, b);
+                    out[x * 2] = (byte) (l >> 8);
+                    out[x * 2 + 1] = (byte) l;
+                }
+                case INDEXED8 -> out[x] = (byte) paletteIndex(r, g, b);
+                case RGB24 -> {
+                    out[x * 3] = (byte) (r >> 8);
+                    out[x * 3 + 1] = (byte) (g >> 8);
+                    out[x * 3 + 2] = (byte) (b >> 8);
+                }
+                case RGBA32 -> {
+                    out[x * 4] = (byte) (r >> 8);
+                    out[x * 4 + 1] = (byte) (g >> 8);
+                    out[x * 4 + 2] = (byte) (b >> 8);
+                    out[x * 4 + 3] = (byte) (a >> 8);
+                }
+                case RGB48 -> {
+                    out[x * 6] = (byte) (r >> 8);
+                    out[x * 6 + 1] = (byte) r;
+                    out[x * 6 + 2] = (byte) (g >> 8);
+                    out[x * 6 + 3] = (byte) g;
+                    out[x * 6 + 4] = (byte) (b >> 8);
+                    out[x * 6 + 5] = (byte) b;
+                }
+            }
+        }
+    }
+
+    // Палитра 3-3-2: 8 уровней красного, 8 зелёного, 4 синего
+    static int paletteIndex(int r16, int g16, int b16) {
+        return ((r16 >> 13) << 5) | ((g16 >> 13) << 2) | (b16 >> 14);
+    }
+
+    static byte[][] palette(ColorMode mode) {
+        byte[][] palette = new byte[3][256];
+        for (int i = 0; i < 256; i++) {
+            if (mode == ColorMode.INDEXED8) {
+                palette[0][i] = (byte) ((i >> 5) * 255 / 7);
+                palette[1][i] = (byte) (((i >> 2) & 7) * 255 / 7);
+                palette[2][i] = (byte) ((i & 3) * 255 / 3);
+            } else {
+                palette[0][i] = palette[1][i] = palette[2][i] = (byte) (mode == ColorMode.GRAY1 ? (i == 0 ? 0 : 255) : i);
+            }
+        }
+        return palette;
+    }
+
+    private static int luminance(int r, int g, int b) {
+        return (r * 299 + g * 587 + b * 114) / 1000;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,686 @@
+package by.pkg.pkg_lab_2.corpus;
+
+import org.w3c.dom.Node;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/*
+PNG, TIFF, BMP и PCX пишутся построчно собственными кодировщиками, поэтому размер
+изображения ограничен только диском. TIFF и BMP дописывают заголовок после данных
+(смещения полос и размер RLE заранее неизвестны), для этого используется FileChannel.
+JPEG и GIF кодируются через ImageIO из изображения в памяти, отсюда ограничение MAX_IN_MEMORY_PIXELS.
+*/
+public final class SyntheticImageWriter {
+    public static final long MAX_IN_MEMORY_PIXELS = 100_000_000L;
+
+    private static final int PNG_IDAT_SIZE = 64 * 1024;
+    private static final int TIFF_STRIP_BYTES = 64 * 1024;
+
+    private SyntheticImageWriter() {
+    }
+
+    public static Set<ColorMode> getSupportedModes(String format) {
+        return switch (format) {
+            case "png", "tif" -> Set.of(ColorMode.values());
+            case "bmp" -> Set.of(ColorMode.GRAY1, ColorMode.GRAY8, ColorMode.INDEXED8, ColorMode.RGB24, ColorMode.RGBA32);
+            case "pcx" -> Set.of(ColorMode.GRAY1, ColorMode.GRAY8, ColorMode.INDEXED8, ColorMode.RGB24);
+            case "gif" -> Set.of(ColorMode.GRAY8, ColorMode.INDEXED8);
+            case "jpg" -> Set.of(ColorMode.GRAY8, ColorMode.RGB24);
+            default -> throw new IllegalArgumentException("Unsupported format: " + format);
+        };
+    }
+
+    public static boolean isSupported(ImageSpec spec) {
+        if (!getSupportedModes(spec.format()).contains(spec.mode())) return false;
+        if (spec.frames() > 1 && !spec.format().equals("gif")) return false;
+        if (spec.format().equals("bmp") && "rle8".equals(spec.compression()) && spec.mode().getBitsPerPixel() != 8) return false;
+        if (spec.format().equals("pcx") && (spec.width() > 0xFFFF || spec.height() > 0xFFFF)) return false;
+        if (spec.format().equals("gif") && (spec.width() > 0xFFFF || spec.height() > 0xFFFF)) return false;
+        boolean inMemory = spec.format().equals("jpg") || spec.format().equals("gif");
+        return !inMemory || (long) spec.width() * spec.height() * Math.max(1, spec.frames()) <= MAX_IN_MEMORY_PIXELS;
+    }
+
+    public static void write(ImageSpec spec, Path target) throws IOException {
+        if (!isSupported(spec)) {
+            throw new IllegalArgumentException("Unsupported image spec: " + spec);
+        }
+        PixelPattern pattern = new PixelPattern(spec.width(), spec.height(), spec.seed());
+        switch (spec.format()) {
+            case "png" -> {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target), 1 << 16)) {
+                    writePng(spec, pattern, out);
+                }
+            }
+            case "tif" -> {
+                try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    writeTiff(spec, pattern, channel);
+                }
+            }
+            case "bmp" -> {
+                try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    writeBmp(spec, pattern, channel);
+                }
+            }
+            case "pcx" -> {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target), 1 << 16)) {
+                    writePcx(spec, pattern, out);
+                }
+            }
+            case "gif" -> writeGif(spec, pattern, target);
+            case "jpg" -> writeJpeg(spec, pattern, target);
+            default -> throw new IllegalArgumentException("Unsupported format: " + spec.format());
+        }
+    }
+
+    /* ---------------- PNG ---------------- */
+
+    private static void writePng(ImageSpec spec, PixelPattern pattern, OutputStream out) throws IOException {
+        ColorMode mode = spec.mode();
+        out.write(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+
+        int colorType = switch (mode) {
+            case GRAY1, GRAY8, GRAY16 -> 0;
+            case INDEXED8 -> 3;
+            case RGB24, RGB48 -> 2;
+            case RGBA32 -> 6;
+        };
+        ByteBuffer ihdr = ByteBuffer.allocate(13)
+                .putInt(spec.width()).putInt(spec.height())
+                .put((byte) mode.bitsPerSample).put((byte) colorType)
+                .put((byte) 0).put((byte) 0).put((byte) 0);
+        writePngChunk(out, "IHDR", ihdr.array(), 13);
+
+        if (mode == ColorMode.INDEXED8) {
+            byte[][] palette = PixelPattern.palette(mode);
+            byte[] plte = new byte[768];
+            for (int i = 0; i < 256; i++) {
+                plte[i * 3] = palette[0][i];
+                plte[i * 3 + 1] = palette[1][i];
+                plte[i * 3 + 2] = palette[2][i];
+            }
+            writePngChunk(out, "PLTE", plte, plte.length);
+        }
+
+        int level = spec.compression() == null || spec.compression().isEmpty()
+                ? Deflater.DEFAULT_COMPRESSION : Integer.parseInt(spec.compression());
+        Deflater deflater = new Deflater(level);
+        try (IdatOutputStream idat = new IdatOutputStream(out);
+             DeflaterOutputStream zlib = new DeflaterOutputStream(idat, deflater, 1 << 16)) {
+            int[] rgba = new int[spec.width() * 4];
+            byte[] row = new byte[mode.getRowBytes(spec.width())];
+            for (int y = 0; y < spec.height(); y++) {
+                pattern.packRow(y, 0, mode, rgba, row);
+                zlib.write(0); // фильтр None
+                zlib.write(row);
+            }
+        } finally {
+            deflater.end();
+        }
+        writePngChunk(out, "IEND", new byte[0], 0);
+    }
+
+    static void writePngChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        DataOutputStream dos = new DataOutputStream(out);
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        dos.writeInt(length);
+        dos.write(typeBytes);
+        dos.write(data, 0, length);
+        dos.writeInt((int) crc.getValue());
+    }
+
+    // Режет сжатый поток на чанки IDAT, не закрывая исходный поток
+    private static class IdatOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[PNG_IDAT_SIZE];
+        private int count;
+
+        IdatOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) flushChunk();
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) flushChunk();
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (count > 0) {
+                writePngChunk(out, "IDAT", buffer, count);
+                count = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+        }
+    }
+
+    /* ---------------- TIFF ----------------
+
+    Заголовок "II" или "MM" (spec.byteOrder()), 42, offset IFD (дописывается в конце) -> полосы -> массивы смещений и длин
+    полос, значения BitsPerSample, разрешения и палитра -> IFD. Сжатие: none (1), packbits (32773),
+    deflate (8, zlib поток на полосу).
+    */
+
+    private static void writeTiff(ImageSpec spec, PixelPattern pattern, FileChannel channel) throws IOException {
+        ColorMode mode = spec.mode();
+        String compression = spec.compression() == null || spec.compression().isEmpty() ? "none" : spec.compression();
+        int compressionTag = switch (compression) {
+            case "none" -> 1;
+            case "packbits" -> 32773;
+            case "deflate" -> 8;
+            default -> throw new IllegalArgumentException("Unsupported TIFF compression: " + compression);
+        };
+
+        int rowBytes = mode.getRowBytes(spec.width());
+        int rowsPerStrip = Math.max(1, Math.min(spec.height(), TIFF_STRIP_BYTES / Math.max(1, rowBytes)));
+        int strips = (spec.height() + rowsPerStrip - 1) / rowsPerStrip;
+        long[] stripOffsets = new long[strips];
+        long[] stripLengths = new long[strips];
+
+        ByteOrder order = spec.byteOrder();
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+        byte marker = order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M';
+        out.write(ByteBuffer.allocate(8).order(order).put(marker).put(marker).putShort((short) 42).array());
+        long position = 8;
+
+        int[] rgba = new int[spec.width() * 4];
+        byte[] row = new byte[rowBytes];
+        ByteArrayOutputStream strip = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater();
+        try {
+            for (int s = 0; s < strips; s++) {
+                strip.reset();
+                OutputStream stripOut = strip;
+                DeflaterOutputStream zlib = null;
+                if (compressionTag == 8) {
+                    deflater.reset();
+                    zlib = new DeflaterOutputStream(strip, deflater, 1 << 16);
+                    stripOut = zlib;
+                }
+                int fromRow = s * rowsPerStrip;
+                int toRow = Math.min(spec.height(), fromRow + rowsPerStrip);
+                for (int y = fromRow; y < toRow; y++) {
+                    pattern.packRow(y, 0, mode, rgba, row);
+                    if (mode.bitsPerSample == 16 && order == ByteOrder.LITTLE_ENDIAN) {
+                        swapBytes(row);
+                    }
+                    if (compressionTag == 32773) {
+                        packBits(row, stripOut);
+                    } else {
+                        stripOut.write(row);
+                    }
+                }
+                if (zlib != null) zlib.finish();
+
+                stripOffsets[s] = position;
+                stripLengths[s] = strip.size();
+                strip.writeTo(out);
+                position += strip.size();
+                if ((position & 1) != 0) {
+                    out.write(0); // значения в TIFF выравниваются по словам
+                    position++;
+                }
+                if (position > 0xFFFFFFFFL) {
+                    throw new IOException("TIFF exceeds 4 GB, use BigTIFF-capable tooling for such sizes");
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+
+        TiffIfd ifd = new TiffIfd(order);
+        ifd.addLong(256, spec.width());
+        ifd.addLong(257, spec.height());
+        int[] bits = new int[mode.samplesPerPixel];
+        Arrays.fill(bits, mode.bitsPerSample);
+        ifd.addShorts(258, bits);
+        ifd.addShorts(259, compressionTag);
+        ifd.addShorts(262, switch (mode) {
+            case GRAY1, GRAY8, GRAY16 -> 1;
+            case INDEXED8 -> 3;
+            default -> 2;
+        });
+        ifd.addLongs(273, stripOffsets);
+        ifd.addShorts(277, mode.samplesPerPixel);
+        ifd.addLong(278, rowsPerStrip);
+        ifd.addLongs(279, stripLengths);
+        ifd.addRational(282, 72, 1);
+        ifd.addRational(283, 72, 1);
+        ifd.addShorts(296, 2);
+        if (mode == ColorMode.INDEXED8) {
+            byte[][] palette = PixelPattern.palette(mode);
+            int[] colorMap = new int[768];
+            for (int i = 0; i < 256; i++) {
+                colorMap[i] = (palette[0][i] & 0xFF) * 257;
+                colorMap[256 + i] = (palette[1][i] & 0xFF) * 257;
+                colorMap[512 + i] = (palette[2][i] & 0xFF) * 257;
+            }
+            ifd.addShorts(320, colorMap);
+        }
+        if (mode == ColorMode.RGBA32) {
+            ifd.addShorts(338, 2); // несвязанная альфа
+        }
+
+        long ifdOffset = ifd.write(out, position);
+        out.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(4).order(order).putInt((int) ifdOffset).flip();
+        channel.write(header, 4);
+    }
+
+    // 16-битные отсчёты упакованы в big endian, в little endian файле байты меняются местами
+    private static void swapBytes(byte[] row) {
+        for (int i = 0; i + 1 < row.length; i += 2) {
+            byte b = row[i];
+            row[i] = row[i + 1];
+            row[i + 1] = b;
+        }
+    }
+
+    // Каждая строка пакуется отдельно, как требует спецификация TIFF
+    private static void packBits(byte[] row, OutputStream out) throws IOException {
+        int i = 0;
+        while (i < row.length) {
+            int run = 1;
+            while (i + run < row.length && run < 128 && row[i + run] == row[i]) run++;
+
+            if (run > 1) {
+                out.write(-(run - 1));
+                out.write(row[i]);
+                i += run;
+                continue;
+            }
+
+            int literal = 1;
+            while (i + literal < row.length && literal < 128 &&
+                    !(i + literal + 1 < row.length && row[i + literal] == row[i + literal + 1])) {
+                literal++;
+            }
+            out.write(literal - 1);
+            out.write(row, i, literal);
+            i += literal;
+        }
+    }
+
+    private static class TiffIfd {
+        private final List<long[]> entries = new ArrayList<>(); // tag, type, count, index значений
+        private final List<Object> values = new ArrayList<>();
+        private final ByteOrder order;
+
+        TiffIfd(ByteOrder order) {
+            this.order = order;
+        }
+
+        void addShorts(int tag, int... shorts) {
+            entries.add(new long[] {tag, 3, shorts.length, values.size()});
+            values.add(shorts);
+        }
+
+        void addLong(int tag, long value) {
+            addLongs(tag, new long[] {value});
+        }
+
+        void addLongs(int tag, long[] longs) {
+            entries.add(new long[] {tag, 4, longs.length, values.size()});
+            values.add(longs);
+        }
+
+        void addRational(int tag, long numerator, long denominator) {
+            entries.add(new long[] {tag, 5, 1, values.size()});
+            values.add(new long[] {numerator, denominator});
+        }
+
+        // Пишет внешние значения, затем сам IFD; возвращает его смещение
+        long write(OutputStream out, long position) throws IOException {
+            entries.sort(Comparator.comparingLong(e -> e[0]));
+
+            long[] valueOffsets = new long[entries.size()];
+            for (int e = 0; e < entries.size(); e++) {
+                byte[] data = encode(entries.get(e));
+                if (data.length > 4) {
+                    valueOffsets[e] = position;
+                    out.write(data);
+                    position += data.length;
+                    if ((position & 1) != 0) {
+                        out.write(0);
+                        position++;
+                    }
+                }
+            }
+
+            ByteBuffer ifd = ByteBuffer.allocate(2 + entries.size() * 12 + 4).order(order);
+            ifd.putShort((short) entries.size());
+            for (int e = 0; e < entries.size(); e++) {
+                long[] entry = entries.get(e);
+                ifd.putShort((short) entry[0]).putShort((short) entry[1]).putInt((int) entry[2]);
+                byte[] data = encode(entry);
+                if (data.length > 4) {
+                    ifd.putInt((int) valueOffsets[e]);
+                } else {
+                    ifd.put(data).put(new byte[4 - data.length]);
+                }
+            }
+            ifd.putInt(0);
+            out.write(ifd.array());
+            return position;
+        }
+
+        private byte[] encode(long[] entry) {
+            Object value = values.get((int) entry[3]);
+            ByteBuffer buffer;
+            if (value instanceof int[] shorts) {
+                buffer = ByteBuffer.allocate(shorts.length * 2).order(order);
+                for (int s : shorts) buffer.putShort((short) s);
+            } else {
+                long[] longs = (long[]) value;
+                buffer = ByteBuffer.allocate(longs.length * 4).order(order);
+                for (long l : longs) buffer.putInt((int) l);
+            }
+            return buffer.array();
+        }
+    }
+
+    /* ---------------- BMP ----------------
+
+    BITMAPFILEHEADER (14) + BITMAPINFOHEADER (40) + палитра для 1 и 8 бит, строки снизу вверх,
+    выровнены по 4 байтам. RLE8 кодирует строки повторами (count, value) и завершается 00 01.
+    */
+
+    private static void writeBmp(ImageSpec spec, PixelPattern pattern, FileChannel channel) throws IOException {
+        ColorMode mode = spec.mode();
+        boolean rle = "rle8".equals(spec.compression());
+        int bitCount = switch (mode) {
+            case GRAY1 -> 1;
+            case GRAY8, INDEXED8 -> 8;
+            case RGB24 -> 24;
+            case RGBA32 -> 32;
+            default -> throw new IllegalArgumentException("Unsupported BMP mode: " + mode);
+        };
+        int paletteSize = bitCount <= 8 ? 1 << bitCount : 0;
+        int dataOffset = 14 + 40 + paletteSize * 4;
+        int sourceRowBytes = mode.getRowBytes(spec.width());
+        int stride = (sourceRowBytes + 3) & ~3;
+
+        ByteBuffer header = ByteBuffer.allocate(dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 'B').put((byte) 'M').putInt(0).putInt(0).putInt(dataOffset);
+        header.putInt(40).putInt(spec.width()).putInt(spec.height())
+                .putShort((short) 1).putShort((short) bitCount)
+                .putInt(rle ? 1 : 0).putInt(0)
+                .putInt(2835).putInt(2835) // 72 dpi
+                .putInt(paletteSize).putInt(0);
+        if (paletteSize > 0) {
+            byte[][] palette = PixelPattern.palette(mode);
+            for (int i = 0; i < paletteSize; i++) {
+                header.put(palette[2][i]).put(palette[1][i]).put(palette[0][i]).put((byte) 0);
+            }
+        }
+        header.flip();
+        channel.write(header);
+
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+        int[] rgba = new int[spec.width() * 4];
+        byte[] row = new byte[sourceRowBytes];
+        byte[] padded = new byte[stride];
+        long imageSize = 0;
+        for (int y = spec.height() - 1; y >= 0; y--) {
+            pattern.packRow(y, 0, mode, rgba, row);
+            if (rle) {
+                imageSize += rle8(row, out);
+                continue;
+            }
+            if (bitCount >= 24) {
+                int bytesPerPixel = bitCount / 8;
+                for (int x = 0; x < spec.width(); x++) {
+                    int i = x * bytesPerPixel;
+                    padded[i] = row[i + 2];
+                    padded[i + 1] = row[i + 1];
+                    padded[i + 2] = row[i];
+                    if (bytesPerPixel == 4) padded[i + 3] = row[i + 3];
+                }
+            } else {
+                System.arraycopy(row, 0, padded, 0, row.length);
+            }
+            out.write(padded);
+            imageSize += stride;
+        }
+        if (rle) {
+            out.write(0);
+            out.write(1);
+            imageSize += 2;
+        }
+        out.flush();
+
+        ByteBuffer sizes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        channel.write(sizes.putInt(0, (int) (dataOffset + imageSize)), 2);
+        channel.write(sizes.clear().putInt(0, (int) imageSize), 34);
+    }
+
+    private static int rle8(byte[] row, OutputStream out) throws IOException {
+        int written = 0;
+        int i = 0;
+        while (i < row.length) {
+            int run = 1;
+            while (i + run < row.length && run < 255 && row[i + run] == row[i]) run++;
+            out.write(run);
+            out.write(row[i]);
+            written += 2;
+            i += run;
+        }
+        out.write(0);
+        out.write(0);
+        return written + 2;
+    }
+
+    /* ---------------- PCX ----------------
+
+    Заголовок 128 байт, RLE по строкам (все плоскости строки подряд): байт >= 0xC0 задаёт
+    повтор (младшие 6 бит) следующего байта. 8-битные изображения завершаются 0x0C и палитрой 768 байт.
+    */
+
+    private static void writePcx(ImageSpec spec, PixelPattern pattern, OutputStream out) throws IOException {
+        ColorMode mode = spec.mode();
+        int planes = mode == ColorMode.RGB24 ? 3 : 1;
+        int bitsPerPixel = mode == ColorMode.GRAY1 ? 1 : 8;
+        int bytesPerLine = ((spec.width() * bitsPerPixel + 7) / 8 + 1) & ~1;
+
+        ByteBuffer header = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 10).put((byte) 5).put((byte) 1).put((byte) bitsPerPixel)
+                .putShort((short) 0).putShort((short) 0)
+                .putShort((short) (spec.width() - 1)).putShort((short) (spec.height() - 1))
+                .putShort((short) 72).putShort((short) 72);
+        if (mode == ColorMode.GRAY1) {
+            header.put(new byte[] {0, 0, 0, (byte) 255, (byte) 255, (byte) 255});
+        }
+        header.position(65);
+        header.put((byte) planes).putShort((short) bytesPerLine)
+                .putShort((short) (mode.isGray() ? 2 : 1))
+                .putShort((short) spec.width()).putShort((short) spec.height());
+        out.write(header.array());
+
+        int[] rgba = new int[spec.width() * 4];
+        byte[] row = new byte[mode.getRowBytes(spec.width())];
+        byte[] scanline = new byte[bytesPerLine * planes];
+        for (int y = 0; y < spec.height(); y++) {
+            pattern.packRow(y, 0, mode, rgba, row);
+            if (planes == 3) {
+                for (int x = 0; x < spec.width(); x++) {
+                    scanline[x] = row[x * 3];
+                    scanline[bytesPerLine + x] = row[x * 3 + 1];
+                    scanline[bytesPerLine * 2 + x] = row[x * 3 + 2];
+                }
+            } else {
+                System.arraycopy(row, 0, scanline, 0, row.length);
+            }
+            pcxRle(scanline, out);
+        }
+
+        if (bitsPerPixel == 8 && planes == 1) {
+            byte[][] palette = PixelPattern.palette(mode);
+            out.write(0x0C);
+            for (int i = 0; i < 256; i++) {
+                out.write(palette[0][i]);
+                out.write(palette[1][i]);
+                out.write(palette[2][i]);
+            }
+        }
+    }
+
+    private static void pcxRle(byte[] scanline, OutputStream out) throws IOException {
+        int i = 0;
+        while (i < scanline.length) {
+            int run = 1;
+            while (i + run < scanline.length && run < 63 && scanline[i + run] == scanline[i]) run++;
+            if (run > 1 || (scanline[i] & 0xC0) == 0xC0) {
+                out.write(0xC0 | run);
+            }
+            out.write(scanline[i]);
+            i += run;
+        }
+    }
+
+    /* ---------------- GIF и JPEG через ImageIO ---------------- */
+
+    private static void writeGif(ImageSpec spec, PixelPattern pattern, Path target) throws IOException {
+        byte[][] palette = PixelPattern.palette(spec.mode());
+        IndexColorModel colorModel = new IndexColorModel(8, 256, palette[0], palette[1], palette[2]);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+        Files.deleteIfExists(target);
+
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(ios);
+            int frames = Math.max(1, spec.frames());
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            writer.prepareWriteSequence(null);
+            for (int frame = 0; frame < frames; frame++) {
+                BufferedImage image = new BufferedImage(spec.width(), spec.height(), BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+                fill(image.getRaster(), pattern, spec, frame);
+
+                IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+                if (frames > 1) {
+                    addAnimation(metadata, frame == 0);
+                }
+                writer.writeToSequence(new IIOImage(image, null, metadata), param);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static void addAnimation(IIOMetadata metadata, boolean loop) throws IOException {
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+        IIOMetadataNode control = child(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", "10");
+        control.setAttribute("transparentColorIndex", "0");
+
+        if (loop) {
+            IIOMetadataNode extensions = child(root, "ApplicationExtensions");
+            IIOMetadataNode extension = new IIOMetadataNode("ApplicationExtension");
+            extension.setAttribute("applicationID", "NETSCAPE");
+            extension.setAttribute("authenticationCode", "2.0");
+            extension.setUserObject(new byte[] {1, 0, 0});
+            extensions.appendChild(extension);
+        }
+        metadata.setFromTree(format, root);
+    }
+
+    private static IIOMetadataNode child(IIOMetadataNode root, String name) {
+        for (Node node = root.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeName().equals(name)) return (IIOMetadataNode) node;
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        root.appendChild(node);
+        return node;
+    }
+
+    private static void writeJpeg(ImageSpec spec, PixelPattern pattern, Path target) throws IOException {
+        int type = spec.mode() == ColorMode.GRAY8 ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR;
+        BufferedImage image = new BufferedImage(spec.width(), spec.height(), type);
+        fill(image.getRaster(), pattern, spec, 0);
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        Files.deleteIfExists(target);
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (spec.compression() != null && !spec.compression().isEmpty()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(Integer.parseInt(spec.compression()) / 100f);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static void fill(WritableRaster raster, PixelPattern pattern, ImageSpec spec, int frame) {
+        ColorMode mode = spec.mode();
+        int[] rgba = new int[spec.width() * 4];
+        byte[] row = new byte[mode.getRowBytes(spec.width())];
+        int[] samples = new int[spec.width() * mode.samplesPerPixel];
+        for (int y = 0; y < spec.height(); y++) {
+            pattern.packRow(y, frame, mode, rgba, row);
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = row[i] & 0xFF;
+            }
+            raster.setPixels(0, y, spec.width(), 1, samples);
+        }
+    }
+}
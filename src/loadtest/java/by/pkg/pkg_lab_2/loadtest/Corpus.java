@@ -0,0 +1,50 @@
+package by.pkg.pkg_lab_2.loadtest;
+
+import by.pkg.pkg_lab_2.corpus.ColorMode;
+import by.pkg.pkg_lab_2.corpus.ImageSpec;
+import by.pkg.pkg_lab_2.corpus.SyntheticImageWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Набор файлов для нагрузки: образцы из images/ и синтетические изображения с фиксированным seed
+class Corpus {
+    private static final String[] SYNTHETIC_FORMATS = {"png", "jpg", "tif", "gif", "bmp", "pcx"};
+
+    static List<CorpusFile> load(LoadTestConfig config) throws IOException {
+        List<CorpusFile> files = new ArrayList<>();
+
+        if (Files.isDirectory(config.imagesDir)) {
+            try (Stream<Path> paths = Files.walk(config.imagesDir)) {
+                for (Path path : paths.filter(Files::isRegularFile).sorted().toList()) {
+                    byte[] data = Files.readAllBytes(path);
+                    if (data.length > 0) {
+                        files.add(new CorpusFile(path.getFileName().toString(), data));
+                    }
+                }
+            }
+        }
+
+        Path tempDir = Files.createTempDirectory("loadtest-corpus");
+        try {
+            for (int i = 0; i < config.syntheticFiles; i++) {
+                String format = SYNTHETIC_FORMATS[i % SYNTHETIC_FORMATS.length];
+                ColorMode mode = format.equals("gif") ? ColorMode.INDEXED8 : ColorMode.RGB24;
+                ImageSpec spec = new ImageSpec(format, config.syntheticSize, config.syntheticSize, mode,
+                        format.equals("tif") ? "deflate" : null, 1, config.seed + i);
+
+                Path path = tempDir.resolve("synthetic_" + i + "." + format);
+                SyntheticImageWriter.write(spec, path);
+                files.add(new CorpusFile(path.getFileName().toString(), Files.readAllBytes(path)));
+                Files.delete(path);
+            }
+        } finally {
+            Files.deleteIfExists(tempDir);
+        }
+        return files;
+    }
+}
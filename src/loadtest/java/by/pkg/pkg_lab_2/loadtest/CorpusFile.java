@@ -0,0 +1,4 @@
+package by.pkg.pkg_lab_2.loadtest;
+
+record CorpusFile(String name, byte[] data) {
+}
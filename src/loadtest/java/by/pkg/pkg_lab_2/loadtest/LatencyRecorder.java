@@ -0,0 +1,43 @@
+package by.pkg.pkg_lab_2.loadtest;
+
+import java.util.Arrays;
+
+// Задержки хранятся в массиве примитивов, процентили считаются по отсортированной копии
+class LatencyRecorder {
+    private long[] nanos = new long[1024];
+    private int count;
+    private long files;
+    private int errors;
+
+    synchronized void record(long latencyNanos, int fileCount, boolean success) {
+        if (!success) {
+            errors++;
+            return;
+        }
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos, count * 2);
+        }
+        nanos[count++] = latencyNanos;
+        files += fileCount;
+    }
+
+    synchronized int getCount() {
+        return count;
+    }
+
+    synchronized long getFiles() {
+        return files;
+    }
+
+    synchronized int getErrors() {
+        return errors;
+    }
+
+    synchronized double percentileMillis(double percentile) {
+        if (count == 0) return 0;
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))] / 1_000_000.0;
+    }
+}
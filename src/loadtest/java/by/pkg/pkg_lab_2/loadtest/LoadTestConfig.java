@@ -0,0 +1,46 @@
+package by.pkg.pkg_lab_2.loadtest;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Параметры задаются системными свойствами loadtest.* (в Gradle: -Ploadtest.concurrency=16 и т.д.)
+public class LoadTestConfig {
+    final int concurrency = getInt("loadtest.concurrency", 8);
+    final int requests = getInt("loadtest.requests", 200);
+    final int warmupRequests = getInt("loadtest.warmupRequests", 20);
+    final int filesPerRequest = getInt("loadtest.filesPerRequest", 10);
+    final int syntheticFiles = getInt("loadtest.syntheticFiles", 40);
+    final int syntheticSize = getInt("loadtest.syntheticSize", 1024);
+    final long seed = getInt("loadtest.seed", 42);
+    final Map<String, Integer> mix = parseMix(System.getProperty("loadtest.mix", "analyze=3,analyze-zip=1"));
+    final Path imagesDir = Path.of(System.getProperty("loadtest.imagesDir", "images"));
+    final Path reportFile = Path.of(System.getProperty("loadtest.report", "build/reports/loadtest/result.json"));
+    // Порог для защиты от регрессий: при превышении p95 задача завершается с ошибкой (0 - не проверять)
+    final long maxP95Millis = getInt("loadtest.maxP95Millis", 0);
+
+    private static int getInt(String name, int defaultValue) {
+        String value = System.getProperty(name);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static Map<String, Integer> parseMix(String value) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            String[] pair = part.trim().split("=");
+            String endpoint = pair[0].trim();
+            if (!endpoint.equals("analyze") && !endpoint.equals("analyze-zip")) {
+                throw new IllegalArgumentException("Unsupported endpoint in loadtest.mix: " + endpoint);
+            }
+            mix.put(endpoint, pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1);
+        }
+        return mix;
+    }
+
+    @Override
+    public String toString() {
+        return "concurrency=" + concurrency + ", requests=" + requests + ", warmup=" + warmupRequests +
+                ", filesPerRequest=" + filesPerRequest + ", synthetic=" + syntheticFiles + "×" + syntheticSize + "px" +
+                ", mix=" + mix + ", seed=" + seed;
+    }
+}
@@ -0,0 +1,191 @@
+package by.pkg.pkg_lab_2.loadtest;
+
+import by.pkg.pkg_lab_2.PkgLab2Application;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Нагрузочный тест REST API:
+1. Приложение запускается в этом же процессе на случайном порту
+2. Прогрев - warmupRequests запросов без учёта в статистике
+3. concurrency потоков отправляют requests запросов к /analyze и /analyze-zip в пропорции mix
+4. Отчёт: p50/p95/p99, файлов в секунду, пиковый размер кучи; JSON сохраняется в loadtest.report
+
+Пиковая куча включает и память генератора нагрузки (тела запросов), она невелика по сравнению с анализом.
+*/
+public class LoadTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = new LoadTestConfig();
+        System.out.println("Load test: " + config);
+
+        List<CorpusFile> corpus = Corpus.load(config);
+        System.out.println("Corpus: " + corpus.size() + " files");
+
+        ConfigurableApplicationContext context = SpringApplication.run(PkgLab2Application.class,
+                "--server.port=0", "--spring.main.banner-mode=off");
+        int exitCode = 0;
+        try {
+            int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+            LoadTestRunner runner = new LoadTestRunner(config, corpus, port);
+
+            runner.run(config.warmupRequests, new LinkedHashMap<>());
+
+            resetPeakHeap();
+            Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+            long start = System.nanoTime();
+            runner.run(config.requests, recorders);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            String report = report(config, recorders, seconds, getPeakHeap());
+            Files.createDirectories(config.reportFile.toAbsolutePath().getParent());
+            Files.writeString(config.reportFile, report);
+            System.out.println("Report written to " + config.reportFile.toAbsolutePath());
+
+            if (config.maxP95Millis > 0) {
+                for (Map.Entry<String, LatencyRecorder> entry : recorders.entrySet()) {
+                    if (entry.getValue().percentileMillis(95) > config.maxP95Millis) {
+                        System.err.println("p95 for " + entry.getKey() + " exceeds " + config.maxP95Millis + " ms");
+                        exitCode = 1;
+                    }
+                }
+            }
+        } finally {
+            context.close();
+        }
+        System.exit(exitCode);
+    }
+
+    private final LoadTestConfig config;
+    private final List<CorpusFile> corpus;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final String baseUrl;
+    private final String[] schedule;
+
+    private LoadTestRunner(LoadTestConfig config, List<CorpusFile> corpus, int port) {
+        this.config = config;
+        this.corpus = corpus;
+        this.baseUrl = "http://localhost:" + port + "/api/images/";
+
+        List<String> slots = new ArrayList<>();
+        config.mix.forEach((endpoint, weight) -> {
+            for (int i = 0; i < weight; i++) slots.add(endpoint);
+        });
+        this.schedule = slots.toArray(new String[0]);
+    }
+
+    private void run(int requests, Map<String, LatencyRecorder> recorders) throws InterruptedException {
+        for (String endpoint : config.mix.keySet()) {
+            recorders.putIfAbsent(endpoint, new LatencyRecorder());
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(config.concurrency);
+        for (int w = 0; w < config.concurrency; w++) {
+            workers.submit(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < requests) {
+                    sendRequest(index, recorders);
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+    }
+
+    private void sendRequest(int index, Map<String, LatencyRecorder> recorders) {
+        String endpoint = schedule[index % schedule.length];
+        // Выбор файлов детерминирован: зависит только от seed и номера запроса
+        Random random = new Random(config.seed * 31 + index);
+        List<CorpusFile> files = new ArrayList<>(config.filesPerRequest);
+        for (int i = 0; i < config.filesPerRequest; i++) {
+            files.add(corpus.get(random.nextInt(corpus.size())));
+        }
+
+        boolean success = false;
+        long start = System.nanoTime();
+        try {
+            byte[] body = endpoint.equals("analyze-zip")
+                    ? MultipartBody.zip("zipFile", files)
+                    : MultipartBody.files("files", files);
+
+            start = System.nanoTime();
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint))
+                    .timeout(Duration.ofMinutes(10))
+                    .header("Content-Type", "multipart/form-data; boundary=" + MultipartBody.BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            success = response.statusCode() == 200;
+        } catch (Exception e) {
+            System.err.println("Request " + index + " failed: " + e.getMessage());
+        }
+        recorders.get(endpoint).record(System.nanoTime() - start, files.size(), success);
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    private static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    static String report(LoadTestConfig config, Map<String, LatencyRecorder> recorders,
+                                 double seconds, long peakHeap) {
+        long totalFiles = 0;
+        StringBuilder json = new StringBuilder("{\n  \"endpoints\": {");
+
+        System.out.printf(Locale.ROOT, "%n%-12s %8s %7s %10s %10s %10s%n", "endpoint", "requests", "errors", "p50 ms", "p95 ms", "p99 ms");
+        boolean first = true;
+        for (Map.Entry<String, LatencyRecorder> entry : recorders.entrySet()) {
+            LatencyRecorder r = entry.getValue();
+            totalFiles += r.getFiles();
+            System.out.printf(Locale.ROOT, "%-12s %8d %7d %10.1f %10.1f %10.1f%n", entry.getKey(), r.getCount(), r.getErrors(),
+                    r.percentileMillis(50), r.percentileMillis(95), r.percentileMillis(99));
+
+            json.append(first ? "\n" : ",\n");
+            json.append(String.format(Locale.ROOT,
+                    "    \"%s\": {\"requests\": %d, \"errors\": %d, \"p50Ms\": %.2f, \"p95Ms\": %.2f, \"p99Ms\": %.2f}",
+                    entry.getKey(), r.getCount(), r.getErrors(),
+                    r.percentileMillis(50), r.percentileMillis(95), r.percentileMillis(99)));
+            first = false;
+        }
+
+        double filesPerSecond = totalFiles / seconds;
+        System.out.printf(Locale.ROOT, "%nFiles/sec: %.1f, duration: %.1f s, peak heap: %.1f MB%n",
+                filesPerSecond, seconds, peakHeap / (1024.0 * 1024));
+
+        json.append(String.format(Locale.ROOT,
+                "\n  },\n  \"filesPerSecond\": %.2f,\n  \"durationSeconds\": %.2f,\n  \"peakHeapBytes\": %d,\n  \"config\": \"%s\"\n}\n",
+                filesPerSecond, seconds, peakHeap, config.toString().replace("\"", "'")));
+        return json.toString();
+    }
+}
@@ -0,0 +1,43 @@
+package by.pkg.pkg_lab_2.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+class MultipartBody {
+    static final String BOUNDARY = "----pkg-loadtest-boundary";
+
+    static byte[] files(String field, List<CorpusFile> files) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (CorpusFile file : files) {
+            writePart(out, field, file.name(), file.data());
+        }
+        out.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    static byte[] zip(String field, List<CorpusFile> files) throws IOException {
+        ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(zipBytes)) {
+            for (int i = 0; i < files.size(); i++) {
+                // Одинаковые имена в одном архиве недопустимы
+                zip.putNextEntry(new ZipEntry(i + "_" + files.get(i).name()));
+                zip.write(files.get(i).data());
+                zip.closeEntry();
+            }
+        }
+        return files(field, List.of(new CorpusFile("batch.zip", zipBytes.toByteArray())));
+    }
+
+    private static void writePart(ByteArrayOutputStream out, String field, String filename, byte[] data) throws IOException {
+        String header = "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"" + field + "\"; filename=\"" + filename + "\"\r\n" +
+                "Content-Type: application/octet-stream\r\n\r\n";
+        out.write(header.getBytes(StandardCharsets.UTF_8));
+        out.write(data);
+        out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+    }
+}
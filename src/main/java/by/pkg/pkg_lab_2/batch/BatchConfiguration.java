@@ -0,0 +1,28 @@
+package by.pkg.pkg_lab_2.batch;
+
+import by.pkg.pkg_lab_2.service.AnalysisScheduler;
+import by.pkg.pkg_lab_2.service.BufferPool;
+import by.pkg.pkg_lab_2.service.ImageAnalyzerService;
+import by.pkg.pkg_lab_2.service.ImageArchiveReader;
+import by.pkg.pkg_lab_2.service.ImageReaderPool;
+import by.pkg.pkg_lab_2.service.PixelStatisticsService;
+import by.pkg.pkg_lab_2.service.ResultExportService;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.PropertySource;
+
+// Контекст пакетного режима: только сервисы анализа, без автоконфигурации, Tomcat и Thymeleaf.
+// Бины перечислены явно: кластер, профилирование, SSE, прогрев и индекс дубликатов пакету не нужны.
+// Класс намеренно не помечен @Configuration, чтобы сканирование веб-приложения его не подхватывало.
+@Import({
+        BatchJob.class,
+        ImageAnalyzerService.class,
+        PixelStatisticsService.class,
+        ImageReaderPool.class,
+        BufferPool.class,
+        AnalysisScheduler.class,
+        ImageArchiveReader.class,
+        ResultExportService.class
+})
+@PropertySource("classpath:application.properties")
+class BatchConfiguration {
+}
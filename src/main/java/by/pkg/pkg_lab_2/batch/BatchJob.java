@@ -0,0 +1,194 @@
+package by.pkg.pkg_lab_2.batch;
+
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import by.pkg.pkg_lab_2.service.BufferPool;
+import by.pkg.pkg_lab_2.service.ImageAnalyzerService;
+import by.pkg.pkg_lab_2.service.ImageArchiveReader;
+import by.pkg.pkg_lab_2.service.PooledBuffer;
+import by.pkg.pkg_lab_2.service.PooledMultipartFile;
+import by.pkg.pkg_lab_2.service.ResultExportService;
+import by.pkg.pkg_lab_2.service.ResultExportWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/*
+Файлы анализируются параллельно (не более threads одновременно), а результаты пишутся
+в порядке входных данных сразу по готовности - в памяти держится только окно из 2 * threads файлов.
+*/
+class BatchJob {
+    @Autowired
+    private ImageAnalyzerService imageAnalyzerService;
+
+    @Autowired
+    private ImageArchiveReader imageArchiveReader;
+
+    @Autowired
+    private ResultExportService resultExportService;
+
+    @Autowired
+    private BufferPool bufferPool;
+
+    private ExecutorService executor;
+    private Deque<Future<ImageMetadata>> pending;
+    private ResultExportWriter writer;
+    private int windowSize;
+    private long files;
+    private long errors;
+
+    int run(BatchOptions options, long startupMillis) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        executor = Executors.newFixedThreadPool(options.threads);
+        pending = new ArrayDeque<>();
+        windowSize = options.threads * 2;
+
+        boolean toStdout = options.output.equals("-");
+        OutputStream out = toStdout ? System.out : Files.newOutputStream(Path.of(options.output));
+        try (ResultExportWriter resultWriter = resultExportService.open(options.format, out)) {
+            writer = resultWriter;
+            for (String input : options.inputs) {
+                if (input.equals("-")) {
+                    readList(System.in);
+                } else if (input.startsWith("@")) {
+                    try (InputStream list = Files.newInputStream(Path.of(input.substring(1)))) {
+                        readList(list);
+                    }
+                } else {
+                    addPath(Path.of(input));
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeNext();
+            }
+        } finally {
+            executor.shutdownNow();
+            if (toStdout) {
+                out.flush();
+            } else {
+                out.close();
+            }
+        }
+
+        System.err.printf("Analyzed %d files (%d errors) in %.2f s, startup %d ms%n",
+                files, errors, (System.nanoTime() - start) / 1e9, startupMillis);
+        return 0;
+    }
+
+    private void readList(InputStream list) throws IOException, InterruptedException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(list, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                addPath(Path.of(line));
+            }
+        }
+    }
+
+    private void addPath(Path path) throws IOException, InterruptedException {
+        if (Files.isDirectory(path)) {
+            List<Path> children;
+            try (Stream<Path> walk = Files.walk(path)) {
+                children = walk.filter(Files::isRegularFile).sorted().toList();
+            }
+            for (Path child : children) {
+                if (isArchive(child) || ImageArchiveReader.isImageFile(child.getFileName().toString())) {
+                    addPath(child);
+                }
+            }
+        } else if (isArchive(path)) {
+            addArchive(path);
+        } else {
+            addFile(path);
+        }
+    }
+
+    private void addFile(Path path) throws IOException, InterruptedException {
+        String name = path.toString();
+        String contentType = ImageArchiveReader.getContentTypeForFilename(name.toLowerCase());
+        submit(() -> {
+            try (InputStream in = Files.newInputStream(path);
+                 PooledBuffer buffer = bufferPool.read(in, Files.size(path))) {
+                return imageAnalyzerService.analyzeImage(new PooledMultipartFile(name, contentType, buffer));
+            } catch (IOException e) {
+                // Нечитаемый файл - строка с ошибкой, как у повреждённого изображения, а не остановка всего пакета
+                System.err.println("Cannot read " + name + ": " + e.getMessage());
+                return createErrorMetadata(name, contentType, "Не удалось прочитать файл: " + e.getMessage());
+            }
+        });
+    }
+
+    private void addArchive(Path archive) throws IOException, InterruptedException {
+        try (InputStream in = Files.newInputStream(archive)) {
+            imageArchiveReader.forEachImage(in, entry -> {
+                // Буфер записи закрывается читателем архива сразу после возврата, поэтому удерживается до конца анализа
+                PooledBuffer buffer = ((PooledMultipartFile) entry).getPooledBuffer().retain();
+                PooledMultipartFile file = new PooledMultipartFile(archive + "!/" + entry.getOriginalFilename(),
+                        entry.getContentType(), buffer);
+                try {
+                    submit(() -> {
+                        try (buffer) {
+                            return imageAnalyzerService.analyzeImage(file);
+                        }
+                    });
+                } catch (InterruptedException e) {
+                    buffer.close();
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                }
+            });
+        }
+    }
+
+    private void submit(Callable<ImageMetadata> task) throws IOException, InterruptedException {
+        while (pending.size() >= windowSize) {
+            writeNext();
+        }
+        pending.add(executor.submit(task));
+    }
+
+    private void writeNext() throws IOException, InterruptedException {
+        ImageMetadata metadata;
+        try {
+            metadata = pending.poll().get();
+        } catch (ExecutionException e) {
+            throw new IOException("Cannot read input: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        files++;
+        if (metadata.getAdditionalInfo() != null && metadata.getAdditionalInfo().containsKey("Ошибка")) {
+            errors++;
+        }
+        writer.write(metadata);
+    }
+
+    private static ImageMetadata createErrorMetadata(String name, String contentType, String error) {
+        ImageMetadata metadata = new ImageMetadata(name);
+        metadata.setAdditionalInfo(Map.of(
+                "Ошибка", error,
+                "MIME Type", contentType
+        ));
+        return metadata;
+    }
+
+    private static boolean isArchive(Path path) {
+        return path.getFileName() != null && path.getFileName().toString().toLowerCase().endsWith(".zip");
+    }
+}
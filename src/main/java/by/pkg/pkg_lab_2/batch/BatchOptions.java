@@ -0,0 +1,55 @@
+package by.pkg.pkg_lab_2.batch;
+
+import by.pkg.pkg_lab_2.model.ExportFormat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Аргументы командной строки:
+  <файл | каталог | архив.zip | @список.txt | ->...   входные данные; "-" - список путей из stdin
+  --output=<файл>       куда писать результаты, "-" - stdout (по умолчанию)
+  --format=csv|columnar формат результатов (по умолчанию csv)
+  --threads=<n>         число файлов, анализируемых одновременно
+*/
+class BatchOptions {
+    static final String USAGE = """
+            Usage: analyze-batch [options] <file | directory | archive.zip | @list.txt | ->...
+              --output=<file>        write results to file, "-" for stdout (default)
+              --format=csv|columnar  result format (default csv)
+              --threads=<n>          files analyzed concurrently (default: CPU count)
+            """;
+
+    final List<String> inputs = new ArrayList<>();
+    String output = "-";
+    ExportFormat format = ExportFormat.CSV;
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    static BatchOptions parse(String[] args) {
+        BatchOptions options = new BatchOptions();
+        for (String arg : args) {
+            if (arg.startsWith("--output=")) {
+                options.output = value(arg);
+            } else if (arg.startsWith("--format=")) {
+                options.format = ExportFormat.fromParameter(value(arg));
+            } else if (arg.startsWith("--threads=")) {
+                options.threads = Integer.parseInt(value(arg));
+                if (options.threads < 1) {
+                    throw new IllegalArgumentException("--threads must be positive");
+                }
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            } else {
+                options.inputs.add(arg);
+            }
+        }
+        if (options.inputs.isEmpty()) {
+            throw new IllegalArgumentException("No input files");
+        }
+        return options;
+    }
+
+    private static String value(String arg) {
+        return arg.substring(arg.indexOf('=') + 1);
+    }
+}
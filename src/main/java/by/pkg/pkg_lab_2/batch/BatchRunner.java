@@ -0,0 +1,64 @@
+package by.pkg.pkg_lab_2.batch;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+Пакетный запуск без веб-контекста (для cron и скриптов):
+  java -cp build/batch/app.jar by.pkg.pkg_lab_2.batch.BatchRunner --output=results.csv images/ archive.zip
+С архивом CDS (gradle batchCdsArchive) используйте build/batch/analyze-batch.sh.
+Код выхода: 0 - успех, 1 - ошибка ввода-вывода, 2 - неверные аргументы.
+
+Вместо SpringApplication поднимается обычный AnnotationConfigApplicationContext: без автоконфигурации,
+обработки ConfigData и инициализации системы логирования Spring Boot запуск короче примерно на полсекунды.
+Свойства читаются из application.properties и переопределяются через -D.
+*/
+public class BatchRunner {
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) {
+        long start = System.nanoTime();
+
+        BatchOptions options;
+        try {
+            options = BatchOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(BatchOptions.USAGE);
+            return 2;
+        }
+
+        // Без Spring Boot Logback остаётся в конфигурации по умолчанию (DEBUG в консоль)
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        int exitCode;
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            // Конвертеры Spring Boot нужны для @Value с Duration ("30s") и DataSize ("2GB")
+            context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+            Map<String, Object> batchProperties = new HashMap<>();
+            // Параллельность анализа задаёт --threads, а не число CPU по умолчанию у планировщика
+            if (System.getProperty("analyzer.scheduler.workers") == null) {
+                batchProperties.put("analyzer.scheduler.workers", String.valueOf(options.threads));
+            }
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("batch", batchProperties));
+            context.register(BatchConfiguration.class);
+            context.refresh();
+
+            long startupMillis = (System.nanoTime() - start) / 1_000_000;
+            exitCode = context.getBean(BatchJob.class).run(options, startupMillis);
+        } catch (Exception e) {
+            System.err.println("Batch failed: " + e.getMessage());
+            exitCode = 1;
+        }
+        return exitCode;
+    }
+}
@@ -0,0 +1,76 @@
+package by.pkg.pkg_lab_2.config;
+
+import by.pkg.pkg_lab_2.service.AnalysisScheduler;
+import by.pkg.pkg_lab_2.service.ClusterCoordinator;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Set;
+
+/*
+Определяет клиента запроса для AnalysisScheduler и ограничивает частоту запросов к API анализа.
+Клиент - адрес отправителя; если задано analyzer.scheduler.client-header, берётся значение
+этого заголовка (только за доверенным прокси или балансировщиком, иначе клиент может его подменить).
+Запросы координатора кластера с адресов из analyzer.cluster.trusted-coordinators относятся к клиенту
+из заголовка ClusterCoordinator.CLIENT_HEADER, а не к адресу координатора.
+*/
+@Component
+public class ClientRateLimitFilter extends OncePerRequestFilter {
+    @Autowired
+    private AnalysisScheduler analysisScheduler;
+
+    @Value("${analyzer.scheduler.client-header:}")
+    private String clientHeader;
+
+    @Value("${analyzer.cluster.trusted-coordinators:127.0.0.1,0:0:0:0:0:0:0:1,::1}")
+    private Set<String> trustedCoordinators = Set.of();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String client = resolveClient(request);
+
+        if ("POST".equals(request.getMethod()) && request.getRequestURI().startsWith("/api/images/")) {
+            long retryNanos = analysisScheduler.tryAcquireRequest(client);
+            if (retryNanos > 0) {
+                long retrySeconds = Math.max(1, (retryNanos + 999_999_999L) / 1_000_000_000L);
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retrySeconds));
+                response.setContentType("text/plain;charset=UTF-8");
+                response.getWriter().write("Слишком много запросов, повторите через " + retrySeconds + " с");
+                return;
+            }
+        }
+
+        AnalysisScheduler.setCurrentClient(client);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            AnalysisScheduler.setCurrentClient(null);
+        }
+    }
+
+    String resolveClient(HttpServletRequest request) {
+        if (clientHeader != null && !clientHeader.isBlank()) {
+            String value = request.getHeader(clientHeader);
+            if (value != null && !value.isBlank()) {
+                return value.trim();
+            }
+        }
+        String address = request.getRemoteAddr();
+        String forwarded = request.getHeader(ClusterCoordinator.CLIENT_HEADER);
+        if (forwarded != null && !forwarded.isBlank() && trustedCoordinators.contains(address)) {
+            return forwarded.trim();
+        }
+        return address;
+    }
+}
@@ -0,0 +1,47 @@
+package by.pkg.pkg_lab_2.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverters;
+import org.springframework.http.converter.cbor.JacksonCborHttpMessageConverter;
+import org.springframework.http.converter.smile.JacksonSmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.dataformat.cbor.CBORGenerator;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.cbor.CBORWriteFeature;
+import tools.jackson.dataformat.smile.SmileMapper;
+import tools.jackson.dataformat.smile.SmileWriteFeature;
+
+/*
+Двоичные кодировки результатов по заголовку Accept:
+- application/x-jackson-smile - Smile с обратными ссылками на уже записанные ключи
+  и короткие строковые значения (словарь внутри документа)
+- application/cbor - CBOR с расширением stringref, тот же приём для ключей и значений
+Длинные кириллические ключи additionalInfo записываются один раз на ответ, дальше - ссылкой в 1-2 байта.
+
+CBORGenerator со STRINGREF пишет ссылки (тег 25), но не открывает пространство имён (тег 256), и такой
+документ не читает ни один декодер, включая сам Jackson. Поэтому корневое значение оборачивается тегом 256 здесь.
+*/
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+    @Override
+    public void configureMessageConverters(HttpMessageConverters.ServerBuilder builder) {
+        builder.withSmileConverter(new JacksonSmileHttpMessageConverter(SmileMapper.builder()
+                        .enable(SmileWriteFeature.CHECK_SHARED_NAMES, SmileWriteFeature.CHECK_SHARED_STRING_VALUES)))
+                .withCborConverter(new StringRefCborHttpMessageConverter(CBORMapper.builder()
+                        .enable(CBORWriteFeature.STRINGREF)));
+    }
+
+    private static class StringRefCborHttpMessageConverter extends JacksonCborHttpMessageConverter {
+        private static final int STRINGREF_NAMESPACE_TAG = 256;
+
+        StringRefCborHttpMessageConverter(CBORMapper.Builder builder) {
+            super(builder);
+        }
+
+        @Override
+        protected void writePrefix(JsonGenerator generator, Object object) {
+            ((CBORGenerator) generator).writeTag(STRINGREF_NAMESPACE_TAG);
+        }
+    }
+}
@@ -1,19 +1,51 @@
 package by.pkg.pkg_lab_2.controller;
 
+import by.pkg.pkg_lab_2.model.ClusterStats;
+import by.pkg.pkg_lab_2.model.DuplicateCluster;
+import by.pkg.pkg_lab_2.model.ExportFormat;
+import by.pkg.pkg_lab_2.model.ImageLayout;
 import by.pkg.pkg_lab_2.model.ImageMetadata;
+import by.pkg.pkg_lab_2.model.ImagePreview;
+import by.pkg.pkg_lab_2.model.ImageRegion;
+import by.pkg.pkg_lab_2.model.RecordingStatus;
+import by.pkg.pkg_lab_2.model.SchedulerStats;
+import by.pkg.pkg_lab_2.service.AnalysisLimitException;
+import by.pkg.pkg_lab_2.service.AnalysisProgressService;
+import by.pkg.pkg_lab_2.service.AnalysisScheduler;
+import by.pkg.pkg_lab_2.service.BufferPool;
+import by.pkg.pkg_lab_2.service.ClusterCoordinator;
+import by.pkg.pkg_lab_2.service.DuplicateDetectionService;
 import by.pkg.pkg_lab_2.service.ImageAnalyzerService;
+import by.pkg.pkg_lab_2.service.ImageArchiveReader;
+import by.pkg.pkg_lab_2.service.MultiIndexHashTable;
+import by.pkg.pkg_lab_2.service.PerceptualHashService;
+import by.pkg.pkg_lab_2.service.PooledBuffer;
+import by.pkg.pkg_lab_2.service.PreviewService;
+import by.pkg.pkg_lab_2.service.ProfilingService;
+import by.pkg.pkg_lab_2.service.RegionDecodeService;
+import by.pkg.pkg_lab_2.service.ResultExportService;
+import by.pkg.pkg_lab_2.service.ResultExportWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.apache.commons.io.input.CountingInputStream;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
+import java.awt.Rectangle;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/images")
@@ -23,14 +55,103 @@ public class ImageAnalysisController {
     @Autowired
     private ImageAnalyzerService imageAnalyzerService;
 
+    @Autowired
+    private ResultExportService resultExportService;
+
+    @Autowired
+    private DuplicateDetectionService duplicateDetectionService;
+
+    @Autowired
+    private PreviewService previewService;
+
+    @Autowired
+    private RegionDecodeService regionDecodeService;
+
+    @Autowired
+    private BufferPool bufferPool;
+
+    @Autowired
+    private ImageArchiveReader imageArchiveReader;
+
+    @Autowired
+    private AnalysisProgressService analysisProgressService;
+
+    @Autowired
+    private AnalysisScheduler analysisScheduler;
+
+    @Autowired
+    private ProfilingService profilingService;
+
+    @Autowired
+    private ClusterCoordinator clusterCoordinator;
+
     @GetMapping("/health")
     public ResponseEntity<String> healthCheck() {
         return ResponseEntity.ok("Image Analyzer is running");
     }
 
+    // Очередь анализа: глубина, время ожидания, счётчики по клиентам. Число потоков нужно координатору
+    // кластера, поэтому эндпоинт открыт, но адреса клиентов видны только при включённом профилировании
+    @GetMapping("/scheduler")
+    public ResponseEntity<SchedulerStats> schedulerStats() {
+        return ResponseEntity.ok(analysisScheduler.getStats(!profilingService.isEnabled()));
+    }
+
+    // Запись JFR: settings = analyzer (bundled профиль) | default | profile, duration - например 30s или 5m
+    @PostMapping("/profiling/start")
+    public ResponseEntity<RecordingStatus> startProfiling(
+            @RequestParam(value = "settings", defaultValue = ProfilingService.ANALYZER_SETTINGS) String settings,
+            @RequestParam(value = "duration", required = false) String duration) {
+        if (!profilingService.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            Duration maxDuration = duration != null && !duration.isBlank() ? DurationStyle.detectAndParse(duration) : null;
+            return ResponseEntity.ok(profilingService.start(settings, maxDuration));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid profiling request: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            System.err.println("Cannot start profiling: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(profilingService.status());
+        } catch (Exception e) {
+            System.err.println("Error starting profiling: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    // Останавливает запись и отдаёт .jfr; файл остаётся в analyzer.profiling.dir до вытеснения по max-files
+    @PostMapping("/profiling/stop")
+    public ResponseEntity<StreamingResponseBody> stopProfiling() {
+        if (!profilingService.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        Path file;
+        try {
+            file = profilingService.stop();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.notFound().build();
+        }
+
+        StreamingResponseBody body = out -> Files.copy(file, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                .body(body);
+    }
+
+    @GetMapping("/profiling/status")
+    public ResponseEntity<RecordingStatus> profilingStatus() {
+        if (!profilingService.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(profilingService.status());
+    }
+
     @PostMapping("/analyze")
     public ResponseEntity<List<ImageMetadata>> analyzeImages(
-            @RequestParam("files") MultipartFile[] files) {
+            @RequestParam("files") MultipartFile[] files,
+            @RequestParam(value = "pixelStats", defaultValue = "false") boolean pixelStats) {
 
         try {
             System.out.println("Received " + files.length + " files for analysis");
@@ -45,7 +166,7 @@ public class ImageAnalysisController {
 
                 System.out.println("Processing batch " + (i/batchSize + 1) + " with " + batch.length + " files");
 
-                List<ImageMetadata> batchResults = imageAnalyzerService.analyzeImages(batch);
+                List<ImageMetadata> batchResults = imageAnalyzerService.analyzeImages(batch, pixelStats);
                 allResults.addAll(batchResults);
 
                 if (i + batchSize < files.length) {
@@ -68,7 +189,9 @@ public class ImageAnalysisController {
     }
 
     @PostMapping("/analyze-zip")
-    public ResponseEntity<List<ImageMetadata>> analyzeZip(@RequestParam("zipFile") MultipartFile zipFile) {
+    public ResponseEntity<List<ImageMetadata>> analyzeZip(
+            @RequestParam("zipFile") MultipartFile zipFile,
+            @RequestParam(value = "pixelStats", defaultValue = "false") boolean pixelStats) {
         try {
             if (zipFile.isEmpty()) {
                 return ResponseEntity.badRequest().build();
@@ -76,99 +199,405 @@ public class ImageAnalysisController {
 
             System.out.println("Processing ZIP archive: " + zipFile.getOriginalFilename());
 
-            List<MultipartFile> imageFiles = new ArrayList<>();
+            List<ImageMetadata> results = new ArrayList<>();
 
-            try (ZipInputStream zis = new ZipInputStream(zipFile.getInputStream())) {
-                ZipEntry entry;
-                byte[] buffer = new byte[1024];
+            // Каждая запись анализируется сразу после чтения, её буфер возвращается в пул
+            try (InputStream is = zipFile.getInputStream()) {
+                imageArchiveReader.forEachImage(is, file -> results.add(imageAnalyzerService.analyzeImage(file, pixelStats)));
+            }
 
-                while ((entry = zis.getNextEntry()) != null) {
-                    if (!entry.isDirectory() && isImageFile(entry.getName())) {
-                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                        int len;
-                        while ((len = zis.read(buffer)) > 0) {
-                            baos.write(buffer, 0, len);
-                        }
+            System.out.println("Analyzed " + results.size() + " image files in ZIP");
 
-                        imageFiles.add(getMultipartFile(entry, baos.toByteArray()));
-                    }
-                    zis.closeEntry();
-                }
-            }
+            return ResponseEntity.ok(results);
 
-            System.out.println("Found " + imageFiles.size() + " image files in ZIP");
+        } catch (Exception e) {
+            System.err.println("Error processing ZIP file: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
 
-            MultipartFile[] filesArray = imageFiles.toArray(new MultipartFile[0]);
-            List<ImageMetadata> results = imageAnalyzerService.analyzeImages(filesArray);
+    // Режим координатора: шарды анализируют узлы из analyzer.cluster.workers, порядок результатов - как у /analyze
+    @PostMapping("/cluster/analyze")
+    public ResponseEntity<List<ImageMetadata>> analyzeImagesInCluster(
+            @RequestParam("files") MultipartFile[] files,
+            @RequestParam(value = "pixelStats", defaultValue = "false") boolean pixelStats) {
+        if (!clusterCoordinator.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            long start = System.nanoTime();
+            List<ImageMetadata> results = clusterCoordinator.analyzeImages(files, pixelStats);
+            System.out.println("Cluster analyzed " + results.size() + " files in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return ResponseEntity.ok(results);
 
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (RejectedExecutionException e) {
+            return clusterSlotsExhausted();
+        } catch (Exception e) {
+            System.err.println("Error processing files in cluster: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/cluster/analyze-zip")
+    public ResponseEntity<List<ImageMetadata>> analyzeZipInCluster(
+            @RequestParam("zipFile") MultipartFile zipFile,
+            @RequestParam(value = "pixelStats", defaultValue = "false") boolean pixelStats) {
+        if (!clusterCoordinator.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (zipFile.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try (InputStream is = zipFile.getInputStream()) {
+            long start = System.nanoTime();
+            List<ImageMetadata> results = clusterCoordinator.analyzeZip(is, pixelStats);
+            System.out.println("Cluster analyzed " + results.size() + " image files in ZIP " + zipFile.getOriginalFilename()
+                    + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
             return ResponseEntity.ok(results);
 
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (RejectedExecutionException e) {
+            return clusterSlotsExhausted();
         } catch (Exception e) {
-            System.err.println("Error processing ZIP file: " + e.getMessage());
+            System.err.println("Error processing ZIP file in cluster: " + e.getMessage());
             return ResponseEntity.internalServerError().build();
         }
     }
 
-    private MultipartFile getMultipartFile(ZipEntry entry, byte[] fileData) {
-        return new MultipartFile() {
-            @Override
-            public String getName() {
-                return "file";
-            }
+    // Узлы кластера: число слотов, доступность, шарды и ошибки
+    @GetMapping("/cluster")
+    public ResponseEntity<ClusterStats> clusterStats() {
+        if (!clusterCoordinator.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(clusterCoordinator.getStats());
+    }
 
-            @Override
-            public String getOriginalFilename() {
-                return entry.getName();
-            }
+    // Очередь слотов координатора заполнена (analyzer.cluster.max-queued-slots)
+    private static ResponseEntity<List<ImageMetadata>> clusterSlotsExhausted() {
+        System.err.println("Cluster job rejected: slot queue is full");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .build();
+    }
 
-            @Override
-            public String getContentType() {
-                return getContentTypeForFilename(entry.getName());
-            }
+    // Те же результаты, что у /analyze, но по одному событию SSE на файл по мере готовности
+    @PostMapping(value = "/analyze-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> analyzeImagesStream(
+            @RequestParam("files") MultipartFile[] files,
+            @RequestParam(value = "pixelStats", defaultValue = "false") boolean pixelStats) {
 
-            @Override
-            public boolean isEmpty() {
-                return fileData.length == 0;
-            }
+        long totalBytes = 0;
+        for (MultipartFile file : files) {
+            totalBytes += file.getSize();
+        }
 
-            @Override
-            public long getSize() {
-                return fileData.length;
-            }
+        System.out.println("Streaming analysis of " + files.length + " files");
 
-            @Override
-            public byte[] getBytes() {
-                return fileData;
-            }
+        try {
+            return ResponseEntity.ok(analysisProgressService.stream(files.length, totalBytes, listener -> {
+                long consumed = 0;
+                for (MultipartFile file : files) {
+                    consumed += file.getSize();
+                    listener.onResult(imageAnalyzerService.analyzeImage(file, pixelStats), consumed);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            return streamsExhausted();
+        }
+    }
+
+    @PostMapping(value = "/analyze-zip-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> analyzeZipStream(
+            @RequestParam("zipFile") MultipartFile zipFile,
+            @RequestParam(value = "pixelStats", defaultValue = "false") boolean pixelStats) {
+
+        if (zipFile.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        System.out.println("Streaming analysis of ZIP archive: " + zipFile.getOriginalFilename());
+
+        // Прогресс по архиву - прочитанная доля сжатых данных
+        try {
+            return ResponseEntity.ok(analysisProgressService.stream(null, zipFile.getSize(), listener -> {
+                try (CountingInputStream is = new CountingInputStream(zipFile.getInputStream())) {
+                    imageArchiveReader.forEachImage(is, file ->
+                            listener.onResult(imageAnalyzerService.analyzeImage(file, pixelStats), is.getByteCount()));
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            return streamsExhausted();
+        }
+    }
+
+    // Все потоки прогресса заняты (analyzer.progress.max-streams)
+    private static ResponseEntity<SseEmitter> streamsExhausted() {
+        System.err.println("Progress stream rejected: all stream threads are busy");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .build();
+    }
 
-            @Override
-            public InputStream getInputStream() {
-                return new ByteArrayInputStream(fileData);
+    @PostMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportImages(
+            @RequestParam("files") MultipartFile[] files,
+            @RequestParam(value = "format", defaultValue = "csv") String format) {
+
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.fromParameter(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        System.out.println("Exporting " + files.length + " files as " + exportFormat);
+
+        StreamingResponseBody body = out -> {
+            try (ResultExportWriter writer = resultExportService.open(exportFormat, out)) {
+                for (MultipartFile file : files) {
+                    writer.write(imageAnalyzerService.analyzeImage(file));
+                }
             }
+        };
 
-            @Override
-            public void transferTo(java.io.File dest) throws IllegalStateException {
-                throw new UnsupportedOperationException();
+        return exportResponse(exportFormat, body);
+    }
+
+    @PostMapping("/export-zip")
+    public ResponseEntity<StreamingResponseBody> exportZip(
+            @RequestParam("zipFile") MultipartFile zipFile,
+            @RequestParam(value = "format", defaultValue = "csv") String format) {
+
+        if (zipFile.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.fromParameter(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        System.out.println("Exporting ZIP archive " + zipFile.getOriginalFilename() + " as " + exportFormat);
+
+        // Записи архива анализируются и выгружаются по одной, полный список результатов не строится
+        StreamingResponseBody body = out -> {
+            try (ResultExportWriter writer = resultExportService.open(exportFormat, out);
+                 InputStream is = zipFile.getInputStream()) {
+                imageArchiveReader.forEachImage(is, file -> writer.write(imageAnalyzerService.analyzeImage(file)));
             }
         };
+
+        return exportResponse(exportFormat, body);
+    }
+
+    @PostMapping("/duplicates")
+    public ResponseEntity<List<DuplicateCluster>> findDuplicates(
+            @RequestParam("files") MultipartFile[] files,
+            @RequestParam(value = "maxDistance", defaultValue = "10") int maxDistance) {
+
+        if (maxDistance < 0 || maxDistance > MultiIndexHashTable.MAX_DISTANCE) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<String> filenames = new ArrayList<>();
+        List<Long> hashes = new ArrayList<>();
+        for (MultipartFile file : files) {
+            collectHash(imageAnalyzerService.analyzeImage(file), filenames, hashes);
+        }
+
+        return ResponseEntity.ok(clusterDuplicates(filenames, hashes, maxDistance));
+    }
+
+    @PostMapping("/duplicates-zip")
+    public ResponseEntity<List<DuplicateCluster>> findDuplicatesInZip(
+            @RequestParam("zipFile") MultipartFile zipFile,
+            @RequestParam(value = "maxDistance", defaultValue = "10") int maxDistance) {
+
+        if (zipFile.isEmpty() || maxDistance < 0 || maxDistance > MultiIndexHashTable.MAX_DISTANCE) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            List<String> filenames = new ArrayList<>();
+            List<Long> hashes = new ArrayList<>();
+            try (InputStream is = zipFile.getInputStream()) {
+                imageArchiveReader.forEachImage(is, file -> collectHash(imageAnalyzerService.analyzeImage(file), filenames, hashes));
+            }
+
+            return ResponseEntity.ok(clusterDuplicates(filenames, hashes, maxDistance));
+
+        } catch (Exception e) {
+            System.err.println("Error searching duplicates in ZIP file: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/duplicates/lookup")
+    public ResponseEntity<List<String>> lookupDuplicates(
+            @RequestParam("hash") String hash,
+            @RequestParam(value = "maxDistance", defaultValue = "10") int maxDistance) {
+
+        if (maxDistance < 0 || maxDistance > MultiIndexHashTable.MAX_DISTANCE) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            return ResponseEntity.ok(duplicateDetectionService.lookup(
+                    AnalysisScheduler.currentClient(), PerceptualHashService.fromHex(hash), maxDistance));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
-    private boolean isImageFile(String filename) {
-        if (filename == null) return false;
-        String lower = filename.toLowerCase();
-        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") ||
-                lower.endsWith(".png") || lower.endsWith(".gif") ||
-                lower.endsWith(".bmp") || lower.endsWith(".tif") ||
-                lower.endsWith(".tiff") || lower.endsWith(".pcx");
+    @PostMapping("/preview")
+    public ResponseEntity<byte[]> getPreview(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "maxSize", defaultValue = "256") int maxSize) {
+
+        if (file.isEmpty() || maxSize < 16 || maxSize > 4096) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try (InputStream in = file.getInputStream();
+             PooledBuffer buffer = bufferPool.read(in, file.getSize())) {
+            ImagePreview preview = previewService.getPreview(buffer, maxSize);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_TYPE, preview.getContentType())
+                    .header("X-Preview-Source", preview.isEmbedded() ? "embedded" : "decoded")
+                    .body(preview.getData());
+
+        } catch (AnalysisLimitException e) {
+            System.err.println("Preview limit exceeded for " + file.getOriginalFilename() + ": " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_CONTENT).build();
+        } catch (Exception e) {
+            System.err.println("Error creating preview: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
     }
 
-    private String getContentTypeForFilename(String filename) {
-        if (filename.endsWith(".jpg") || filename.endsWith(".jpeg")) return "image/jpeg";
-        if (filename.endsWith(".png")) return "image/png";
-        if (filename.endsWith(".gif")) return "image/gif";
-        if (filename.endsWith(".bmp")) return "image/bmp";
-        if (filename.endsWith(".tif") || filename.endsWith(".tiff")) return "image/tiff";
-        if (filename.endsWith(".pcx")) return "image/x-pcx";
-        return "application/octet-stream";
+    // Фрагмент или уменьшенная копия большого изображения; width/height = 0 - до края изображения
+    @PostMapping("/region")
+    public ResponseEntity<byte[]> getRegion(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "x", defaultValue = "0") int x,
+            @RequestParam(value = "y", defaultValue = "0") int y,
+            @RequestParam(value = "width", defaultValue = "0") int width,
+            @RequestParam(value = "height", defaultValue = "0") int height,
+            @RequestParam(value = "subsampling", defaultValue = "0") int subsampling,
+            @RequestParam(value = "maxSize", defaultValue = "0") int maxSize,
+            @RequestParam(value = "format", defaultValue = "jpeg") String format) {
+
+        if (file.isEmpty() || subsampling < 0 || maxSize < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Path tempFile = null;
+        try {
+            // Файл декодируется с диска: многогигабайтный TIFF не загружается в память целиком
+            tempFile = Files.createTempFile("region-", ".img");
+            file.transferTo(tempFile);
+
+            ImageRegion region = regionDecodeService.decodeRegion(tempFile,
+                    new Rectangle(x, y, width, height), subsampling, maxSize, format);
+            System.out.println("Region " + region.getX() + "," + region.getY() + " " + region.getWidth() + "x" + region.getHeight()
+                    + " of " + file.getOriginalFilename() + " decoded in " + region.getDecodeMillis() + " ms by " + region.getReader());
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_TYPE, region.getContentType())
+                    .header("X-Image-Size", region.getImageWidth() + "x" + region.getImageHeight())
+                    .header("X-Region", region.getX() + "," + region.getY() + "," + region.getWidth() + "," + region.getHeight())
+                    .header("X-Subsampling", String.valueOf(region.getSubsampling()))
+                    .header("X-Level", String.valueOf(region.getLevel()))
+                    .header("X-Decode-Millis", String.valueOf(region.getDecodeMillis()))
+                    .body(region.getData());
+
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid region request: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (AnalysisLimitException e) {
+            System.err.println("Region decode limit exceeded for " + file.getOriginalFilename() + ": " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_CONTENT).build();
+        } catch (Exception e) {
+            System.err.println("Error decoding region: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        } finally {
+            deleteTempFile(tempFile);
+        }
+    }
+
+    // Размер, уровни пирамиды и деление на полосы/тайлы - чтобы клиент выбирал области по блокам
+    @PostMapping("/region/layout")
+    public ResponseEntity<ImageLayout> getRegionLayout(@RequestParam("file") MultipartFile file) {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile("region-", ".img");
+            file.transferTo(tempFile);
+            return ResponseEntity.ok(regionDecodeService.getLayout(tempFile));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            System.err.println("Error reading image layout: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        } finally {
+            deleteTempFile(tempFile);
+        }
+    }
+
+    private void deleteTempFile(Path tempFile) {
+        if (tempFile == null) return;
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            System.err.println("Failed to delete temp file " + tempFile + ": " + e.getMessage());
+        }
+    }
+
+    private void collectHash(ImageMetadata metadata, List<String> filenames, List<Long> hashes) {
+        if (metadata.getPerceptualHash() == null) return;
+        filenames.add(metadata.getFilename());
+        hashes.add(PerceptualHashService.fromHex(metadata.getPerceptualHash()));
+    }
+
+    private List<DuplicateCluster> clusterDuplicates(List<String> filenames, List<Long> hashes, int maxDistance) {
+        long[] hashArray = new long[hashes.size()];
+        for (int i = 0; i < hashArray.length; i++) {
+            hashArray[i] = hashes.get(i);
+        }
+
+        List<DuplicateCluster> clusters = duplicateDetectionService.cluster(filenames, hashArray, maxDistance);
+        System.out.println("Found " + clusters.size() + " duplicate clusters among " + filenames.size() + " files");
+        return clusters;
+    }
+
+    private ResponseEntity<StreamingResponseBody> exportResponse(ExportFormat format, StreamingResponseBody body) {
+        // Тело пишется в другом потоке, клиент для планировщика передаётся явно
+        String client = AnalysisScheduler.currentClient();
+        StreamingResponseBody clientBody = out -> {
+            AnalysisScheduler.setCurrentClient(client);
+            try {
+                body.writeTo(out);
+            } finally {
+                AnalysisScheduler.setCurrentClient(null);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, format.getContentType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"results." + format.getExtension() + "\"")
+                .body(clientBody);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,19 @@
+package by.pkg.pkg_lab_2.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+// Событие потока прогресса: результат очередного файла и оценки по фактическому ходу анализа
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AnalysisProgress {
+    private int processed;
+    private Integer total;
+    private long processedBytes;
+    private long totalBytes;
+    private long elapsedMillis;
+    private double filesPerSecond;
+    private double bytesPerSecond;
+    private Double etaSeconds;
+    private ImageMetadata result;
+}
@@ -0,0 +1,33 @@
+package by.pkg.pkg_lab_2.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ClusterStats {
+    private int shardFiles;
+    private long shardBytes;
+    private int maxAttempts;
+    private long jobs;
+    private long shards;
+    private long retriedShards;
+    private long localShards;
+    private long maxWindowBytes;
+    private long rejectedJobs;
+    private List<WorkerStats> workers = new ArrayList<>();
+
+    @Data
+    public static class WorkerStats {
+        private String url;
+        private int slots;
+        private boolean available;
+        private long shards;
+        private long failedShards;
+        private long files;
+        private long bytesSent;
+        private double averageShardMillis;
+        private String lastError;
+    }
+}
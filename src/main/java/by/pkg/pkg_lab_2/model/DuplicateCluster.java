@@ -0,0 +1,13 @@
+package by.pkg.pkg_lab_2.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class DuplicateCluster {
+    private List<String> files = new ArrayList<>();
+    private List<String> hashes = new ArrayList<>();
+    private int maxDistance;
+}
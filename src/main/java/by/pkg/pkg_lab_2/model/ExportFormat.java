@@ -0,0 +1,31 @@
+package by.pkg.pkg_lab_2.model;
+
+public enum ExportFormat {
+    CSV("text/csv; charset=UTF-8", "csv"),
+    COLUMNAR("application/x-pkg-columnar", "pkgc");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static ExportFormat fromParameter(String value) {
+        if (value == null) return CSV;
+        return switch (value.trim().toLowerCase()) {
+            case "csv" -> CSV;
+            case "columnar", "binary", "pkgc" -> COLUMNAR;
+            default -> throw new IllegalArgumentException("Unsupported export format: " + value);
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package by.pkg.pkg_lab_2.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ImageLayout {
+    private String format;
+    private int width;
+    private int height;
+    private List<Level> levels = new ArrayList<>();
+
+    // Уровень пирамиды (для TIFF - IFD с уменьшенной копией) и его деление на блоки
+    @Data
+    public static class Level {
+        private int index;
+        private int width;
+        private int height;
+        private boolean tiled;
+        private int blockWidth;
+        private int blockHeight;
+        private int blocks;
+    }
+}
@@ -1,5 +1,6 @@
 package by.pkg.pkg_lab_2.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 import java.util.Map;
@@ -15,6 +16,12 @@ public class ImageMetadata {
     private String format;
     private Map<String, String> additionalInfo;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String perceptualHash;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private PixelStatistics pixelStatistics;
+
     public ImageMetadata(String filename) {
         this.filename = filename;
     }
@@ -0,0 +1,12 @@
+package by.pkg.pkg_lab_2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ImagePreview {
+    private byte[] data;
+    private String contentType;
+    private boolean embedded;
+}
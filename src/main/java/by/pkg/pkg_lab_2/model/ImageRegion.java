@@ -0,0 +1,21 @@
+package by.pkg.pkg_lab_2.model;
+
+import lombok.Data;
+
+@Data
+public class ImageRegion {
+    private byte[] data;
+    private String contentType;
+    private int imageWidth;
+    private int imageHeight;
+    private int x;
+    private int y;
+    private int width;
+    private int height;
+    private int subsampling;
+    private int level;
+    private int outputWidth;
+    private int outputHeight;
+    private String reader;
+    private long decodeMillis;
+}
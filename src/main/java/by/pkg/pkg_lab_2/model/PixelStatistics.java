@@ -0,0 +1,13 @@
+package by.pkg.pkg_lab_2.model;
+
+import lombok.Data;
+
+@Data
+public class PixelStatistics {
+    private String[] channels;
+    private double[] mean;
+    private double[] entropy;
+    private long[][] histograms;
+    private long sampledPixels;
+    private int subsampling;
+}
@@ -0,0 +1,16 @@
+package by.pkg.pkg_lab_2.model;
+
+import lombok.Data;
+
+@Data
+public class RecordingStatus {
+    private boolean available;
+    private boolean running;
+    private long id;
+    private String settings;
+    private String startTime;
+    private long maxDurationSeconds;
+    private long elapsedSeconds;
+    private long sizeBytes;
+    private String file;
+}
@@ -0,0 +1,40 @@
+package by.pkg.pkg_lab_2.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class SchedulerStats {
+    private int workers;
+    private int running;
+    private int queued;
+    private int maxQueued;
+    // Потоки с задачами, отменёнными по таймауту, и сколько из них осталось без замены из-за лимита
+    private int abandonedWorkers;
+    private long unreplacedWorkers;
+    private long submitted;
+    private long completed;
+    private long throttled;
+    private long rejectedRequests;
+    private double averageWaitMillis;
+    private double p50WaitMillis;
+    private double p95WaitMillis;
+    private double p99WaitMillis;
+    private double maxWaitMillis;
+    private List<ClientStats> clients = new ArrayList<>();
+
+    @Data
+    public static class ClientStats {
+        private String client;
+        private int weight;
+        private int queued;
+        private int running;
+        private long submitted;
+        private long completed;
+        private long throttled;
+        private double averageWaitMillis;
+        private double maxWaitMillis;
+    }
+}
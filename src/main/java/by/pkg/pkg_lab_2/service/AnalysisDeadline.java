@@ -0,0 +1,124 @@
+package by.pkg.pkg_lab_2.service;
+
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadProgressListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+
+/*
+Ограничения на анализ одного файла: время и объём памяти, выделенной потоком анализа.
+Проверяются между этапами анализа (checkpoint) и во время декодирования - через слушатель
+прогресса ImageReader, который прерывает чтение вызовом abort().
+*/
+public class AnalysisDeadline {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final long timeoutNanos;
+    private final long maxAllocatedBytes;
+
+    private volatile long startNanos;
+    private volatile long threadId = -1;
+    private volatile long startAllocatedBytes;
+    private volatile boolean cancelled;
+    private volatile boolean aborted;
+
+    public AnalysisDeadline(Duration timeout, long maxAllocatedBytes) {
+        this.timeoutNanos = timeout.toNanos();
+        this.maxAllocatedBytes = maxAllocatedBytes;
+        this.startNanos = System.nanoTime();
+    }
+
+    // Вызывается в потоке, который выполняет анализ
+    public void start() {
+        startNanos = System.nanoTime();
+        threadId = Thread.currentThread().getId();
+        startAllocatedBytes = getAllocatedBytes(threadId);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public void checkpoint() throws AnalysisLimitException {
+        String reason = getExceededReason();
+        if (reason != null) {
+            throw new AnalysisLimitException(reason);
+        }
+        if (aborted) {
+            throw new AnalysisLimitException("Декодирование прервано");
+        }
+    }
+
+    public void attach(ImageReader reader) {
+        reader.addIIOReadProgressListener(new IIOReadProgressListener() {
+            @Override
+            public void imageProgress(ImageReader source, float percentageDone) {
+                if (getExceededReason() != null) {
+                    source.abort();
+                }
+            }
+
+            @Override
+            public void readAborted(ImageReader source) {
+                aborted = true;
+            }
+
+            @Override
+            public void sequenceStarted(ImageReader source, int minIndex) {
+            }
+
+            @Override
+            public void sequenceComplete(ImageReader source) {
+            }
+
+            @Override
+            public void imageStarted(ImageReader source, int imageIndex) {
+            }
+
+            @Override
+            public void imageComplete(ImageReader source) {
+            }
+
+            @Override
+            public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) {
+            }
+
+            @Override
+            public void thumbnailProgress(ImageReader source, float percentageDone) {
+            }
+
+            @Override
+            public void thumbnailComplete(ImageReader source) {
+            }
+        });
+    }
+
+    private String getExceededReason() {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            return "Анализ отменён по таймауту";
+        }
+        if (System.nanoTime() - startNanos > timeoutNanos) {
+            return "Превышено время анализа (" + Duration.ofNanos(timeoutNanos).toSeconds() + " с)";
+        }
+        if (maxAllocatedBytes > 0 && threadId >= 0) {
+            long allocated = getAllocatedBytes(threadId) - startAllocatedBytes;
+            if (startAllocatedBytes >= 0 && allocated > maxAllocatedBytes) {
+                return "Превышен лимит памяти (" + formatLimit(maxAllocatedBytes) + ")";
+            }
+        }
+        return null;
+    }
+
+    private static String formatLimit(long bytes) {
+        return bytes >= 1024 * 1024 ? bytes / (1024 * 1024) + " MB" : bytes / 1024 + " KB";
+    }
+
+    static long getAllocatedBytes(long threadId) {
+        if (THREADS instanceof com.sun.management.ThreadMXBean sunThreads &&
+                sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+            return sunThreads.getThreadAllocatedBytes(threadId);
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,7 @@
+package by.pkg.pkg_lab_2.service;
+
+public class AnalysisLimitException extends Exception {
+    public AnalysisLimitException(String message) {
+        super(message);
+    }
+}
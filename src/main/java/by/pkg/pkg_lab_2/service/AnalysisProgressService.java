@@ -0,0 +1,158 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.AnalysisProgress;
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/*
+Поток прогресса анализа в формате Server-Sent Events.
+
+События:
+- start    - число файлов (если известно) и общий объём входных данных
+- result   - метаданные очередного файла, сколько обработано, скорость и оценка оставшегося времени
+- complete - итог: число файлов, время, средняя скорость
+- failed   - анализ прерван ошибкой, data - сообщение
+
+Оставшееся время считается по байтам: для ZIP архива число записей заранее неизвестно,
+а прочитанная часть архива известна всегда. Если клиент закрыл соединение, анализ
+останавливается на следующем файле.
+
+Каждый поток занимает отдельный поток исполнения на всё время анализа, поэтому одновременных
+потоков не больше analyzer.progress.max-streams; сверх лимита stream() бросает RejectedExecutionException
+(контроллер отвечает 503 с Retry-After), а не запускает ещё один поток.
+*/
+@Service
+public class AnalysisProgressService {
+    @Value("${analyzer.progress.timeout:30m}")
+    private Duration timeout = Duration.ofMinutes(30);
+
+    @Value("${analyzer.progress.max-streams:16}")
+    private int maxStreams = 16;
+
+    private ExecutorService streamExecutor;
+
+    public SseEmitter stream(Integer totalFiles, long totalBytes, AnalysisTask task) throws RejectedExecutionException {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+
+        getStreamExecutor().execute(AnalysisScheduler.withClient(AnalysisScheduler.currentClient(), () -> {
+            ProgressTracker tracker = new ProgressTracker(totalFiles, totalBytes);
+            try {
+                emitter.send(SseEmitter.event().name("start").data(tracker.snapshot(null), MediaType.APPLICATION_JSON));
+                task.run((metadata, consumedBytes) -> emitter.send(SseEmitter.event().name("result")
+                        .data(tracker.next(metadata, consumedBytes), MediaType.APPLICATION_JSON)));
+                emitter.send(SseEmitter.event().name("complete").data(tracker.complete(), MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // Клиент отключился или emitter уже закрыт по таймауту - дальнейший анализ никому не нужен
+                System.err.println("Progress stream closed by client after " + tracker.processed + " files");
+                emitter.completeWithError(e);
+            } catch (Exception e) {
+                System.err.println("Error in progress stream: " + e.getMessage());
+                try {
+                    emitter.send(SseEmitter.event().name("failed").data(String.valueOf(e.getMessage())));
+                    emitter.complete();
+                } catch (IOException ignored) {
+                    emitter.completeWithError(e);
+                }
+            }
+        }));
+        return emitter;
+    }
+
+    // Без очереди: свободного потока нет - запрос отклоняется сразу, а не ждёт неопределённо долго
+    private synchronized ExecutorService getStreamExecutor() {
+        if (streamExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(maxStreams, maxStreams,
+                    60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "analysis-progress");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            streamExecutor = executor;
+        }
+        return streamExecutor;
+    }
+
+    @FunctionalInterface
+    public interface AnalysisTask {
+        void run(ProgressListener listener) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        // consumedBytes - сколько входных данных прочитано к моменту завершения файла (накопительно)
+        void onResult(ImageMetadata metadata, long consumedBytes) throws IOException;
+    }
+
+    static class ProgressTracker {
+        private final Integer totalFiles;
+        private final long totalBytes;
+        private final LongSupplier nanoClock;
+        private final long startNanos;
+        private int processed;
+        private long processedBytes;
+
+        ProgressTracker(Integer totalFiles, long totalBytes) {
+            this(totalFiles, totalBytes, System::nanoTime);
+        }
+
+        ProgressTracker(Integer totalFiles, long totalBytes, LongSupplier nanoClock) {
+            this.totalFiles = totalFiles;
+            this.totalBytes = totalBytes;
+            this.nanoClock = nanoClock;
+            this.startNanos = nanoClock.getAsLong();
+        }
+
+        AnalysisProgress next(ImageMetadata metadata, long consumedBytes) {
+            processed++;
+            processedBytes = Math.min(Math.max(processedBytes, consumedBytes), totalBytes);
+            return snapshot(metadata);
+        }
+
+        // Хвост архива (центральный каталог) не содержит изображений, поэтому итог выравнивается до полного объёма
+        AnalysisProgress complete() {
+            processedBytes = totalBytes;
+            AnalysisProgress progress = snapshot(null);
+            progress.setEtaSeconds(0.0);
+            return progress;
+        }
+
+        AnalysisProgress snapshot(ImageMetadata metadata) {
+            long elapsedNanos = nanoClock.getAsLong() - startNanos;
+            double seconds = elapsedNanos / 1e9;
+
+            AnalysisProgress progress = new AnalysisProgress();
+            progress.setProcessed(processed);
+            progress.setTotal(totalFiles);
+            progress.setProcessedBytes(processedBytes);
+            progress.setTotalBytes(totalBytes);
+            progress.setElapsedMillis(elapsedNanos / 1_000_000);
+            progress.setResult(metadata);
+
+            if (seconds > 0 && processed > 0) {
+                progress.setFilesPerSecond(processed / seconds);
+                progress.setBytesPerSecond(processedBytes / seconds);
+
+                if (totalFiles != null && totalFiles > 0 && totalBytes <= 0) {
+                    progress.setEtaSeconds((totalFiles - processed) * seconds / processed);
+                } else if (processedBytes > 0) {
+                    progress.setEtaSeconds((totalBytes - processedBytes) * seconds / processedBytes);
+                }
+            }
+            return progress;
+        }
+    }
+}
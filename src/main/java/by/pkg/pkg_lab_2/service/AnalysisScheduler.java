@@ -0,0 +1,595 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.SchedulerStats;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+Справедливый планировщик анализа файлов.
+
+Файлы всех запросов выполняются фиксированным числом потоков (workers, по умолчанию - число CPU).
+У каждого клиента своя очередь, очереди обходятся по кругу (weighted round-robin): клиент с весом w
+получает до w файлов подряд, затем ход переходит к следующему. Запрос на 10000 файлов из ZIP и
+запрос на 3 файла от другого клиента чередуются, поэтому маленький запрос ждёт не дольше
+нескольких файлов, а не весь архив.
+
+Ограничения скорости - token bucket на клиента:
+- files-per-second - файлы сверх лимита не отклоняются, а ждут в очереди появления токена
+- requests-per-second - запросы сверх лимита отклоняются с 429 (проверяет ClientRateLimitFilter)
+
+Bucket-ы хранятся отдельно от очередей и удаляются, только когда снова заполнились, - поэтому
+вытеснение простаивающей очереди не даёт клиенту новый запас запросов. Очередей - не больше
+MAX_CLIENTS: сверх лимита вытесняются давно не обращавшиеся клиенты без задач (LRU).
+
+Клиент определяется фильтром и передаётся через ThreadLocal (см. withClient для асинхронных ответов).
+
+Поток с задачей, отменённой по таймауту, замещается новым, но дополнительных потоков не больше
+max-abandoned-workers: сверх лимита задачи ждут в очереди, пока зависшие не завершатся.
+*/
+@Service
+public class AnalysisScheduler implements DisposableBean {
+    public static final String DEFAULT_CLIENT = "local";
+
+    private static final int MAX_CLIENTS = 1024;
+    private static final int MAX_RATE_LIMITS = 16 * MAX_CLIENTS;
+    private static final int WAIT_BUCKETS = 40;
+    private static final ThreadLocal<String> CURRENT_CLIENT = new ThreadLocal<>();
+
+    @Value("${analyzer.scheduler.workers:0}")
+    private int workers;
+
+    @Value("${analyzer.scheduler.client-weights:}")
+    private String clientWeights = "";
+
+    @Value("${analyzer.scheduler.files-per-second:0}")
+    private double filesPerSecond;
+
+    @Value("${analyzer.scheduler.files-burst:100}")
+    private int filesBurst = 100;
+
+    @Value("${analyzer.scheduler.requests-per-second:0}")
+    private double requestsPerSecond;
+
+    @Value("${analyzer.scheduler.requests-burst:20}")
+    private int requestsBurst = 20;
+
+    // 0 - столько же, сколько потоков анализа
+    @Value("${analyzer.scheduler.max-abandoned-workers:0}")
+    private int maxAbandonedWorkers;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    // Порядок доступа: в начале - клиенты, дольше всех не обращавшиеся к планировщику
+    private final Map<String, ClientQueue> clients = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, ClientLimits> rateLimits = new LinkedHashMap<>(16, 0.75f, true);
+    private final ArrayDeque<ClientQueue> ring = new ArrayDeque<>();
+    private Map<String, Integer> weights;
+    private int queued;
+    private int maxQueued;
+    private int liveWorkers;
+    private int targetWorkers;
+    private int abandonedWorkers;
+    private int running;
+    private boolean shutdown;
+
+    // Соль для имён клиентов в статистике: своя у каждого запуска, адреса нельзя подобрать перебором
+    private final byte[] clientSalt = new byte[16];
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+    // Отменённые задачи, для которых не запущен замещающий поток
+    private final AtomicLong unreplacedWorkers = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    // Гистограмма ожидания: корзина i - от 2^i до 2^(i+1) микросекунд
+    private final AtomicLongArray waitHistogram = new AtomicLongArray(WAIT_BUCKETS);
+
+    public AnalysisScheduler() {
+        new SecureRandom().nextBytes(clientSalt);
+    }
+
+    AnalysisScheduler(int workers, String clientWeights, double filesPerSecond, int filesBurst) {
+        this();
+        this.workers = workers;
+        this.clientWeights = clientWeights;
+        this.filesPerSecond = filesPerSecond;
+        this.filesBurst = filesBurst;
+    }
+
+    public static String currentClient() {
+        String client = CURRENT_CLIENT.get();
+        return client != null ? client : DEFAULT_CLIENT;
+    }
+
+    public static void setCurrentClient(String client) {
+        if (client == null) {
+            CURRENT_CLIENT.remove();
+        } else {
+            CURRENT_CLIENT.set(client);
+        }
+    }
+
+    // Для кода, который продолжает запрос в другом потоке (SSE, StreamingResponseBody)
+    public static Runnable withClient(String client, Runnable task) {
+        return () -> {
+            String previous = CURRENT_CLIENT.get();
+            setCurrentClient(client);
+            try {
+                task.run();
+            } finally {
+                setCurrentClient(previous);
+            }
+        };
+    }
+
+    public <T> Task<T> submit(Callable<T> callable) {
+        String client = currentClient();
+        Task<T> task = new Task<>(callable, client);
+
+        lock.lock();
+        try {
+            if (shutdown) throw new IllegalStateException("Scheduler is shut down");
+            ensureWorkers();
+
+            ClientQueue queue = getQueue(client);
+            queue.tasks.add(task);
+            queue.submitted++;
+            if (!queue.inRing) {
+                queue.inRing = true;
+                ring.addLast(queue);
+            }
+            queued++;
+            maxQueued = Math.max(maxQueued, queued);
+            submitted.incrementAndGet();
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        return task;
+    }
+
+    // 0 - запрос принят, иначе через сколько наносекунд можно повторить
+    public long tryAcquireRequest(String client) {
+        lock.lock();
+        ClientLimits limits;
+        try {
+            limits = getLimits(client);
+        } finally {
+            lock.unlock();
+        }
+        long delay = limits.requests.tryTake(System.nanoTime());
+        if (delay > 0) rejectedRequests.incrementAndGet();
+        return delay;
+    }
+
+    public SchedulerStats getStats() {
+        return getStats(false);
+    }
+
+    // anonymizeClients - адреса и идентификаторы клиентов заменяются хешем с солью
+    public SchedulerStats getStats(boolean anonymizeClients) {
+        SchedulerStats stats = new SchedulerStats();
+        lock.lock();
+        try {
+            stats.setWorkers(targetWorkers > 0 ? targetWorkers : getConfiguredWorkers());
+            stats.setRunning(running);
+            stats.setQueued(queued);
+            stats.setMaxQueued(maxQueued);
+            stats.setAbandonedWorkers(abandonedWorkers);
+
+            for (ClientQueue queue : clients.values()) {
+                SchedulerStats.ClientStats client = new SchedulerStats.ClientStats();
+                client.setClient(anonymizeClients ? anonymize(queue.name) : queue.name);
+                client.setWeight(queue.weight);
+                client.setQueued(queue.tasks.size());
+                client.setRunning(queue.running);
+                client.setSubmitted(queue.submitted);
+                client.setCompleted(queue.completed);
+                client.setThrottled(queue.throttled);
+                client.setAverageWaitMillis(queue.started > 0 ? queue.totalWaitNanos / 1e6 / queue.started : 0);
+                client.setMaxWaitMillis(queue.maxWaitNanos / 1e6);
+                stats.getClients().add(client);
+            }
+        } finally {
+            lock.unlock();
+        }
+        stats.getClients().sort(Comparator.comparing(SchedulerStats.ClientStats::getClient));
+
+        long started = 0;
+        long[] histogram = new long[WAIT_BUCKETS];
+        for (int i = 0; i < WAIT_BUCKETS; i++) {
+            histogram[i] = waitHistogram.get(i);
+            started += histogram[i];
+        }
+        stats.setSubmitted(submitted.get());
+        stats.setCompleted(completed.get());
+        stats.setThrottled(throttled.get());
+        stats.setRejectedRequests(rejectedRequests.get());
+        stats.setUnreplacedWorkers(unreplacedWorkers.get());
+        stats.setAverageWaitMillis(started > 0 ? totalWaitNanos.get() / 1e6 / started : 0);
+        stats.setMaxWaitMillis(maxWaitNanos.get() / 1e6);
+        stats.setP50WaitMillis(percentile(histogram, started, 0.50));
+        stats.setP95WaitMillis(percentile(histogram, started, 0.95));
+        stats.setP99WaitMillis(percentile(histogram, started, 0.99));
+        return stats;
+    }
+
+    @Override
+    public void destroy() {
+        lock.lock();
+        try {
+            shutdown = true;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Следующая задача по кругу очередей; null - планировщик остановлен или поток лишний
+    private Task<?> next() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                if (shutdown || liveWorkers - abandonedWorkers > targetWorkers) {
+                    liveWorkers--;
+                    return null;
+                }
+
+                long minDelay = Long.MAX_VALUE;
+                for (int i = ring.size(); i > 0; i--) {
+                    ClientQueue queue = ring.peekFirst();
+                    Task<?> head = queue.tasks.peekFirst();
+
+                    long delay = getLimits(queue.name).files.tryTake(System.nanoTime());
+                    if (delay == 0) {
+                        queue.tasks.pollFirst();
+                        // Под блокировкой: cancel() видит задачу либо в очереди, либо уже переданной потоку
+                        head.running = true;
+                        queue.served++;
+                        queue.running++;
+                        queued--;
+                        running++;
+
+                        if (queue.tasks.isEmpty()) {
+                            ring.pollFirst();
+                            queue.inRing = false;
+                            queue.served = 0;
+                        } else if (queue.served >= queue.weight) {
+                            ring.addLast(ring.pollFirst());
+                            queue.served = 0;
+                        }
+                        return head;
+                    }
+
+                    // Клиент исчерпал лимит файлов - ход переходит к следующему
+                    if (!head.throttled) {
+                        head.throttled = true;
+                        queue.throttled++;
+                        throttled.incrementAndGet();
+                    }
+                    ring.addLast(ring.pollFirst());
+                    queue.served = 0;
+                    minDelay = Math.min(minDelay, delay);
+                }
+
+                if (minDelay == Long.MAX_VALUE) {
+                    available.await();
+                } else {
+                    available.awaitNanos(minDelay);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finished(Task<?> task) {
+        lock.lock();
+        try {
+            if (task.abandoned) abandonedWorkers--;
+            running--;
+            ClientQueue queue = clients.get(task.client);
+            if (queue != null) {
+                queue.running--;
+                queue.completed++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        completed.incrementAndGet();
+    }
+
+    private void recordWait(Task<?> task, long waitNanos) {
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        long micros = Math.max(1, waitNanos / 1000);
+        waitHistogram.incrementAndGet(Math.min(WAIT_BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros)));
+
+        lock.lock();
+        try {
+            ClientQueue queue = clients.get(task.client);
+            if (queue != null) {
+                queue.started++;
+                queue.totalWaitNanos += waitNanos;
+                queue.maxWaitNanos = Math.max(queue.maxWaitNanos, waitNanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Задача, отменённая по таймауту во время выполнения, может ещё долго занимать поток.
+    // Вместо него запускается дополнительный поток, а лишний завершится после своей задачи.
+    // Когда дополнительных потоков уже getMaxAbandonedWorkers(), замены нет: очередь ждёт, пока
+    // зависшие задачи не завершатся, и их поток сам продолжит брать задачи
+    private void abandon(Task<?> task) {
+        lock.lock();
+        try {
+            if (shutdown || task.abandoned || !task.running) return;
+            task.abandoned = true;
+            abandonedWorkers++;
+            if (liveWorkers - targetWorkers < getMaxAbandonedWorkers()) {
+                startWorker();
+            } else {
+                unreplacedWorkers.incrementAndGet();
+                System.err.println("Analysis worker limit reached: " + abandonedWorkers
+                        + " timed out tasks still running, queued files wait for them");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // true - задача ещё стояла в очереди и удалена из неё, выполняться она уже не будет
+    private boolean dequeue(Task<?> task) {
+        lock.lock();
+        try {
+            ClientQueue queue = clients.get(task.client);
+            if (queue == null || !queue.tasks.remove(task)) return false;
+
+            queued--;
+            if (queue.tasks.isEmpty() && queue.inRing) {
+                ring.remove(queue);
+                queue.inRing = false;
+                queue.served = 0;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureWorkers() {
+        if (targetWorkers == 0) {
+            targetWorkers = getConfiguredWorkers();
+        }
+        while (liveWorkers < targetWorkers) {
+            startWorker();
+        }
+    }
+
+    private void startWorker() {
+        liveWorkers++;
+        Thread thread = new Thread(this::runWorker, "image-analysis");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void runWorker() {
+        try {
+            Task<?> task;
+            while ((task = next()) != null) {
+                task.run();
+                // Отмена через cancel(true) прерывает поток; флаг не должен достаться следующей задаче
+                Thread.interrupted();
+            }
+        } catch (InterruptedException e) {
+            lock.lock();
+            try {
+                liveWorkers--;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private int getConfiguredWorkers() {
+        return workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+    }
+
+    private int getMaxAbandonedWorkers() {
+        return maxAbandonedWorkers > 0 ? maxAbandonedWorkers : getConfiguredWorkers();
+    }
+
+    private String anonymize(String client) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(clientSalt);
+            byte[] hash = digest.digest(client.getBytes(StandardCharsets.UTF_8));
+            return "client-" + HexFormat.of().formatHex(hash, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ClientQueue getQueue(String client) {
+        ClientQueue queue = clients.get(client);
+        if (queue == null) {
+            if (clients.size() >= MAX_CLIENTS) {
+                evictIdleClients();
+            }
+            queue = new ClientQueue(client, getWeight(client));
+            clients.put(client, queue);
+        }
+        return queue;
+    }
+
+    // Сначала вытесняются давно не обращавшиеся клиенты. Очереди с задачами не трогаются -
+    // их число и так ограничено задачами в очереди
+    private void evictIdleClients() {
+        Iterator<ClientQueue> iterator = clients.values().iterator();
+        while (iterator.hasNext() && clients.size() >= MAX_CLIENTS) {
+            ClientQueue queue = iterator.next();
+            if (queue.tasks.isEmpty() && queue.running == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // Записи удаляются с начала (давно не использованные), когда оба bucket снова полны: новая запись
+    // была бы такой же. Сверх MAX_RATE_LIMITS удаляется самая старая запись, даже если она не заполнилась
+    private ClientLimits getLimits(String client) {
+        long now = System.nanoTime();
+        Iterator<ClientLimits> iterator = rateLimits.values().iterator();
+        while (iterator.hasNext()) {
+            ClientLimits eldest = iterator.next();
+            if (!eldest.isFull(now) && rateLimits.size() <= MAX_RATE_LIMITS) break;
+            iterator.remove();
+        }
+
+        ClientLimits limits = rateLimits.get(client);
+        if (limits == null) {
+            limits = new ClientLimits(new TokenBucket(filesPerSecond, filesBurst),
+                    new TokenBucket(requestsPerSecond, requestsBurst));
+            rateLimits.put(client, limits);
+        }
+        return limits;
+    }
+
+    // Формат: "10.0.0.5=4,batch-host=1"; клиенты без веса получают 1
+    private int getWeight(String client) {
+        if (weights == null) {
+            Map<String, Integer> parsed = new HashMap<>();
+            if (clientWeights != null && !clientWeights.isBlank()) {
+                for (String pair : clientWeights.split(",")) {
+                    String[] parts = pair.trim().split("=");
+                    if (parts.length != 2) {
+                        throw new IllegalArgumentException("Invalid analyzer.scheduler.client-weights entry: " + pair);
+                    }
+                    parsed.put(parts[0].trim(), Math.max(1, Integer.parseInt(parts[1].trim())));
+                }
+            }
+            weights = parsed;
+        }
+        return weights.getOrDefault(client, 1);
+    }
+
+    private static double percentile(long[] histogram, long count, double quantile) {
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(count * quantile);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                // Верхняя граница корзины
+                return (1L << (i + 1)) / 1000.0;
+            }
+        }
+        return (1L << histogram.length) / 1000.0;
+    }
+
+    private record ClientLimits(TokenBucket files, TokenBucket requests) {
+        boolean isFull(long nowNanos) {
+            return files.isFull(nowNanos) && requests.isFull(nowNanos);
+        }
+    }
+
+    private static class ClientQueue {
+        final String name;
+        final int weight;
+        final ArrayDeque<Task<?>> tasks = new ArrayDeque<>();
+        boolean inRing;
+        int served;
+        int running;
+        long submitted;
+        long completed;
+        long started;
+        long throttled;
+        long totalWaitNanos;
+        long maxWaitNanos;
+
+        ClientQueue(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+    }
+
+    public class Task<T> extends FutureTask<T> {
+        private final String client;
+        private final long enqueuedNanos = System.nanoTime();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile boolean running;
+        private boolean throttled;
+        private boolean abandoned;
+
+        Task(Callable<T> callable, String client) {
+            super(callable);
+            this.client = client;
+        }
+
+        // Время в очереди не входит в лимит времени анализа файла, поэтому сначала ждём начала выполнения
+        public boolean awaitStart(long timeout, TimeUnit unit) throws InterruptedException {
+            return started.await(timeout, unit);
+        }
+
+        @Override
+        public void run() {
+            recordWait(this, System.nanoTime() - enqueuedNanos);
+            started.countDown();
+            try {
+                super.run();
+            } finally {
+                running = false;
+                finished(this);
+            }
+        }
+
+        // Отмена только если задача ещё не передана потоку; иначе её результат нужно дождаться
+        public boolean cancelIfQueued() {
+            return dequeue(this) && super.cancel(false);
+        }
+
+        // Решение принимается под блокировкой планировщика: задача не может между проверкой и отменой
+        // перейти из очереди в поток и остаться ни удалённой из очереди, ни замещённой новым потоком
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            lock.lock();
+            try {
+                boolean wasRunning = running;
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                if (cancelled) {
+                    if (wasRunning) {
+                        abandon(this);
+                    } else {
+                        dequeue(this);
+                    }
+                }
+                return cancelled;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
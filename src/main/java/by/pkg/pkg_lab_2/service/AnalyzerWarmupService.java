@@ -0,0 +1,137 @@
+package by.pkg.pkg_lab_2.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.ImageReaderSpi;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+Прогрев после запуска (analyzer.warmup.enabled, по умолчанию выключен). Выполняется в фоновом потоке
+после ApplicationReadyEvent: сервер уже принимает запросы, запуск не удлиняется.
+1. Для каждого плагина ImageIO создаётся reader и кладётся в пул - классы TwelveMonkeys
+   загружаются сейчас, а не на первом запросе.
+2. Образцы из analyzer.warmup.samples-dir (путь разрешается в абсолютный и пишется в лог; не задан -
+   шаг пропускается) прогоняются через полный анализ (декодирование, dHash,
+   анализаторы форматов, статистика пикселей) и построение превью: загружаются и инициализируются
+   классы всех этих путей, пул reader-ов и буферов заполняется. Хэши образцов в индекс дубликатов не попадают.
+
+Это предзагрузка классов и reader-ов, а не прогрев JIT: одного прохода (iterations=1) по нескольким
+образцам мало, чтобы C2 скомпилировал горячие циклы - для этого нужны тысячи вызовов, т.е.
+большие iterations и более долгий прогрев.
+*/
+@Service
+public class AnalyzerWarmupService implements ApplicationListener<ApplicationReadyEvent> {
+    @Autowired
+    private ImageAnalyzerService imageAnalyzerService;
+
+    @Autowired
+    private PreviewService previewService;
+
+    @Autowired
+    private ImageReaderPool imageReaderPool;
+
+    @Autowired
+    private BufferPool bufferPool;
+
+    @Value("${analyzer.warmup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${analyzer.warmup.samples-dir:}")
+    private String samplesDir = "";
+
+    @Value("${analyzer.warmup.iterations:1}")
+    private int iterations = 1;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!enabled) return;
+
+        Thread thread = new Thread(this::warmUp, "analyzer-warmup");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    void warmUp() {
+        long start = System.nanoTime();
+        int plugins = loadPlugins();
+        int analyzed = primeAnalyzers();
+        System.out.printf("Warm-up: %d ImageIO plugins loaded, %d sample analyses in %d ms%n",
+                plugins, analyzed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private int loadPlugins() {
+        int loaded = 0;
+        for (ImageReaderSpi provider : imageReaderPool.getProviders()) {
+            try {
+                ImageReader reader = imageReaderPool.acquire(provider);
+                imageReaderPool.release(reader);
+                loaded++;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Warm-up: cannot create reader " + provider.getPluginClassName() + ": " + e.getMessage());
+            }
+        }
+
+        // JPEG writer нужен для превью
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (writers.hasNext()) {
+            writers.next().dispose();
+        }
+        return loaded;
+    }
+
+    private int primeAnalyzers() {
+        if (samplesDir == null || samplesDir.isBlank()) {
+            System.out.println("Warm-up: analyzer.warmup.samples-dir is not set, skipping analyzer priming");
+            return 0;
+        }
+        Path dir = Path.of(samplesDir).toAbsolutePath().normalize();
+        if (!Files.isDirectory(dir)) {
+            System.err.println("Warm-up: samples directory " + dir + " not found, skipping analyzer priming");
+            return 0;
+        }
+        System.out.println("Warm-up: priming analyzers with samples from " + dir);
+
+        List<Path> samples;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            samples = walk.filter(Files::isRegularFile)
+                    .filter(path -> ImageArchiveReader.isImageFile(path.getFileName().toString()))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            System.err.println("Warm-up: cannot list samples: " + e.getMessage());
+            return 0;
+        }
+
+        int analyzed = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (Path sample : samples) {
+                String name = sample.getFileName().toString();
+                // Те же direct-буферы из пула, что и в рабочем режиме
+                try (InputStream in = Files.newInputStream(sample);
+                     PooledBuffer buffer = bufferPool.read(in, Files.size(sample))) {
+                    imageAnalyzerService.warmUp(new PooledMultipartFile(name,
+                            ImageArchiveReader.getContentTypeForFilename(name.toLowerCase()), buffer), buffer.view());
+                    previewService.getPreview(buffer, 256);
+                    analyzed++;
+                } catch (Exception e) {
+                    // Повреждённые образцы (например, bad1.jpg) тоже прогревают ветки обработки ошибок
+                }
+            }
+        }
+        return analyzed;
+    }
+}
@@ -0,0 +1,130 @@
+package by.pkg.pkg_lab_2.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Пул direct-буферов для содержимого файлов.
+
+Буферы разбиты на классы размеров: 64 KB, 128 KB, ... 256 MB (степени двойки).
+Запрос округляется вверх до ближайшего класса, освобождённый буфер возвращается в очередь
+своего класса. Так многомегабайтные файлы не создают новых humongous-массивов в куче на каждый
+файл, а в установившемся режиме новые буферы почти не выделяются.
+
+Файлы больше самого крупного класса получают отдельный буфер, который в пул не возвращается.
+Размер, заявленный в непроверенных данных (например, в заголовке записи ZIP), нужно ограничивать
+MAX_CLASS_SIZE: буфер всё равно растёт по мере поступления данных.
+*/
+@Service
+public class BufferPool {
+    public static final long MAX_CLASS_SIZE = 1L << 28;
+
+    private static final int MIN_CLASS_SHIFT = 16;
+    private static final int MAX_CLASS_SHIFT = 28;
+    private static final int SCRATCH_SIZE = 64 * 1024;
+
+    // Промежуточный массив для копирования из InputStream в direct-буфер
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[SCRATCH_SIZE]);
+
+    private final List<Queue<ByteBuffer>> classes = new ArrayList<>(MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1);
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong allocations = new AtomicLong();
+    private final AtomicLong reuses = new AtomicLong();
+
+    @Value("${analyzer.buffers.max-pooled:512MB}")
+    private DataSize maxPooled;
+
+    public BufferPool() {
+        for (int shift = MIN_CLASS_SHIFT; shift <= MAX_CLASS_SHIFT; shift++) {
+            classes.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    public PooledBuffer acquire(long capacity) throws IOException {
+        if (capacity > Integer.MAX_VALUE - 8) {
+            throw new IOException("File is too large for a single buffer: " + capacity + " bytes");
+        }
+
+        int sizeClass = getSizeClass(capacity);
+        if (sizeClass < 0) {
+            allocations.incrementAndGet();
+            return new PooledBuffer(this, ByteBuffer.allocateDirect((int) capacity), -1);
+        }
+
+        ByteBuffer buffer = classes.get(sizeClass).poll();
+        if (buffer != null) {
+            pooledBytes.addAndGet(-buffer.capacity());
+            reuses.incrementAndGet();
+            buffer.clear();
+        } else {
+            allocations.incrementAndGet();
+            buffer = ByteBuffer.allocateDirect(1 << (sizeClass + MIN_CLASS_SHIFT));
+        }
+        return new PooledBuffer(this, buffer, sizeClass);
+    }
+
+    // Читает поток целиком; sizeHint - ожидаемый размер (или -1, если неизвестен)
+    public PooledBuffer read(InputStream in, long sizeHint) throws IOException {
+        return read(in, sizeHint, Integer.MAX_VALUE - 8);
+    }
+
+    // То же, но поток длиннее maxBytes отклоняется, как только прочитан лишний байт
+    public PooledBuffer read(InputStream in, long sizeHint, long maxBytes) throws IOException {
+        PooledBuffer pooled = acquire(Math.min(Math.max(sizeHint, 1L << MIN_CLASS_SHIFT), Math.max(maxBytes, 1)));
+        try {
+            byte[] scratch = SCRATCH.get();
+            int len;
+            while ((len = in.read(scratch)) > 0) {
+                if (pooled.size() + (long) len > maxBytes) {
+                    throw new IOException("Data exceeds the limit of " + maxBytes + " bytes");
+                }
+                pooled.append(scratch, len);
+            }
+            return pooled;
+        } catch (Throwable e) {
+            // В том числе OutOfMemoryError: Direct buffer memory при росте буфера
+            pooled.close();
+            throw e;
+        }
+    }
+
+    public long getAllocations() {
+        return allocations.get();
+    }
+
+    public long getReuses() {
+        return reuses.get();
+    }
+
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    void release(ByteBuffer buffer, int sizeClass) {
+        if (sizeClass < 0) return;
+
+        if (pooledBytes.addAndGet(buffer.capacity()) > maxPooled.toBytes()) {
+            pooledBytes.addAndGet(-buffer.capacity());
+            return;
+        }
+        classes.get(sizeClass).offer(buffer);
+    }
+
+    private static int getSizeClass(long capacity) {
+        int shift = MIN_CLASS_SHIFT;
+        while ((1L << shift) < capacity) {
+            shift++;
+        }
+        return shift > MAX_CLASS_SHIFT ? -1 : shift - MIN_CLASS_SHIFT;
+    }
+}
@@ -0,0 +1,60 @@
+package by.pkg.pkg_lab_2.service;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+public class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+    private int position;
+    private int mark;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        if (position >= buffer.limit()) return -1;
+        return buffer.get(position++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) return 0;
+
+        int remaining = buffer.limit() - position;
+        if (remaining <= 0) return -1;
+
+        int count = Math.min(len, remaining);
+        buffer.get(position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        int count = (int) Math.max(0, Math.min(n, buffer.limit() - position));
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return Math.max(0, buffer.limit() - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        mark = position;
+    }
+
+    @Override
+    public synchronized void reset() {
+        position = mark;
+    }
+}
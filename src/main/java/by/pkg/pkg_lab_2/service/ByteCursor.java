@@ -0,0 +1,91 @@
+package by.pkg.pkg_lab_2.service;
+
+import java.nio.ByteBuffer;
+
+/*
+Последовательное чтение структур (записи IFD, сегменты JPEG, чанки PNG) с проверкой границ.
+Чтение за концом данных не бросает исключение: возвращает 0 и снимает флаг isValid(),
+который проверяется один раз после разбора структуры.
+*/
+public class ByteCursor {
+    private final ByteBuffer data;
+    private final int limit;
+    private boolean littleEndian;
+    private int position;
+    private boolean valid = true;
+
+    public ByteCursor(ByteBuffer data, int position, int limit, boolean littleEndian) {
+        this.data = data;
+        this.position = position;
+        this.limit = Math.min(limit, data.limit());
+        this.littleEndian = littleEndian;
+    }
+
+    public ByteCursor(ByteBuffer data, boolean littleEndian) {
+        this(data, 0, data.limit(), littleEndian);
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public ByteCursor seek(int position) {
+        this.position = position;
+        if (position < 0 || position > limit) valid = false;
+        return this;
+    }
+
+    public ByteCursor skip(int count) {
+        return seek(position + count);
+    }
+
+    public int remaining() {
+        return Math.max(0, limit - position);
+    }
+
+    public boolean has(int count) {
+        return position >= 0 && count >= 0 && position <= limit - count;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public boolean isLittleEndian() {
+        return littleEndian;
+    }
+
+    public ByteCursor order(boolean littleEndian) {
+        this.littleEndian = littleEndian;
+        return this;
+    }
+
+    public int u8() {
+        if (!take(1)) return 0;
+        return data.get(position - 1) & 0xFF;
+    }
+
+    public int u16() {
+        if (!take(2)) return 0;
+        return ByteScan.u16(data, position - 2, littleEndian);
+    }
+
+    public int s32() {
+        if (!take(4)) return 0;
+        return ByteScan.s32(data, position - 4, littleEndian);
+    }
+
+    public long u32() {
+        return s32() & 0xFFFFFFFFL;
+    }
+
+    private boolean take(int count) {
+        if (!has(count)) {
+            valid = false;
+            position = limit;
+            return false;
+        }
+        position += count;
+        return true;
+    }
+}
@@ -0,0 +1,130 @@
+package by.pkg.pkg_lab_2.service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+Низкоуровневые операции над содержимым файла для анализаторов форматов.
+
+Чтение чисел - через VarHandle-представления ByteBuffer с явным порядком байт: одна невыровненная
+загрузка вместо сборки из отдельных байт, порядок байт самого буфера не используется и не меняется
+(буфер может читаться несколькими потоками). Чтение за границей данных возвращает 0, как и прежние
+ручные проверки в анализаторах.
+
+Поиск - SWAR: 8 байт за одну загрузку long. Для слова w и искомого байта b
+    x = w ^ (b * 0x0101010101010101)
+    (x - 0x0101010101010101) & ~x & 0x8080808080808080
+даёт старший бит в каждом нулевом байте x. Слово читается в little-endian, поэтому младший
+отмеченный байт - самое раннее совпадение (заём при вычитании может испортить только байты
+после настоящего нуля, но не до него).
+*/
+public final class ByteScan {
+    private static final VarHandle SHORT_BE = MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle SHORT_LE = MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_BE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_LE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    private ByteScan() {
+    }
+
+    public static boolean has(ByteBuffer data, int offset, int length) {
+        return offset >= 0 && length >= 0 && offset <= data.limit() - length;
+    }
+
+    public static int u8(ByteBuffer data, int offset) {
+        return has(data, offset, 1) ? data.get(offset) & 0xFF : 0;
+    }
+
+    public static int u16(ByteBuffer data, int offset, boolean littleEndian) {
+        if (!has(data, offset, 2)) return 0;
+        short value = littleEndian ? (short) SHORT_LE.get(data, offset) : (short) SHORT_BE.get(data, offset);
+        return value & 0xFFFF;
+    }
+
+    public static int u16be(ByteBuffer data, int offset) {
+        return u16(data, offset, false);
+    }
+
+    public static int u16le(ByteBuffer data, int offset) {
+        return u16(data, offset, true);
+    }
+
+    // 32 бита как int со знаком; беззнаковое значение - u32
+    public static int s32(ByteBuffer data, int offset, boolean littleEndian) {
+        if (!has(data, offset, 4)) return 0;
+        return littleEndian ? (int) INT_LE.get(data, offset) : (int) INT_BE.get(data, offset);
+    }
+
+    public static int s32be(ByteBuffer data, int offset) {
+        return s32(data, offset, false);
+    }
+
+    public static int s32le(ByteBuffer data, int offset) {
+        return s32(data, offset, true);
+    }
+
+    public static long u32(ByteBuffer data, int offset, boolean littleEndian) {
+        return s32(data, offset, littleEndian) & 0xFFFFFFFFL;
+    }
+
+    public static boolean matches(ByteBuffer data, int offset, byte[] pattern) {
+        if (!has(data, offset, pattern.length)) return false;
+        for (int i = 0; i < pattern.length; i++) {
+            if (data.get(offset + i) != pattern[i]) return false;
+        }
+        return true;
+    }
+
+    // Первое вхождение байта в [from, to) или -1
+    public static int indexOf(ByteBuffer data, int from, int to, byte value) {
+        from = Math.max(from, 0);
+        to = Math.min(to, data.limit());
+
+        long pattern = (value & 0xFFL) * ONES;
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES) {
+            long x = (long) LONG_LE.get(data, i) ^ pattern;
+            long found = (x - ONES) & ~x & HIGHS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (data.get(i) == value) return i;
+        }
+        return -1;
+    }
+
+    // Первая пара байт first, second, начинающаяся в [from, to - 1), или -1
+    public static int indexOf(ByteBuffer data, int from, int to, byte first, byte second) {
+        to = Math.min(to, data.limit());
+        int i = from;
+        while ((i = indexOf(data, i, to - 1, first)) >= 0) {
+            if (data.get(i + 1) == second) return i;
+            i++;
+        }
+        return -1;
+    }
+
+    // Первые 4 байта, равные pattern в big-endian (например 'IHDR' = 0x49484452), или -1
+    public static int indexOf(ByteBuffer data, int from, int to, int pattern) {
+        to = Math.min(to, data.limit());
+        byte first = (byte) (pattern >>> 24);
+        int i = from;
+        while ((i = indexOf(data, i, to - 3, first)) >= 0) {
+            if ((int) INT_BE.get(data, i) == pattern) return i;
+            i++;
+        }
+        return -1;
+    }
+
+    public static int fourCC(String tag) {
+        return (tag.charAt(0) << 24) | (tag.charAt(1) << 16) | (tag.charAt(2) << 8) | tag.charAt(3);
+    }
+}
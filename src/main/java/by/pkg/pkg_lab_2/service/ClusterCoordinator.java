@@ -0,0 +1,499 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ClusterStats;
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+Режим координатора: большой пакет делится на шарды, которые анализируют другие экземпляры
+приложения (analyzer.cluster.workers) через обычный POST /api/images/analyze.
+
+- Шард - до shard-files файлов и до shard-bytes байт подряд из входного списка или ZIP архива.
+  Записи ZIP остаются в буферах из пула (retain) до ответа узла, поэтому повтор не перечитывает архив.
+- На каждый узел запускается столько потоков-слотов, сколько у него потоков анализа; слот берёт
+  следующий шард из общей очереди, так что быстрый узел получает больше шардов. Всего потоков-слотов
+  на все одновременные пакеты - не больше max-slot-threads.
+- Шард, на котором узел ответил ошибкой или не ответил за request-timeout, возвращается в начало
+  очереди и уходит другому слоту; после max-attempts попыток - или если недоступны все узлы -
+  он анализируется локально.
+- Результаты собираются по номерам шардов, порядок совпадает с порядком файлов во входных данных.
+- В памяти одновременно не больше 2 шардов на слот и не больше max-window-bytes: чтение архива ждёт,
+  пока узлы не освободятся. Слоты сверх max-slot-threads ждут в очереди до max-queued-slots, дальше
+  пакет отклоняется (RejectedExecutionException).
+- Исходный клиент передаётся узлам в заголовке CLIENT_HEADER (или analyzer.scheduler.client-header),
+  узел учитывает его, если адрес координатора указан в analyzer.cluster.trusted-coordinators.
+- Эндпоинты координатора выключены, пока не задано analyzer.cluster.enabled=true.
+*/
+@Service
+public class ClusterCoordinator implements DisposableBean {
+    public static final String CLIENT_HEADER = "X-Analyzer-Client";
+
+    @Autowired
+    private ImageAnalyzerService imageAnalyzerService;
+
+    @Autowired
+    private ImageArchiveReader imageArchiveReader;
+
+    @Value("${analyzer.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${analyzer.cluster.workers:}")
+    private String workerUrls = "";
+
+    @Value("${analyzer.cluster.slots-per-worker:0}")
+    private int slotsPerWorker;
+
+    @Value("${analyzer.cluster.shard-files:100}")
+    private int shardFiles = 100;
+
+    @Value("${analyzer.cluster.shard-bytes:32MB}")
+    private DataSize shardBytes = DataSize.ofMegabytes(32);
+
+    @Value("${analyzer.cluster.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${analyzer.cluster.connect-timeout:5s}")
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    @Value("${analyzer.cluster.request-timeout:10m}")
+    private Duration requestTimeout = Duration.ofMinutes(10);
+
+    @Value("${analyzer.scheduler.client-header:}")
+    private String clientHeader;
+
+    private final SmileMapper smileMapper = SmileMapper.builder().build();
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    @Value("${analyzer.cluster.max-slot-threads:64}")
+    private int maxSlotThreads = 64;
+
+    @Value("${analyzer.cluster.max-queued-slots:256}")
+    private int maxQueuedSlots = 256;
+
+    // Записи ZIP в окне - direct буферы из пула: 2 шарда на слот по shard-bytes быстро исчерпали бы память
+    @Value("${analyzer.cluster.max-window-bytes:256MB}")
+    private DataSize maxWindowBytes = DataSize.ofMegabytes(256);
+
+    private volatile List<ClusterWorker> workers;
+    private ExecutorService slotExecutor;
+
+    private final AtomicLong jobs = new AtomicLong();
+    private final AtomicLong shards = new AtomicLong();
+    private final AtomicLong retriedShards = new AtomicLong();
+    private final AtomicLong localShards = new AtomicLong();
+    private final AtomicLong rejectedJobs = new AtomicLong();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<ImageMetadata> analyzeImages(MultipartFile[] files, boolean pixelStats) throws IOException {
+        Job job = startJob(pixelStats);
+        try {
+            for (MultipartFile file : files) {
+                job.add(file, null);
+            }
+            return job.finish();
+        } finally {
+            job.abandon();
+        }
+    }
+
+    // Архив читается потоком; очередная запись ждёт места в окне шардов, а не копится в памяти
+    public List<ImageMetadata> analyzeZip(InputStream zipStream, boolean pixelStats) throws IOException {
+        Job job = startJob(pixelStats);
+        try {
+            imageArchiveReader.forEachImage(zipStream, file -> {
+                PooledBuffer retained = file instanceof PooledMultipartFile pooledFile
+                        ? pooledFile.getPooledBuffer().retain()
+                        : null;
+                job.add(file, retained);
+            });
+            return job.finish();
+        } finally {
+            job.abandon();
+        }
+    }
+
+    public ClusterStats getStats() {
+        ClusterStats stats = new ClusterStats();
+        stats.setShardFiles(shardFiles);
+        stats.setShardBytes(shardBytes.toBytes());
+        stats.setMaxAttempts(maxAttempts);
+        stats.setJobs(jobs.get());
+        stats.setShards(shards.get());
+        stats.setRetriedShards(retriedShards.get());
+        stats.setLocalShards(localShards.get());
+        stats.setMaxWindowBytes(maxWindowBytes.toBytes());
+        stats.setRejectedJobs(rejectedJobs.get());
+        for (ClusterWorker worker : getWorkers()) {
+            stats.getWorkers().add(worker.getStats());
+        }
+        return stats;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (slotExecutor != null) {
+            slotExecutor.shutdownNow();
+        }
+    }
+
+    private Job startJob(boolean pixelStats) {
+        List<ClusterWorker> cluster = getWorkers();
+        if (cluster.isEmpty()) {
+            throw new IllegalStateException("Cluster mode is not configured (analyzer.cluster.workers is empty)");
+        }
+
+        // Число потоков узла могло измениться после перезапуска - спрашиваем перед каждым пакетом
+        CompletableFuture.allOf(cluster.stream()
+                .map(worker -> worker.refreshSlots(slotsPerWorker, connectTimeout))
+                .toArray(CompletableFuture[]::new)).join();
+
+        Job job = new Job(pixelStats, AnalysisScheduler.currentClient(), cluster);
+        jobs.incrementAndGet();
+        ExecutorService executor = getSlotExecutor();
+        try {
+            for (ClusterWorker worker : cluster) {
+                for (int i = 0; i < worker.getSlots(); i++) {
+                    executor.execute(AnalysisScheduler.withClient(job.client, () -> runSlot(job, worker)));
+                }
+            }
+        } catch (RejectedExecutionException e) {
+            // Уже поставленные слоты этого пакета выйдут, не взяв ни одного шарда
+            job.abandon();
+            rejectedJobs.incrementAndGet();
+            throw e;
+        }
+        return job;
+    }
+
+    private List<ClusterWorker> getWorkers() {
+        List<ClusterWorker> current = workers;
+        if (current == null) {
+            synchronized (this) {
+                if (workers == null) {
+                    HttpClient httpClient = HttpClient.newBuilder()
+                            .version(HttpClient.Version.HTTP_1_1)
+                            .connectTimeout(connectTimeout)
+                            .build();
+                    List<ClusterWorker> parsed = new ArrayList<>();
+                    for (String url : workerUrls.split(",")) {
+                        if (!url.isBlank()) {
+                            parsed.add(new ClusterWorker(url.trim(), httpClient, smileMapper, jsonMapper));
+                        }
+                    }
+                    workers = List.copyOf(parsed);
+                }
+                current = workers;
+            }
+        }
+        return current;
+    }
+
+    // Потоков-слотов не больше max-slot-threads на все пакеты сразу: слоты сверх лимита ждут в очереди
+    // и запускаются, когда освобождаются потоки завершившихся пакетов. Очередь тоже ограничена
+    private synchronized ExecutorService getSlotExecutor() {
+        if (slotExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(maxSlotThreads, maxSlotThreads,
+                    60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(maxQueuedSlots), runnable -> {
+                        Thread thread = new Thread(runnable, "cluster-slot");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            slotExecutor = executor;
+        }
+        return slotExecutor;
+    }
+
+    private void runSlot(Job job, ClusterWorker worker) {
+        while (true) {
+            long backoff = worker.backoffRemainingMillis();
+            if (backoff > 0 && !job.allWorkersBackingOff()) {
+                // Узел недоступен - шарды достаются другим узлам
+                if (!job.awaitDone(Math.min(backoff, 200))) continue;
+                return;
+            }
+
+            Shard shard = job.next();
+            if (shard == null) return;
+
+            List<ImageMetadata> results;
+            try {
+                // Недоступны все узлы: шард анализируется здесь, чтобы пакет не стоял
+                results = backoff > 0
+                        ? analyzeLocally(shard, job.pixelStats)
+                        : analyzeRemotely(job, worker, shard);
+            } catch (RuntimeException e) {
+                // Шард не должен остаться "в работе" - иначе запрос ждал бы его вечно
+                System.err.println("Cluster shard " + shard.index + " failed: " + e.getMessage());
+                job.fail(shard, e);
+                continue;
+            }
+            if (results != null) job.complete(shard, results);
+            if (Thread.currentThread().isInterrupted()) return;
+        }
+    }
+
+    // null - шард возвращён в очередь для другой попытки
+    private List<ImageMetadata> analyzeRemotely(Job job, ClusterWorker worker, Shard shard) {
+        try {
+            String header = clientHeader != null && !clientHeader.isBlank() ? clientHeader : CLIENT_HEADER;
+            return worker.analyze(shard.files, job.pixelStats, header, job.client, requestTimeout);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            worker.failed(e, e instanceof ClusterWorker.RetryLaterException retry ? retry.getRetryAfterMillis() : 0);
+            worker.failedShard();
+            shard.attempts++;
+            System.err.println("Cluster shard " + shard.index + " failed on " + worker.getBaseUrl()
+                    + " (attempt " + shard.attempts + "): " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            if (shard.attempts >= maxAttempts || Thread.currentThread().isInterrupted()) {
+                return analyzeLocally(shard, job.pixelStats);
+            }
+            retriedShards.incrementAndGet();
+            job.retry(shard);
+            return null;
+        }
+    }
+
+    private List<ImageMetadata> analyzeLocally(Shard shard, boolean pixelStats) {
+        localShards.incrementAndGet();
+        return imageAnalyzerService.analyzeImages(shard.files.toArray(new MultipartFile[0]), pixelStats);
+    }
+
+    private static class Shard {
+        final List<MultipartFile> files = new ArrayList<>();
+        final List<PooledBuffer> buffers = new ArrayList<>();
+        int index;
+        long bytes;
+        int attempts;
+
+        void release() {
+            for (PooledBuffer buffer : buffers) {
+                buffer.close();
+            }
+            buffers.clear();
+        }
+    }
+
+    private class Job {
+        final boolean pixelStats;
+        final String client;
+        final List<ClusterWorker> cluster;
+        final int window;
+        final long windowBytes;
+
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition changed = lock.newCondition();
+        final ArrayDeque<Shard> pending = new ArrayDeque<>();
+        final List<List<ImageMetadata>> results = new ArrayList<>();
+        Shard current;
+        RuntimeException failure;
+        int inFlight;
+        long inFlightBytes;
+        boolean sealed;
+        boolean abandoned;
+
+        Job(boolean pixelStats, String client, List<ClusterWorker> cluster) {
+            this.pixelStats = pixelStats;
+            this.client = client;
+            this.cluster = cluster;
+            this.window = 2 * cluster.stream().mapToInt(ClusterWorker::getSlots).sum();
+            this.windowBytes = maxWindowBytes.toBytes();
+        }
+
+        void add(MultipartFile file, PooledBuffer retained) throws IOException {
+            if (current != null && (current.files.size() >= shardFiles
+                    || (current.bytes > 0 && current.bytes + file.getSize() > shardBytes.toBytes()))) {
+                submit(current);
+                current = null;
+            }
+            if (current == null) {
+                current = new Shard();
+            }
+            current.files.add(file);
+            current.bytes += file.getSize();
+            if (retained != null) current.buffers.add(retained);
+        }
+
+        List<ImageMetadata> finish() throws IOException {
+            if (current != null) {
+                submit(current);
+                current = null;
+            }
+            lock.lock();
+            try {
+                sealed = true;
+                changed.signalAll();
+                while (inFlight > 0) {
+                    changed.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Cluster analysis interrupted", e);
+            } finally {
+                lock.unlock();
+            }
+            if (failure != null) {
+                throw new IOException("Cluster shard failed: " + failure.getMessage(), failure);
+            }
+
+            List<ImageMetadata> merged = new ArrayList<>();
+            for (List<ImageMetadata> shardResults : results) {
+                merged.addAll(shardResults);
+            }
+            return merged;
+        }
+
+        // Запрос завершился (в том числе ошибкой): слоты выходят, невзятые шарды освобождаются
+        void abandon() {
+            lock.lock();
+            try {
+                abandoned = true;
+                sealed = true;
+                for (Shard shard : pending) {
+                    shard.release();
+                    inFlight--;
+                    inFlightBytes -= shard.bytes;
+                }
+                pending.clear();
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (current != null) {
+                current.release();
+                current = null;
+            }
+        }
+
+        private void submit(Shard shard) throws IOException {
+            lock.lock();
+            try {
+                // Шард больше окна по байтам всё равно отправляется, но только когда окно пусто
+                while (!abandoned && (inFlight >= window
+                        || (inFlight > 0 && inFlightBytes + shard.bytes > windowBytes))) {
+                    changed.await();
+                }
+                shard.index = results.size();
+                results.add(null);
+                pending.addLast(shard);
+                inFlight++;
+                inFlightBytes += shard.bytes;
+                shards.incrementAndGet();
+                changed.signalAll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                shard.release();
+                throw new IOException("Cluster analysis interrupted", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Shard next() {
+            lock.lock();
+            try {
+                while (pending.isEmpty()) {
+                    if (sealed && (inFlight == 0 || abandoned)) return null;
+                    changed.await();
+                }
+                return pending.pollFirst();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void retry(Shard shard) {
+            lock.lock();
+            try {
+                if (abandoned) {
+                    shard.release();
+                    return;
+                }
+                // Повтор - первым в очереди, чтобы не задерживать сборку результатов
+                pending.addFirst(shard);
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void complete(Shard shard, List<ImageMetadata> shardResults) {
+            lock.lock();
+            try {
+                results.set(shard.index, shardResults);
+                inFlight--;
+                inFlightBytes -= shard.bytes;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            shard.release();
+        }
+
+        void fail(Shard shard, RuntimeException e) {
+            lock.lock();
+            try {
+                if (failure == null) failure = e;
+                inFlight--;
+                inFlightBytes -= shard.bytes;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            shard.release();
+        }
+
+        boolean awaitDone(long millis) {
+            lock.lock();
+            try {
+                if (sealed && inFlight == 0 || abandoned) return true;
+                changed.await(millis, TimeUnit.MILLISECONDS);
+                return sealed && inFlight == 0 || abandoned;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean allWorkersBackingOff() {
+            for (ClusterWorker worker : cluster) {
+                if (worker.backoffRemainingMillis() == 0) return false;
+            }
+            return true;
+        }
+    }
+}
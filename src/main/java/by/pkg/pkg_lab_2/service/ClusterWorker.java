@@ -0,0 +1,258 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ClusterStats;
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import by.pkg.pkg_lab_2.model.SchedulerStats;
+import org.springframework.web.multipart.MultipartFile;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Удалённый экземпляр анализатора для ClusterCoordinator.
+
+Шард отправляется на обычный POST /api/images/analyze (поле files), ответ запрашивается в Smile.
+Число одновременных запросов к узлу (slots) берётся из GET /api/images/scheduler - по одному
+на поток анализа узла: внутри запроса файлы анализируются по одному, поэтому slots запросов
+загружают все ядра узла.
+
+После ошибки узел пропускает шарды в течение паузы, которая удваивается с каждой ошибкой подряд
+(от 500 мс до 30 с); 429 задаёт паузу заголовком Retry-After.
+*/
+class ClusterWorker {
+    private static final String BOUNDARY = "----pkg-cluster-boundary";
+    private static final String SMILE = "application/x-jackson-smile";
+    private static final long MIN_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final TypeReference<List<ImageMetadata>> RESULTS = new TypeReference<>() {};
+
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private final SmileMapper smileMapper;
+    private final JsonMapper jsonMapper;
+
+    private volatile int slots = 1;
+    private volatile long backoffUntil;
+    private volatile String lastError;
+    private int consecutiveFailures;
+
+    private final AtomicLong shards = new AtomicLong();
+    private final AtomicLong failedShards = new AtomicLong();
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong shardNanos = new AtomicLong();
+
+    ClusterWorker(String baseUrl, HttpClient httpClient, SmileMapper smileMapper, JsonMapper jsonMapper) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.httpClient = httpClient;
+        this.smileMapper = smileMapper;
+        this.jsonMapper = jsonMapper;
+    }
+
+    String getBaseUrl() {
+        return baseUrl;
+    }
+
+    int getSlots() {
+        return slots;
+    }
+
+    // Число потоков анализа узла; fixedSlots > 0 задаёт его явно. Недоступный узел получает один слот
+    CompletableFuture<Void> refreshSlots(int fixedSlots, Duration timeout) {
+        if (fixedSlots > 0) {
+            slots = fixedSlots;
+            return CompletableFuture.completedFuture(null);
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/images/scheduler"))
+                .timeout(timeout)
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenAccept(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new UncheckedIOException(new IOException("HTTP " + response.statusCode()));
+                    }
+                    slots = Math.max(1, jsonMapper.readValue(response.body(), SchedulerStats.class).getWorkers());
+                })
+                .exceptionally(e -> {
+                    slots = 1;
+                    failed(e, 0);
+                    System.err.println("Cluster worker " + baseUrl + " is unavailable: " + lastError);
+                    return null;
+                });
+    }
+
+    List<ImageMetadata> analyze(List<MultipartFile> shard, boolean pixelStats, String clientHeader, String clientId,
+                                Duration timeout) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        List<byte[]> headers = new ArrayList<>(shard.size());
+        long length = 0;
+        for (MultipartFile file : shard) {
+            byte[] header = partHeader(file.getOriginalFilename());
+            headers.add(header);
+            length += header.length + file.getSize() + 2;
+        }
+        byte[] closing = ("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        length += closing.length;
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + "/api/images/analyze?pixelStats=" + pixelStats))
+                .timeout(timeout)
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .header("Accept", SMILE)
+                .POST(HttpRequest.BodyPublishers.fromPublisher(
+                        HttpRequest.BodyPublishers.ofInputStream(() -> body(shard, headers, closing)), length));
+        // Исходный клиент передаётся дальше, если узлы определяют клиента по заголовку
+        if (clientHeader != null && !clientHeader.isBlank()) {
+            builder.header(clientHeader, clientId);
+        }
+
+        HttpResponse<byte[]> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() == 429) {
+            long retrySeconds = response.headers().firstValueAsLong("Retry-After").orElse(1);
+            throw new RetryLaterException("HTTP 429 from " + baseUrl, retrySeconds * 1000);
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode() + " from " + baseUrl);
+        }
+
+        List<ImageMetadata> results = smileMapper.readValue(response.body(), RESULTS);
+        if (results == null || results.size() != shard.size()) {
+            throw new IOException(baseUrl + " returned " + (results == null ? 0 : results.size())
+                    + " results for " + shard.size() + " files");
+        }
+        // Имена берутся из шарда: узел мог изменить путь записи ZIP в имени части multipart
+        for (int i = 0; i < results.size(); i++) {
+            results.get(i).setFilename(shard.get(i).getOriginalFilename());
+        }
+
+        shards.incrementAndGet();
+        files.addAndGet(shard.size());
+        bytes.addAndGet(length);
+        shardNanos.addAndGet(System.nanoTime() - start);
+        synchronized (this) {
+            consecutiveFailures = 0;
+        }
+        return results;
+    }
+
+    long backoffRemainingMillis() {
+        return Math.max(0, backoffUntil - System.currentTimeMillis());
+    }
+
+    void failed(Throwable e, long retryAfterMillis) {
+        Throwable cause = e;
+        while ((cause instanceof CompletionException || cause instanceof UncheckedIOException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        lastError = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+        long backoff;
+        synchronized (this) {
+            consecutiveFailures++;
+            backoff = Math.min(MAX_BACKOFF_MILLIS, MIN_BACKOFF_MILLIS << Math.min(consecutiveFailures - 1, 16));
+        }
+        backoffUntil = System.currentTimeMillis() + Math.max(backoff, retryAfterMillis);
+    }
+
+    void failedShard() {
+        failedShards.incrementAndGet();
+    }
+
+    ClusterStats.WorkerStats getStats() {
+        ClusterStats.WorkerStats stats = new ClusterStats.WorkerStats();
+        stats.setUrl(baseUrl);
+        stats.setSlots(slots);
+        stats.setAvailable(backoffRemainingMillis() == 0);
+        stats.setShards(shards.get());
+        stats.setFailedShards(failedShards.get());
+        stats.setFiles(files.get());
+        stats.setBytesSent(bytes.get());
+        long completed = shards.get();
+        stats.setAverageShardMillis(completed == 0 ? 0 : shardNanos.get() / 1e6 / completed);
+        stats.setLastError(lastError);
+        return stats;
+    }
+
+    private static byte[] partHeader(String filename) {
+        // Кавычки и переводы строк в имени сломали бы заголовок части; имя всё равно восстанавливается из шарда
+        String safeName = filename == null ? "file" : URLEncoder.encode(filename, StandardCharsets.UTF_8).replace("+", "%20")
+                .replace("%2F", "/");
+        return ("--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"files\"; filename=\"" + safeName + "\"\r\n" +
+                "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    // Тело собирается из потоков файлов без копирования в общий массив; при повторе шарда - заново
+    private static InputStream body(List<MultipartFile> shard, List<byte[]> headers, byte[] closing) {
+        List<InputStream> parts = new ArrayList<>(shard.size() * 3 + 1);
+        for (int i = 0; i < shard.size(); i++) {
+            MultipartFile file = shard.get(i);
+            parts.add(new ByteArrayInputStream(headers.get(i)));
+            parts.add(new LazyInputStream(file));
+            parts.add(new ByteArrayInputStream(new byte[]{'\r', '\n'}));
+        }
+        parts.add(new ByteArrayInputStream(closing));
+        return new SequenceInputStream(Collections.enumeration(parts));
+    }
+
+    // Поток файла открывается, только когда до него дошла очередь, и закрывается по окончании
+    private static class LazyInputStream extends InputStream {
+        private final MultipartFile file;
+        private InputStream in;
+
+        LazyInputStream(MultipartFile file) {
+            this.file = file;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return open().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return open().read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) in.close();
+        }
+
+        private InputStream open() throws IOException {
+            if (in == null) in = file.getInputStream();
+            return in;
+        }
+    }
+
+    static class RetryLaterException extends IOException {
+        private final long retryAfterMillis;
+
+        RetryLaterException(String message, long retryAfterMillis) {
+            super(message);
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+    }
+}
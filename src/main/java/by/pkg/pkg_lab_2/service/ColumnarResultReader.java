@@ -0,0 +1,155 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+Чтение файла PKGC, записанного ColumnarResultWriter (формат описан там же).
+
+Читается по одной группе строк, поэтому память ограничена ROW_GROUP_SIZE строками.
+Заголовок должен совпадать с ResultExportWriter.COLUMNS: другая схема - другая версия формата.
+*/
+public class ColumnarResultReader implements AutoCloseable {
+    private static final int MAX_STRING_BYTES = 64 * 1024 * 1024;
+
+    private final InputStream in;
+    private final Deque<ImageMetadata> rows = new ArrayDeque<>();
+    private long readRows;
+    private boolean finished;
+
+    public ColumnarResultReader(InputStream in) throws IOException {
+        this.in = new BufferedInputStream(in, 64 * 1024);
+
+        byte[] magic = this.in.readNBytes(ColumnarResultWriter.MAGIC.length);
+        if (!Arrays.equals(magic, ColumnarResultWriter.MAGIC)) {
+            throw new IOException("Not a PKGC file");
+        }
+        int version = this.in.read();
+        if (version != ColumnarResultWriter.VERSION) {
+            throw new IOException("Unsupported PKGC version: " + version);
+        }
+        int columns = readCount();
+        String[] names = new String[columns];
+        for (int i = 0; i < columns; i++) {
+            names[i] = readString();
+        }
+        if (!Arrays.equals(names, ResultExportWriter.COLUMNS)) {
+            throw new IOException("Unexpected PKGC columns: " + String.join(",", names));
+        }
+    }
+
+    // Следующая строка или null после последней
+    public ImageMetadata read() throws IOException {
+        if (rows.isEmpty() && !finished) {
+            readGroup();
+        }
+        return rows.poll();
+    }
+
+    public long getReadRows() {
+        return readRows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readGroup() throws IOException {
+        int count = readCount();
+        if (count == 0) {
+            long total = readVarint();
+            if (total != readRows) {
+                throw new IOException("PKGC trailer declares " + total + " rows, read " + readRows);
+            }
+            finished = true;
+            return;
+        }
+
+        String[][] values = new String[count][ResultExportWriter.COLUMNS.length - 1];
+        for (int c = 0; c < ResultExportWriter.COLUMNS.length - 1; c++) {
+            String[] dictionary = readDictionary();
+            for (int r = 0; r < count; r++) {
+                values[r][c] = lookup(dictionary, readCount());
+            }
+        }
+
+        String[] keys = readDictionary();
+        String[] infoValues = readDictionary();
+        for (int r = 0; r < count; r++) {
+            ImageMetadata metadata = new ImageMetadata(values[r][0]);
+            metadata.setFormat(values[r][1]);
+            metadata.setDimensions(values[r][2]);
+            metadata.setResolution(values[r][3]);
+            metadata.setColorDepth(values[r][4]);
+            metadata.setCompression(values[r][5]);
+            metadata.setFileSize(values[r][6]);
+
+            int pairs = readCount();
+            if (pairs > 0) {
+                Map<String, String> info = new LinkedHashMap<>();
+                for (int p = 0; p < pairs - 1; p++) {
+                    info.put(lookup(keys, readCount()), lookup(infoValues, readCount()));
+                }
+                metadata.setAdditionalInfo(info);
+            }
+            rows.add(metadata);
+        }
+        readRows += count;
+    }
+
+    private String[] readDictionary() throws IOException {
+        String[] entries = new String[readCount()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = readString();
+        }
+        return entries;
+    }
+
+    private static String lookup(String[] dictionary, int index) throws IOException {
+        if (index == 0) return null;
+        if (index > dictionary.length) {
+            throw new IOException("PKGC dictionary index " + index + " out of " + dictionary.length);
+        }
+        return dictionary[index - 1];
+    }
+
+    private String readString() throws IOException {
+        int length = readCount();
+        if (length > MAX_STRING_BYTES) {
+            throw new IOException("PKGC string of " + length + " bytes");
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) throw new EOFException("Truncated PKGC string");
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readCount() throws IOException {
+        long value = readVarint();
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("PKGC count out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException("Truncated PKGC file");
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed PKGC varint");
+    }
+}
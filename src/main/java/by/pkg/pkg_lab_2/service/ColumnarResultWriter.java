@@ -0,0 +1,171 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+Компактный колоночный формат PKGC (все целые - беззнаковый varint, строки - varint длина + UTF-8):
+
+Заголовок:    ['P']['K']['G']['C'] [Версия:1] [Колонок] [Имя колонки]...
+Группа строк: [Строк > 0]
+              для каждой строковой колонки:
+                  [Размер словаря] [Строка словаря]...
+                  [Индекс на строку: 0 = null, k = словарь[k - 1]]...
+              additionalInfo:
+                  [Словарь ключей] [Словарь значений]
+                  на строку: [Пар + 1, 0 = null] [Индекс ключа] [Индекс значения]...
+Конец:        [0] [Всего строк]
+
+Словари строятся заново для каждой группы, поэтому в памяти держится не более ROW_GROUP_SIZE строк.
+Обратное чтение - ColumnarResultReader. Спецификация для других языков - docs/pkgc.md,
+при изменении кодирования увеличивается VERSION и там же описывается новая версия.
+*/
+public class ColumnarResultWriter implements ResultExportWriter {
+    public static final byte[] MAGIC = {'P', 'K', 'G', 'C'};
+    public static final int VERSION = 1;
+    public static final int ROW_GROUP_SIZE = 4096;
+
+    private final OutputStream out;
+    private final List<ImageMetadata> group = new ArrayList<>(ROW_GROUP_SIZE);
+    private long totalRows;
+
+    public ColumnarResultWriter(OutputStream out) throws IOException {
+        this.out = new BufferedOutputStream(out, 64 * 1024);
+        this.out.write(MAGIC);
+        this.out.write(VERSION);
+        writeVarint(COLUMNS.length);
+        for (String column : COLUMNS) {
+            writeString(column);
+        }
+    }
+
+    @Override
+    public void write(ImageMetadata metadata) throws IOException {
+        group.add(metadata);
+        if (group.size() >= ROW_GROUP_SIZE) {
+            writeGroup();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeGroup();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeGroup();
+        writeVarint(0);
+        writeVarint(totalRows);
+        out.flush();
+    }
+
+    private void writeGroup() throws IOException {
+        int rows = group.size();
+        if (rows == 0) return;
+
+        writeVarint(rows);
+
+        String[][] values = new String[rows][];
+        for (int r = 0; r < rows; r++) {
+            values[r] = ResultExportWriter.values(group.get(r));
+        }
+
+        int[] indexes = new int[rows];
+        for (int c = 0; c < COLUMNS.length - 1; c++) {
+            Dictionary dictionary = new Dictionary();
+            for (int r = 0; r < rows; r++) {
+                indexes[r] = dictionary.indexOf(values[r][c]);
+            }
+            dictionary.writeTo(this);
+            for (int r = 0; r < rows; r++) {
+                writeVarint(indexes[r]);
+            }
+        }
+
+        writeAdditionalInfo();
+
+        totalRows += rows;
+        group.clear();
+    }
+
+    private void writeAdditionalInfo() throws IOException {
+        Dictionary keys = new Dictionary();
+        Dictionary values = new Dictionary();
+        List<int[]> pairs = new ArrayList<>(group.size());
+
+        for (ImageMetadata metadata : group) {
+            Map<String, String> info = metadata.getAdditionalInfo();
+            if (info == null) {
+                pairs.add(null);
+                continue;
+            }
+            int[] row = new int[info.size() * 2];
+            int i = 0;
+            for (Map.Entry<String, String> entry : info.entrySet()) {
+                row[i++] = keys.indexOf(entry.getKey());
+                row[i++] = values.indexOf(entry.getValue());
+            }
+            pairs.add(row);
+        }
+
+        keys.writeTo(this);
+        values.writeTo(this);
+        for (int[] row : pairs) {
+            if (row == null) {
+                writeVarint(0);
+                continue;
+            }
+            writeVarint(row.length / 2 + 1);
+            for (int index : row) {
+                writeVarint(index);
+            }
+        }
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        out.write(bytes);
+    }
+
+    private static class Dictionary {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> entries = new ArrayList<>();
+
+        int indexOf(String value) {
+            if (value == null) return 0;
+            Integer index = indexes.get(value);
+            if (index == null) {
+                entries.add(value);
+                index = entries.size();
+                indexes.put(value, index);
+            }
+            return index;
+        }
+
+        void writeTo(ColumnarResultWriter writer) throws IOException {
+            writer.writeVarint(entries.size());
+            for (String entry : entries) {
+                writer.writeString(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/*
+Формат строки (RFC 4180):
+filename,format,dimensions,resolution,colorDepth,compression,fileSize,additionalInfo
+
+Пустое поле - null, пустая строка записывается как "".
+additionalInfo - пары "ключ=значение" через ";", символы '=', ';' и '\' экранируются '\';
+ключ без '=' - значение null, "" - пустой набор пар
+*/
+public class CsvResultWriter implements ResultExportWriter {
+    private final Writer writer;
+
+    public CsvResultWriter(OutputStream out) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writeRow(COLUMNS);
+    }
+
+    @Override
+    public void write(ImageMetadata metadata) throws IOException {
+        String[] values = ResultExportWriter.values(metadata);
+        for (int i = 0; i < values.length; i++) {
+            writeField(values[i]);
+            writer.write(',');
+        }
+        writeField(formatAdditionalInfo(metadata.getAdditionalInfo()));
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+
+    private void writeRow(String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) writer.write(',');
+            writeField(values[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeField(String value) throws IOException {
+        if (value == null) return;
+
+        boolean needsQuotes = value.isEmpty();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                needsQuotes = true;
+                break;
+            }
+        }
+
+        if (!needsQuotes) {
+            writer.write(value);
+            return;
+        }
+
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') writer.write('"');
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static String formatAdditionalInfo(Map<String, String> additionalInfo) {
+        if (additionalInfo == null) return null;
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : additionalInfo.entrySet()) {
+            if (sb.length() > 0) sb.append(';');
+            appendEscaped(sb, entry.getKey());
+            if (entry.getValue() == null) continue;
+            sb.append('=');
+            appendEscaped(sb, entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    private static void appendEscaped(StringBuilder sb, String value) {
+        if (value == null) return;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '=' || c == ';' || c == '\\') sb.append('\\');
+            sb.append(c);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.DuplicateCluster;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+Индекс хешей проанализированных файлов для /duplicates/lookup.
+Каждый хеш принадлежит клиенту, загрузившему файл (AnalysisScheduler.currentClient()), и в поиске
+виден только ему. При заполнении index-capacity вытесняются записи, дольше всего не загружавшиеся повторно.
+*/
+@Service
+public class DuplicateDetectionService {
+    private final MultiIndexHashTable index = new MultiIndexHashTable();
+    // Записи по идентификатору в index; null - свободный идентификатор
+    private final List<Entry> entries = new ArrayList<>();
+    // "клиент + хеш + имя" -> запись в порядке последней регистрации: повторная загрузка не добавляет копию
+    private final LinkedHashMap<String, Entry> entriesByKey = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long evicted;
+    private boolean full;
+
+    @Value("${analyzer.duplicates.index-capacity:1000000}")
+    private int indexCapacity;
+
+    private record Entry(int id, String client, String filename) {
+    }
+
+    public void register(String client, String filename, long hash) {
+        String key = client + '\n' + PerceptualHashService.toHex(hash) + filename;
+        lock.writeLock().lock();
+        try {
+            if (entriesByKey.get(key) != null) return;
+
+            if (index.size() >= indexCapacity) {
+                if (!full) {
+                    full = true;
+                    System.err.println("Duplicate index is full (" + indexCapacity + " hashes), evicting oldest entries");
+                }
+                Iterator<Entry> eldest = entriesByKey.values().iterator();
+                Entry entry = eldest.next();
+                eldest.remove();
+                index.remove(entry.id());
+                entries.set(entry.id(), null);
+                evicted++;
+            }
+
+            int id = index.add(hash);
+            Entry entry = new Entry(id, client, filename);
+            if (id == entries.size()) {
+                entries.add(entry);
+            } else {
+                entries.set(id, entry);
+            }
+            entriesByKey.put(key, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<String> lookup(String client, long hash, int maxDistance) {
+        List<String> matches = new ArrayList<>();
+        // Поиск не меняет индекс, параллельные запросы ждут только регистрацию
+        lock.readLock().lock();
+        try {
+            index.search(hash, maxDistance, id -> {
+                Entry entry = entries.get(id);
+                if (entry.client().equals(client)) {
+                    matches.add(entry.filename());
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return matches;
+    }
+
+    public int getIndexSize() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Сколько хешей вытеснено из заполненного индекса
+    public long getEvictedCount() {
+        lock.readLock().lock();
+        try {
+            return evicted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<DuplicateCluster> cluster(List<String> filenames, long[] hashes, int maxDistance) {
+        int count = filenames.size();
+        MultiIndexHashTable batchIndex = new MultiIndexHashTable();
+        int[] parent = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+            final int current = i;
+            batchIndex.search(hashes[i], maxDistance, other -> union(parent, current, other));
+            batchIndex.add(hashes[i]);
+        }
+
+        Map<Integer, DuplicateCluster> clusters = new HashMap<>();
+        Map<Integer, Integer> sizes = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            sizes.merge(find(parent, i), 1, Integer::sum);
+        }
+
+        List<DuplicateCluster> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int root = find(parent, i);
+            if (sizes.get(root) < 2) continue;
+
+            DuplicateCluster cluster = clusters.get(root);
+            if (cluster == null) {
+                cluster = new DuplicateCluster();
+                clusters.put(root, cluster);
+                result.add(cluster);
+            }
+            cluster.getFiles().add(filenames.get(i));
+            cluster.getHashes().add(PerceptualHashService.toHex(hashes[i]));
+        }
+
+        for (DuplicateCluster cluster : result) {
+            cluster.setMaxDistance(maxPairwiseDistance(cluster.getHashes()));
+        }
+        return result;
+    }
+
+    // Наибольшее расстояние между любыми двумя хешами группы; одинаковые хеши сравниваются один раз
+    private static int maxPairwiseDistance(List<String> hexHashes) {
+        long[] distinct = hexHashes.stream().distinct().mapToLong(PerceptualHashService::fromHex).toArray();
+        int max = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            for (int j = i + 1; j < distinct.length; j++) {
+                max = Math.max(max, PerceptualHashService.distance(distinct[i], distinct[j]));
+            }
+        }
+        return max;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int first, int second) {
+        int a = find(parent, first);
+        int b = find(parent, second);
+        if (a != b) {
+            parent[Math.max(a, b)] = Math.min(a, b);
+        }
+    }
+}
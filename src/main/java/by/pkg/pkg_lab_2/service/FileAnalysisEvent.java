@@ -0,0 +1,118 @@
+package by.pkg.pkg_lab_2.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/*
+Событие JFR на каждый проанализированный файл (analyzeSingleFile).
+
+Длительность события - весь анализ файла, поля *Time - этапы внутри него, allocated - байты,
+выделенные потоком анализа за это время. Если событие не включено в записи (нет активной
+записи или профиль его выключает), поля не заполняются: stage() и finish() сводятся к проверке
+флага, счётчик выделенной памяти не читается.
+
+isEnabled() проверяется один раз в start(): запись, начатая или остановленная посреди анализа
+файла, не должна привести к end() без begin() или к этапам, отсчитанным от нуля.
+*/
+@Name("by.pkg.pkg_lab_2.FileAnalysis")
+@Label("Image File Analysis")
+@Category("Image Analyzer")
+@Description("Analysis of one image file: declared size, per-stage durations and allocated bytes")
+@StackTrace(false)
+public class FileAnalysisEvent extends Event {
+    @Label("Filename")
+    String filename;
+
+    @Label("Format")
+    String format;
+
+    @Label("File Size")
+    @DataAmount
+    long fileSize;
+
+    @Label("Declared Width")
+    int width;
+
+    @Label("Declared Height")
+    int height;
+
+    @Label("Subsampling")
+    int subsampling;
+
+    @Label("Decode Time")
+    @Timespan
+    long decodeTime;
+
+    @Label("Hash Time")
+    @Timespan
+    long hashTime;
+
+    @Label("Format Analysis Time")
+    @Timespan
+    long formatTime;
+
+    @Label("Resolution Time")
+    @Timespan
+    long resolutionTime;
+
+    @Label("Pixel Statistics Time")
+    @Timespan
+    long pixelStatisticsTime;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+
+    @Label("Error")
+    String error;
+
+    // Служебные поля, в запись не попадают
+    private transient boolean recorded;
+    private transient long stageStart;
+    private transient long allocatedAtStart;
+
+    static FileAnalysisEvent start(String filename, long fileSize) {
+        FileAnalysisEvent event = new FileAnalysisEvent();
+        event.recorded = event.isEnabled();
+        if (event.recorded) {
+            event.filename = filename;
+            event.fileSize = fileSize;
+            event.allocatedAtStart = currentThreadAllocatedBytes();
+            event.begin();
+            event.stageStart = System.nanoTime();
+        }
+        return event;
+    }
+
+    // Время с конца предыдущего этапа
+    long stage() {
+        if (!recorded) return 0;
+        long now = System.nanoTime();
+        long elapsed = now - stageStart;
+        stageStart = now;
+        return elapsed;
+    }
+
+    void fail(Throwable e) {
+        if (recorded) error = e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+
+    void finish() {
+        if (!recorded) return;
+        end();
+        if (shouldCommit()) {
+            allocated = Math.max(0, currentThreadAllocatedBytes() - allocatedAtStart);
+            commit();
+        }
+    }
+
+    static long currentThreadAllocatedBytes() {
+        return AnalysisDeadline.getAllocatedBytes(Thread.currentThread().getId());
+    }
+}
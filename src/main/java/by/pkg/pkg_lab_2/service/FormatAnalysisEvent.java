@@ -0,0 +1,73 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+Событие JFR на один проход анализатора формата: сегменты JPEG, теги TIFF, чанки PNG,
+палитра GIF, определение сжатия. Ошибка, которую анализатор пишет в System.err,
+сохраняется в поле error вместе с именем файла. Как и в FileAnalysisEvent, isEnabled()
+проверяется один раз в start().
+*/
+@Name("by.pkg.pkg_lab_2.FormatAnalysis")
+@Label("Image Format Analysis")
+@Category("Image Analyzer")
+@Description("One pass of a format-specific analyzer over the file bytes")
+@StackTrace(false)
+public class FormatAnalysisEvent extends Event {
+    @Label("Filename")
+    String filename;
+
+    @Label("Format")
+    String format;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("File Size")
+    @DataAmount
+    long fileSize;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+
+    @Label("Error")
+    String error;
+
+    private transient boolean recorded;
+    private transient long allocatedAtStart;
+
+    static FormatAnalysisEvent start(ImageMetadata metadata, String stage, long fileSize) {
+        FormatAnalysisEvent event = new FormatAnalysisEvent();
+        event.recorded = event.isEnabled();
+        if (event.recorded) {
+            event.filename = metadata.getFilename();
+            event.format = metadata.getFormat();
+            event.stage = stage;
+            event.fileSize = fileSize;
+            event.allocatedAtStart = FileAnalysisEvent.currentThreadAllocatedBytes();
+            event.begin();
+        }
+        return event;
+    }
+
+    void fail(Throwable e) {
+        if (recorded) error = e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+
+    void finish() {
+        if (!recorded) return;
+        end();
+        if (shouldCommit()) {
+            allocated = Math.max(0, FileAnalysisEvent.currentThreadAllocatedBytes() - allocatedAtStart);
+            commit();
+        }
+    }
+}
@@ -5,95 +5,290 @@ import com.drew.imaging.ImageMetadataReader;
 import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.exif.ExifIFD0Directory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 @Service
 public class ImageAnalyzerService {
+    @Autowired
+    private PixelStatisticsService pixelStatisticsService;
+
+    // В пакетном режиме индекса дубликатов нет, хеши только записываются в результат
+    @Autowired(required = false)
+    private DuplicateDetectionService duplicateDetectionService;
+
+    @Autowired
+    private BufferPool bufferPool;
+
+    @Autowired
+    private ImageReaderPool imageReaderPool;
+
+    @Autowired
+    private AnalysisScheduler analysisScheduler;
+
+    @Value("${analyzer.limits.file-timeout:30s}")
+    private Duration fileTimeout;
+
+    @Value("${analyzer.limits.max-allocation:2GB}")
+    private DataSize maxAllocation;
+
+    @Value("${analyzer.limits.max-pixels:1000000000}")
+    private long maxPixels;
+
+    // dHash и анализаторам хватает нескольких мегапикселей: растр 4 Мп в TYPE_INT_RGB - около 16 МБ на поток
+    @Value("${analyzer.limits.max-decode-pixels:4000000}")
+    private long maxDecodePixels = 4_000_000;
+
+    @Value("${analyzer.scheduler.max-queue-wait:10m}")
+    private Duration maxQueueWait;
+
     public List<ImageMetadata> analyzeImages(MultipartFile[] files) {
+        return analyzeImages(files, false);
+    }
+
+    public List<ImageMetadata> analyzeImages(MultipartFile[] files, boolean pixelStatistics) {
         List<ImageMetadata> results = new ArrayList<>();
+        analyzeImages(files, pixelStatistics, results::add);
+        return results;
+    }
 
+    public void analyzeImages(MultipartFile[] files, boolean pixelStatistics, Consumer<ImageMetadata> sink) {
         for (MultipartFile file : files) {
-            try {
-                ImageMetadata metadata = analyzeSingleFile(file);
-                results.add(metadata);
-            } catch (Exception e) {
-                ImageMetadata errorMeta = new ImageMetadata(file.getOriginalFilename());
-                errorMeta.setFileSize(formatFileSize(file.getSize()));
-                errorMeta.setAdditionalInfo(Map.of(
-                        "Ошибка", "Неверный формат файла",
-                        "MIME Type", Objects.requireNonNull(file.getContentType())
-                ));
-                results.add(errorMeta);
+            sink.accept(analyzeImage(file, pixelStatistics));
+        }
+    }
+
+    public ImageMetadata analyzeImage(MultipartFile file) {
+        return analyzeImage(file, false);
+    }
+
+    public ImageMetadata analyzeImage(MultipartFile file, boolean pixelStatistics) {
+        AnalysisDeadline deadline = new AnalysisDeadline(fileTimeout, maxAllocation.toBytes());
+        // Поток анализа не знает клиента запроса, хеш записывается в индекс дубликатов от его имени
+        String client = AnalysisScheduler.currentClient();
+
+        // Буфер записи ZIP архива удерживается потоком анализа до его завершения, даже после таймаута
+        PooledBuffer sharedBuffer = file instanceof PooledMultipartFile pooledFile
+                ? pooledFile.getPooledBuffer().retain()
+                : null;
+
+        // Анализ выполняется в отдельном потоке, чтобы зависший файл не задерживал весь пакет.
+        // Потоки общие для всех запросов, очередь между клиентами делит AnalysisScheduler
+        AnalysisScheduler.Task<ImageMetadata> future = analysisScheduler.submit(() -> {
+            deadline.start();
+            try (PooledBuffer buffer = sharedBuffer != null ? sharedBuffer : readFile(file)) {
+                return analyzeSingleFile(file, buffer.view(), pixelStatistics, client, deadline);
+            }
+        });
+
+        try {
+            if (!future.awaitStart(maxQueueWait.toMillis(), TimeUnit.MILLISECONDS) && future.cancelIfQueued()) {
+                if (sharedBuffer != null) sharedBuffer.close();
+                System.err.println("Analysis queue wait exceeded: " + file.getOriginalFilename());
+                return createErrorMetadata(file, "Сервер перегружен, файл не дождался очереди анализа");
+            }
+            return future.get(fileTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            deadline.cancel();
+            future.cancel(true);
+            System.err.println("Analysis timed out: " + file.getOriginalFilename());
+            return createErrorMetadata(file, "Превышено время анализа (" + fileTimeout.toSeconds() + " с)");
+        } catch (InterruptedException e) {
+            deadline.cancel();
+            if (future.cancelIfQueued()) {
+                if (sharedBuffer != null) sharedBuffer.close();
+            } else {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            return createErrorMetadata(file, "Анализ прерван");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AnalysisLimitException) {
+                System.err.println("Analysis limit exceeded for " + file.getOriginalFilename() + ": " + e.getCause().getMessage());
+                return createErrorMetadata(file, e.getCause().getMessage());
             }
+            return createErrorMetadata(file, "Неверный формат файла");
         }
+    }
 
-        return results;
+    private ImageMetadata createErrorMetadata(MultipartFile file, String error) {
+        ImageMetadata errorMeta = new ImageMetadata(file.getOriginalFilename());
+        errorMeta.setFileSize(formatFileSize(file.getSize()));
+        errorMeta.setAdditionalInfo(Map.of(
+                "Ошибка", error,
+                "MIME Type", Objects.requireNonNull(file.getContentType())
+        ));
+        return errorMeta;
+    }
+
+    // Поток загруженного файла закрывается сразу после чтения в буфер
+    private PooledBuffer readFile(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return bufferPool.read(in, file.getSize());
+        }
+    }
+
+    // Прогрев при запуске: полный анализ в текущем потоке, но без записи хэша в индекс дубликатов
+    ImageMetadata warmUp(MultipartFile file, ByteBuffer fileBytes) throws Exception {
+        AnalysisDeadline deadline = new AnalysisDeadline(fileTimeout, maxAllocation.toBytes());
+        deadline.start();
+        return analyzeSingleFile(file, fileBytes, true, null, deadline);
     }
 
-    private ImageMetadata analyzeSingleFile(MultipartFile file) throws Exception {
+    // hashOwner - клиент, в индекс которого записывается хеш; null - не записывать
+    private ImageMetadata analyzeSingleFile(MultipartFile file, ByteBuffer fileBytes, boolean pixelStatistics,
+                                            String hashOwner, AnalysisDeadline deadline) throws Exception {
+        FileAnalysisEvent event = FileAnalysisEvent.start(file.getOriginalFilename(), file.getSize());
+        try {
+            return analyzeSingleFile(file, fileBytes, pixelStatistics, hashOwner, deadline, event);
+        } catch (Exception e) {
+            event.fail(e);
+            throw e;
+        } finally {
+            event.finish();
+        }
+    }
+
+    private ImageMetadata analyzeSingleFile(MultipartFile file, ByteBuffer fileBytes, boolean pixelStatistics,
+                                            String hashOwner, AnalysisDeadline deadline,
+                                            FileAnalysisEvent event) throws Exception {
         ImageMetadata metadata = new ImageMetadata(file.getOriginalFilename());
         metadata.setFileSize(formatFileSize(file.getSize()));
 
         String format = determineFormat(file.getOriginalFilename());
         metadata.setFormat(format);
+        event.format = format;
 
-        byte[] fileBytes = file.getBytes();
-
-        try (InputStream is = new ByteArrayInputStream(fileBytes)) {
-            BufferedImage image = ImageIO.read(is);
-            if (image != null) {
-                metadata.setDimensions(image.getWidth() + "×" + image.getHeight());
-                metadata.setColorDepth(getColorDepth(image));
-
-                String compression = determineCompression(format, fileBytes);
-                metadata.setCompression(compression);
-
-                if ("GIF".equalsIgnoreCase(format)) {
-                    analyzeGifPalette(fileBytes, metadata);
-                } else if ("JPEG".equalsIgnoreCase(format)) {
-                    JpgAnalyzerService.analyze(fileBytes, metadata);
-                } else if ("TIFF".equalsIgnoreCase(format)) {
-                    TifAnalyzerService.analyze(fileBytes, metadata);
-                } else if ("PNG".equalsIgnoreCase(format)) {
-                    PngAnalyzerService.analyze(fileBytes, metadata);
-                }
-            } else {
-                throw new Exception("Не удалось прочитать изображение");
+        deadline.checkpoint();
+
+        event.stage();
+        BufferedImage image = readImage(fileBytes, metadata, deadline, event);
+        event.decodeTime = event.stage();
+        if (image != null) {
+            metadata.setColorDepth(getColorDepth(image));
+
+            long hash = PerceptualHashService.dHash(image);
+            metadata.setPerceptualHash(PerceptualHashService.toHex(hash));
+            if (hashOwner != null && duplicateDetectionService != null) {
+                duplicateDetectionService.register(hashOwner, file.getOriginalFilename(), hash);
             }
+            event.hashTime = event.stage();
+
+            String compression = determineCompression(format, fileBytes, metadata);
+            metadata.setCompression(compression);
+
+            if ("GIF".equalsIgnoreCase(format)) {
+                analyzeGifPalette(fileBytes, metadata);
+            } else if ("JPEG".equalsIgnoreCase(format)) {
+                JpgAnalyzerService.analyze(fileBytes, metadata);
+            } else if ("TIFF".equalsIgnoreCase(format)) {
+                TifAnalyzerService.analyze(fileBytes, metadata);
+            } else if ("PNG".equalsIgnoreCase(format)) {
+                PngAnalyzerService.analyze(fileBytes, metadata);
+            }
+            event.formatTime = event.stage();
+        } else {
+            throw new Exception("Не удалось прочитать изображение");
         }
 
+        deadline.checkpoint();
         extractResolution(fileBytes, metadata);
+        event.resolutionTime = event.stage();
+
+        if (pixelStatistics) {
+            deadline.checkpoint();
+            try {
+                // Растр из readImage: файл не декодируется повторно, шаг субдискретизации тот же
+                metadata.setPixelStatistics(pixelStatisticsService.analyze(image, event.subsampling));
+            } catch (Exception e) {
+                System.err.println("Error computing pixel statistics: " + e.getMessage());
+            }
+            event.pixelStatisticsTime = event.stage();
+        }
 
         return metadata;
     }
 
-    private String determineCompression(String format, byte[] fileBytes) {
-        return switch (format.toUpperCase()) {
-            case "JPEG" -> "JPEG";
-            case "PNG" -> "Deflate";
-            case "GIF" -> "LZW";
-            case "BMP" -> analyzeBmpCompressionType(fileBytes);
-            case "TIFF" -> TifAnalyzerService.analyzeCompressionType(fileBytes);
-            case "PCX" -> analyzePcxCompressionType(fileBytes);
-            default -> "Unknown - " + format.toUpperCase();
-        };
+    /*
+    Размеры читаются из заголовка до декодирования:
+    - больше maxPixels - файл отклоняется (защита от "декомпрессионных бомб")
+    - больше maxDecodePixels - декодирование с субдискретизацией, чтобы растр не превышал лимит:
+      уменьшенное изображение строит сам декодер, полный растр в памяти не появляется
+    */
+    private BufferedImage readImage(ByteBuffer fileBytes, ImageMetadata metadata, AnalysisDeadline deadline,
+                                    FileAnalysisEvent event) throws Exception {
+        try (ImageInputStream iis = new ByteBufferImageInputStream(fileBytes)) {
+            ImageReader reader = imageReaderPool.acquire(iis);
+            if (reader == null) return null;
+
+            try {
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                long pixels = (long) width * height;
+                if (width <= 0 || height <= 0 || pixels > maxPixels) {
+                    throw new AnalysisLimitException("Заявленный размер изображения " + width + "×" + height + " превышает лимит");
+                }
+                metadata.setDimensions(width + "×" + height);
+                event.width = width;
+                event.height = height;
+
+                int step = 1;
+                while (pixels / ((long) step * step) > maxDecodePixels) {
+                    step++;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                event.subsampling = step;
+
+                deadline.attach(reader);
+                BufferedImage image = reader.read(0, param);
+                deadline.checkpoint();
+                return image;
+            } finally {
+                imageReaderPool.release(reader);
+            }
+        }
     }
 
-    private String analyzeBmpCompressionType(byte[] fileBytes) {
+    private String determineCompression(String format, ByteBuffer fileBytes, ImageMetadata metadata) {
+        FormatAnalysisEvent event = FormatAnalysisEvent.start(metadata, "compression", fileBytes.limit());
         try {
-            if (fileBytes.length < 30) return "N/A";
+            return switch (format.toUpperCase()) {
+                case "JPEG" -> "JPEG";
+                case "PNG" -> "Deflate";
+                case "GIF" -> "LZW";
+                case "BMP" -> analyzeBmpCompressionType(fileBytes);
+                case "TIFF" -> TifAnalyzerService.analyzeCompressionType(fileBytes);
+                case "PCX" -> analyzePcxCompressionType(fileBytes);
+                default -> "Unknown - " + format.toUpperCase();
+            };
+        } finally {
+            event.finish();
+        }
+    }
 
-            int compression = (fileBytes[30] & 0xFF) |
-                    ((fileBytes[31] & 0xFF) << 8) |
-                    ((fileBytes[32] & 0xFF) << 16) |
-                    ((fileBytes[33] & 0xFF) << 24);
+    private String analyzeBmpCompressionType(ByteBuffer fileBytes) {
+        try {
+            if (!ByteScan.has(fileBytes, 30, 4)) return "N/A";
+
+            int compression = ByteScan.s32le(fileBytes, 30);
 
             return switch (compression) {
                 case 0 -> "без сжатия";
@@ -109,12 +304,12 @@ public class ImageAnalyzerService {
         }
     }
 
-    private String analyzePcxCompressionType(byte[] fileBytes) {
+    private String analyzePcxCompressionType(ByteBuffer fileBytes) {
         try {
-            if (fileBytes.length < 4) return "N/A";
+            if (fileBytes.limit() < 4) return "N/A";
 
-            int version = fileBytes[2] & 0xFF;
-            int encoding = fileBytes[3] & 0xFF;
+            int version = fileBytes.get(2) & 0xFF;
+            int encoding = fileBytes.get(3) & 0xFF;
 
             String versionStr = getPcxVersion(version);
             String compressionStr = (encoding == 1) ? "RLE" : "без сжатия";
@@ -137,8 +332,8 @@ public class ImageAnalyzerService {
         };
     }
 
-    private void extractResolution(byte[] fileBytes, ImageMetadata imageMetadata) {
-        try (InputStream is = new ByteArrayInputStream(fileBytes)) {
+    private void extractResolution(ByteBuffer fileBytes, ImageMetadata imageMetadata) {
+        try (InputStream is = new ByteBufferInputStream(fileBytes)) {
             Metadata extractedMetadata = ImageMetadataReader.readMetadata(is);
 
             Directory exifDir = extractedMetadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
@@ -173,17 +368,20 @@ public class ImageAnalyzerService {
         imageMetadata.setResolution("-");
     }
 
-    private void analyzeGifPalette(byte[] fileBytes, ImageMetadata metadata) {
+    private void analyzeGifPalette(ByteBuffer fileBytes, ImageMetadata metadata) {
         Map<String, String> additionalInfo = new HashMap<>();
+        FormatAnalysisEvent event = FormatAnalysisEvent.start(metadata, "palette", fileBytes.limit());
 
         try {
-            if (fileBytes.length > 13) {
-                String signature = new String(fileBytes, 0, 6);
+            if (fileBytes.limit() > 13) {
+                byte[] signatureBytes = new byte[6];
+                fileBytes.get(0, signatureBytes);
+                String signature = new String(signatureBytes);
                 if ("GIF89a".equals(signature) || "GIF87a".equals(signature)) {
                     additionalInfo.put("Версия GIF", signature);
                 }
 
-                int packedByte = fileBytes[10] & 0xFF;
+                int packedByte = fileBytes.get(10) & 0xFF;
                 boolean hasGlobalColorTable = (packedByte & 0x80) != 0;
                 int colorResolution = ((packedByte & 0x70) >> 4) + 1;
                 boolean sortFlag = (packedByte & 0x08) != 0;
@@ -197,19 +395,16 @@ public class ImageAnalyzerService {
                     additionalInfo.put("Сортировка палитры", sortFlag ? "Да" : "Нет");
                 }
 
-                boolean hasAnimation = false;
-                for (int i = 0; i < fileBytes.length - 1; i++) {
-                    if (fileBytes[i] == 0x21 && fileBytes[i+1] == (byte)0xF9) {
-                        hasAnimation = true;
-                        break;
-                    }
-                }
+                // Graphic Control Extension (0x21 0xF9)
+                boolean hasAnimation = ByteScan.indexOf(fileBytes, 0, fileBytes.limit(), (byte) 0x21, (byte) 0xF9) >= 0;
                 additionalInfo.put("Анимация", hasAnimation ? "Да" : "Нет");
             }
         } catch (Exception e) {
             System.err.println("Error analyzing GIF palette: " + e.getMessage());
+            event.fail(e);
         } finally {
             metadata.setAdditionalInfo(additionalInfo);
+            event.finish();
         }
     }
 
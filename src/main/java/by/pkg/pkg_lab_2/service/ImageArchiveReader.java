@@ -0,0 +1,73 @@
+package by.pkg.pkg_lab_2.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+// Потоковое чтение изображений из ZIP архива: запись за записью в буферы из пула
+@Service
+public class ImageArchiveReader {
+    @Autowired
+    private BufferPool bufferPool;
+
+    @Value("${analyzer.limits.max-entry-size:1GB}")
+    private DataSize maxEntrySize = DataSize.ofGigabytes(1);
+
+    public void forEachImage(InputStream zipStream, ImageHandler handler) throws IOException {
+        try (ZipInputStream zis = new ZipInputStream(zipStream)) {
+            ZipEntry entry;
+
+            while ((entry = zis.getNextEntry()) != null) {
+                if (!entry.isDirectory() && isImageFile(entry.getName())) {
+                    // Размер из заголовка записи задаёт загрузивший архив: он только подсказка для
+                    // начального буфера, а фактический объём ограничен max-entry-size
+                    long sizeHint = Math.min(entry.getSize(), BufferPool.MAX_CLASS_SIZE);
+                    try (PooledBuffer buffer = readEntry(zis, entry, sizeHint)) {
+                        handler.accept(new PooledMultipartFile(entry.getName(),
+                                getContentTypeForFilename(entry.getName()), buffer));
+                    }
+                }
+                zis.closeEntry();
+            }
+        }
+    }
+
+    private PooledBuffer readEntry(ZipInputStream zis, ZipEntry entry, long sizeHint) throws IOException {
+        try {
+            return bufferPool.read(zis, sizeHint, maxEntrySize.toBytes());
+        } catch (IOException e) {
+            throw new IOException("Cannot read ZIP entry " + entry.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface ImageHandler {
+        void accept(MultipartFile file) throws IOException;
+    }
+
+    public static boolean isImageFile(String filename) {
+        if (filename == null) return false;
+        String lower = filename.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") ||
+                lower.endsWith(".png") || lower.endsWith(".gif") ||
+                lower.endsWith(".bmp") || lower.endsWith(".tif") ||
+                lower.endsWith(".tiff") || lower.endsWith(".pcx");
+    }
+
+    public static String getContentTypeForFilename(String filename) {
+        if (filename.endsWith(".jpg") || filename.endsWith(".jpeg")) return "image/jpeg";
+        if (filename.endsWith(".png")) return "image/png";
+        if (filename.endsWith(".gif")) return "image/gif";
+        if (filename.endsWith(".bmp")) return "image/bmp";
+        if (filename.endsWith(".tif") || filename.endsWith(".tiff")) return "image/tiff";
+        if (filename.endsWith(".pcx")) return "image/x-pcx";
+        return "application/octet-stream";
+    }
+}
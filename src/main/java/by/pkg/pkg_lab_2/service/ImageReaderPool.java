@@ -0,0 +1,113 @@
+package by.pkg.pkg_lab_2.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageReader;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Пул ImageReader по форматам (по провайдерам ImageReaderSpi).
+
+ImageIO.getImageReaders на каждый файл обходит реестр плагинов и создаёт новый reader,
+который после одного чтения выбрасывается. Здесь список провайдеров запоминается один раз
+в порядке приоритета реестра (плагины TwelveMonkeys остаются впереди JDK), а reader после
+использования сбрасывается через reset() и возвращается в очередь своего провайдера.
+*/
+@Service
+public class ImageReaderPool {
+    @Value("${analyzer.readers.max-pooled-per-format:16}")
+    private int maxPooledPerFormat = 16;
+
+    private volatile List<ImageReaderSpi> providers;
+    private final Map<ImageReaderSpi, Queue<ImageReader>> pools = new ConcurrentHashMap<>();
+    private final Map<ImageReaderSpi, AtomicInteger> pooledCounts = new ConcurrentHashMap<>();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    // Reader для содержимого потока с уже установленным input или null, если формат не распознан
+    public ImageReader acquire(ImageInputStream iis) throws IOException {
+        for (ImageReaderSpi provider : getProviders()) {
+            iis.mark();
+            boolean canDecode;
+            try {
+                canDecode = provider.canDecodeInput(iis);
+            } finally {
+                iis.reset();
+            }
+            if (canDecode) {
+                ImageReader reader = acquire(provider);
+                reader.setInput(iis, true, true);
+                return reader;
+            }
+        }
+        return null;
+    }
+
+    public ImageReader acquire(ImageReaderSpi provider) throws IOException {
+        ImageReader reader = getPool(provider).poll();
+        if (reader != null) {
+            pooledCounts.get(provider).decrementAndGet();
+            reused.incrementAndGet();
+            return reader;
+        }
+        created.incrementAndGet();
+        return provider.createReaderInstance();
+    }
+
+    public void release(ImageReader reader) {
+        ImageReaderSpi provider = reader.getOriginatingProvider();
+        try {
+            // reset() снимает input, слушатели и флаг abort, но сохраняет нативные структуры декодера
+            reader.reset();
+        } catch (RuntimeException e) {
+            reader.dispose();
+            return;
+        }
+
+        if (provider == null || pooledCounts.computeIfAbsent(provider, p -> new AtomicInteger()).incrementAndGet() > maxPooledPerFormat) {
+            if (provider != null) pooledCounts.get(provider).decrementAndGet();
+            reader.dispose();
+            return;
+        }
+        getPool(provider).offer(reader);
+    }
+
+    public List<ImageReaderSpi> getProviders() {
+        List<ImageReaderSpi> result = providers;
+        if (result == null) {
+            result = new ArrayList<>();
+            Iterator<ImageReaderSpi> iterator = IIORegistry.getDefaultInstance().getServiceProviders(ImageReaderSpi.class, true);
+            while (iterator.hasNext()) {
+                result.add(iterator.next());
+            }
+            providers = result;
+        }
+        return result;
+    }
+
+    public long getCreated() {
+        return created.get();
+    }
+
+    public long getReused() {
+        return reused.get();
+    }
+
+    private Queue<ImageReader> getPool(ImageReaderSpi provider) {
+        pooledCounts.computeIfAbsent(provider, p -> new AtomicInteger());
+        return pools.computeIfAbsent(provider, p -> new ConcurrentLinkedQueue<>());
+    }
+}
@@ -3,18 +3,21 @@ package by.pkg.pkg_lab_2.service;
 import by.pkg.pkg_lab_2.model.ImageMetadata;
 import org.springframework.stereotype.Service;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
 @Service
 public class JpgAnalyzerService {
-    private static boolean isJpegSignature(byte[] fileBytes) {
-        return fileBytes[0] == (byte)0xFF && fileBytes[1] == (byte)0xD8;
+    private static final byte[] JFIF_IDENTIFIER = {'J', 'F', 'I', 'F', 0};
+    private static final byte[] EXIF_IDENTIFIER = {'E', 'x', 'i', 'f', 0};
+
+    private static boolean isJpegSignature(ByteBuffer fileBytes) {
+        return fileBytes.get(0) == (byte)0xFF && fileBytes.get(1) == (byte)0xD8;
     }
 
-    private static int getSegmentLength(byte[] fileBytes, int offset) {
-        if (offset + 3 >= fileBytes.length) return 0;
-        return ((fileBytes[offset + 2] & 0xFF) << 8) | (fileBytes[offset + 3] & 0xFF);
+    private static int getSegmentLength(ByteBuffer fileBytes, int offset) {
+        return ByteScan.u16be(fileBytes, offset + 2);
     }
 
     private static String getColorSpaceFromComponents(int components) {
@@ -26,24 +29,22 @@ public class JpgAnalyzerService {
         };
     }
 
-    private static void analyzeAPP0(byte[] fileBytes, int offset, Map<String, String> additionalInfo) {
+    private static void analyzeAPP0(ByteBuffer fileBytes, int offset, Map<String, String> additionalInfo) {
         try {
             int length = getSegmentLength(fileBytes, offset);
             if (length < 16) return;
 
-            if (fileBytes[offset + 4] == 'J' && fileBytes[offset + 5] == 'F' &&
-                    fileBytes[offset + 6] == 'I' && fileBytes[offset + 7] == 'F' &&
-                    fileBytes[offset + 8] == 0) {
+            if (ByteScan.matches(fileBytes, offset + 4, JFIF_IDENTIFIER)) {
 
                 additionalInfo.put("Формат", "JFIF");
 
-                int majorVersion = fileBytes[offset + 9] & 0xFF;
-                int minorVersion = fileBytes[offset + 10] & 0xFF;
+                int majorVersion = fileBytes.get(offset + 9) & 0xFF;
+                int minorVersion = fileBytes.get(offset + 10) & 0xFF;
                 additionalInfo.put("Версия JFIF", majorVersion + "." + minorVersion);
 
-                int densityUnits = fileBytes[offset + 11] & 0xFF;
-                int xDensity = ((fileBytes[offset + 12] & 0xFF) << 8) | (fileBytes[offset + 13] & 0xFF);
-                int yDensity = ((fileBytes[offset + 14] & 0xFF) << 8) | (fileBytes[offset + 15] & 0xFF);
+                int densityUnits = fileBytes.get(offset + 11) & 0xFF;
+                int xDensity = ByteScan.u16be(fileBytes, offset + 12);
+                int yDensity = ByteScan.u16be(fileBytes, offset + 14);
 
                 if (densityUnits == 1) {
                     additionalInfo.put("Разрешение X", xDensity + " dpi");
@@ -58,36 +59,40 @@ public class JpgAnalyzerService {
         }
     }
 
-    private static void analyzeAPP1(byte[] fileBytes, int offset, Map<String, String> additionalInfo) {
+    private static void analyzeAPP1(ByteBuffer fileBytes, int offset, Map<String, String> additionalInfo) {
         try {
             int length = getSegmentLength(fileBytes, offset);
             if (length < 8) return;
 
-            if (fileBytes[offset + 4] == 'E' && fileBytes[offset + 5] == 'x' &&
-                    fileBytes[offset + 6] == 'i' && fileBytes[offset + 7] == 'f' &&
-                    fileBytes[offset + 8] == 0) {
+            if (ByteScan.matches(fileBytes, offset + 4, EXIF_IDENTIFIER)) {
 
                 additionalInfo.put("Метаданные", "EXIF присутствуют");
+
+                int[] thumbnail = PreviewService.findExifThumbnail(fileBytes, offset + 10,
+                        Math.min(fileBytes.limit(), offset + 2 + length));
+                if (thumbnail != null) {
+                    additionalInfo.put("Миниатюра EXIF", thumbnail[1] + " байт");
+                }
             }
         } catch (Exception e) {
             System.err.println("Error analyzing APP1: " + e.getMessage());
         }
     }
 
-    private static void analyzeSOF(byte[] fileBytes, int offset, Map<String, String> additionalInfo) {
+    private static void analyzeSOF(ByteBuffer fileBytes, int offset, Map<String, String> additionalInfo) {
         try {
             int length = getSegmentLength(fileBytes, offset);
             if (length < 8) return;
 
-            int precision = fileBytes[offset + 4] & 0xFF;
+            int precision = fileBytes.get(offset + 4) & 0xFF;
             additionalInfo.put("Точность", precision + " бит/компонент");
 
-            int height = ((fileBytes[offset + 5] & 0xFF) << 8) | (fileBytes[offset + 6] & 0xFF);
-            int width = ((fileBytes[offset + 7] & 0xFF) << 8) | (fileBytes[offset + 8] & 0xFF);
+            int height = ByteScan.u16be(fileBytes, offset + 5);
+            int width = ByteScan.u16be(fileBytes, offset + 7);
             additionalInfo.put("Ширина", width + " px");
             additionalInfo.put("Высота", height + " px");
 
-            int components = fileBytes[offset + 9] & 0xFF;
+            int components = fileBytes.get(offset + 9) & 0xFF;
             additionalInfo.put("Компоненты", String.valueOf(components));
 
             String colorSpace = getColorSpaceFromComponents(components);
@@ -97,24 +102,24 @@ public class JpgAnalyzerService {
         }
     }
 
-    private static void analyzeDRI(byte[] fileBytes, int offset, Map<String, String> additionalInfo) {
+    private static void analyzeDRI(ByteBuffer fileBytes, int offset, Map<String, String> additionalInfo) {
         try {
             int length = getSegmentLength(fileBytes, offset);
             if (length < 4) return;
 
-            int restartInterval = ((fileBytes[offset + 4] & 0xFF) << 8) | (fileBytes[offset + 5] & 0xFF);
+            int restartInterval = ByteScan.u16be(fileBytes, offset + 4);
             additionalInfo.put("Интервал перезапуска", restartInterval + " MCU блоков");
         } catch (Exception e) {
             System.err.println("Error analyzing DRI: " + e.getMessage());
         }
     }
 
-    private static void analyzeJpegSegments(byte[] fileBytes, Map<String, String> additionalInfo) {
+    private static void analyzeJpegSegments(ByteBuffer fileBytes, Map<String, String> additionalInfo) {
         int i = 2;
 
-        while (i < fileBytes.length - 1) {
-            if (fileBytes[i] == (byte)0xFF && fileBytes[i + 1] != (byte)0x00) {
-                int marker = fileBytes[i + 1] & 0xFF;
+        while (i < fileBytes.limit() - 1) {
+            if (fileBytes.get(i) == (byte)0xFF && fileBytes.get(i + 1) != (byte)0x00) {
+                int marker = fileBytes.get(i + 1) & 0xFF;
 
                 switch (marker) {
                     case 0xE0: // APP0 (JFIF)
@@ -151,16 +156,19 @@ public class JpgAnalyzerService {
                 if (segmentLength < 2) break;
                 i += segmentLength;
             } else {
-                i++;
+                // Между сегментами - переход сразу к следующему байту 0xFF
+                i = ByteScan.indexOf(fileBytes, i + 1, fileBytes.limit() - 1, (byte) 0xFF);
+                if (i < 0) break;
             }
         }
     }
 
-    public static void analyze(byte[] fileBytes, ImageMetadata metadata) {
+    public static void analyze(ByteBuffer fileBytes, ImageMetadata metadata) {
         Map<String, String> additionalInfo = new HashMap<>();
+        FormatAnalysisEvent event = FormatAnalysisEvent.start(metadata, "segments", fileBytes.limit());
 
         try {
-            if (fileBytes.length < 4) {
+            if (fileBytes.limit() < 4) {
                 additionalInfo.put("Ошибка", "Файл слишком мал для формата JPEG");
                 metadata.setAdditionalInfo(additionalInfo);
                 return;
@@ -176,9 +184,11 @@ public class JpgAnalyzerService {
 
         } catch (Exception e) {
             System.err.println("Error analyzing JPEG specifics: " + e.getMessage());
+            event.fail(e);
             additionalInfo = null;
         } finally {
             metadata.setAdditionalInfo(additionalInfo);
+            event.finish();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+package by.pkg.pkg_lab_2.service;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/*
+Multi-index hashing для 64-битных хешей:
+хеш делится на 4 части по 16 бит, для каждой части строится таблица "значение части -> идентификаторы".
+Если расстояние Хэмминга между хешами не больше r, то хотя бы одна часть отличается не более
+чем на r / 4 бит (принцип Дирихле). Поэтому при поиске перебираются только соседние значения частей,
+а полным сравнением проверяются лишь найденные кандидаты.
+
+Идентификаторы удалённых хешей переиспользуются следующими add().
+Поиск не меняет состояние таблицы, поэтому несколько поисков могут идти параллельно;
+add() и remove() требуют внешней синхронизации.
+*/
+public class MultiIndexHashTable {
+    public static final int MAX_DISTANCE = 16;
+
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final int[][][] buckets = new int[CHUNKS][1 << CHUNK_BITS][];
+    private final int[][] bucketSizes = new int[CHUNKS][1 << CHUNK_BITS];
+
+    private long[] hashes = new long[1024];
+    private int nextId;
+    private int size;
+
+    private int[] freeIds = new int[16];
+    private int freeCount;
+
+    public int add(long hash) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            if (nextId == hashes.length) {
+                hashes = Arrays.copyOf(hashes, nextId * 2);
+            }
+            id = nextId++;
+        }
+        size++;
+        hashes[id] = hash;
+
+        for (int c = 0; c < CHUNKS; c++) {
+            int value = chunk(hash, c);
+            int[] bucket = buckets[c][value];
+            int bucketSize = bucketSizes[c][value];
+            if (bucket == null) {
+                bucket = new int[2];
+            } else if (bucketSize == bucket.length) {
+                bucket = Arrays.copyOf(bucket, bucketSize * 2);
+            }
+            bucket[bucketSize] = id;
+            buckets[c][value] = bucket;
+            bucketSizes[c][value] = bucketSize + 1;
+        }
+        return id;
+    }
+
+    public void remove(int id) {
+        long hash = hashes[id];
+        for (int c = 0; c < CHUNKS; c++) {
+            int value = chunk(hash, c);
+            int[] bucket = buckets[c][value];
+            int last = bucketSizes[c][value] - 1;
+            for (int i = 0; i <= last; i++) {
+                if (bucket[i] == id) {
+                    bucket[i] = bucket[last];
+                    bucketSizes[c][value] = last;
+                    break;
+                }
+            }
+            if (last == 0) {
+                buckets[c][value] = null;
+            }
+        }
+
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+        size--;
+    }
+
+    public long get(int id) {
+        return hashes[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void search(long hash, int maxDistance, IntConsumer consumer) {
+        if (maxDistance < 0 || maxDistance > MAX_DISTANCE) {
+            throw new IllegalArgumentException("Distance must be between 0 and " + MAX_DISTANCE + ": " + maxDistance);
+        }
+
+        // Уже проверенные кандидаты, чтобы не сообщать об одном хеше несколько раз.
+        // Набор свой у каждого поиска и растёт только до наибольшего встреченного идентификатора
+        BitSet visited = new BitSet();
+        int chunkDistance = maxDistance / CHUNKS;
+        for (int c = 0; c < CHUNKS; c++) {
+            probe(c, chunk(hash, c), chunkDistance, 0, hash, maxDistance, visited, consumer);
+        }
+    }
+
+    private void probe(int chunkIndex, int value, int flipsLeft, int fromBit,
+                       long hash, int maxDistance, BitSet visited, IntConsumer consumer) {
+        scanBucket(chunkIndex, value, hash, maxDistance, visited, consumer);
+        if (flipsLeft == 0) return;
+
+        for (int bit = fromBit; bit < CHUNK_BITS; bit++) {
+            probe(chunkIndex, value ^ (1 << bit), flipsLeft - 1, bit + 1, hash, maxDistance, visited, consumer);
+        }
+    }
+
+    private void scanBucket(int chunkIndex, int value, long hash, int maxDistance, BitSet visited, IntConsumer consumer) {
+        int bucketSize = bucketSizes[chunkIndex][value];
+        if (bucketSize == 0) return;
+
+        int[] bucket = buckets[chunkIndex][value];
+        for (int i = 0; i < bucketSize; i++) {
+            int id = bucket[i];
+            if (visited.get(id)) continue;
+            visited.set(id);
+
+            if (Long.bitCount(hashes[id] ^ hash) <= maxDistance) {
+                consumer.accept(id);
+            }
+        }
+    }
+
+    private static int chunk(long hash, int index) {
+        return (int) (hash >>> (index * CHUNK_BITS)) & CHUNK_MASK;
+    }
+}
@@ -0,0 +1,75 @@
+package by.pkg.pkg_lab_2.service;
+
+import java.awt.image.BufferedImage;
+
+/*
+dHash (difference hash):
+1. Изображение делится на сетку 9×8 ячеек, для каждой считается средняя яркость
+2. В каждой строке сравниваются соседние ячейки: бит = 1, если левая ярче правой
+3. 8 строк × 8 сравнений = 64 бита
+
+Близкие по содержанию изображения дают хеши с малым расстоянием Хэмминга.
+*/
+public class PerceptualHashService {
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+    // Не более SAMPLES × SAMPLES отсчётов на ячейку - хеш считается без полного обхода растра
+    private static final int SAMPLES = 16;
+
+    public static long dHash(BufferedImage image) {
+        double[][] cells = getCellLuminance(image);
+
+        long hash = 0;
+        for (int y = 0; y < GRID_HEIGHT; y++) {
+            for (int x = 0; x < GRID_WIDTH - 1; x++) {
+                hash <<= 1;
+                if (cells[y][x] > cells[y][x + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    public static String toHex(long hash) {
+        return String.format("%016x", hash);
+    }
+
+    public static long fromHex(String hex) {
+        return Long.parseUnsignedLong(hex, 16);
+    }
+
+    private static double[][] getCellLuminance(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[][] cells = new double[GRID_HEIGHT][GRID_WIDTH];
+
+        for (int cy = 0; cy < GRID_HEIGHT; cy++) {
+            int y0 = cy * height / GRID_HEIGHT;
+            int y1 = Math.max(y0 + 1, (cy + 1) * height / GRID_HEIGHT);
+            int yStep = Math.max(1, (y1 - y0) / SAMPLES);
+
+            for (int cx = 0; cx < GRID_WIDTH; cx++) {
+                int x0 = cx * width / GRID_WIDTH;
+                int x1 = Math.max(x0 + 1, (cx + 1) * width / GRID_WIDTH);
+                int xStep = Math.max(1, (x1 - x0) / SAMPLES);
+
+                double sum = 0;
+                int count = 0;
+                for (int y = y0; y < y1 && y < height; y += yStep) {
+                    for (int x = x0; x < x1 && x < width; x += xStep) {
+                        int rgb = image.getRGB(x, y);
+                        sum += 0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF);
+                        count++;
+                    }
+                }
+                cells[cy][cx] = count == 0 ? 0 : sum / count;
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,228 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.PixelStatistics;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+Статистика считается по изображению, которое уже декодировал анализ файла (ImageAnalyzerService.readImage),
+второй раз файл не читается. Больше analyzer.limits.max-decode-pixels изображение декодировано
+с субдискретизацией, тогда статистика - по выбранным пикселям, а шаг пишется в subsampling.
+*/
+@Service
+public class PixelStatisticsService {
+    private static final int ROWS_PER_TASK = 32;
+
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // step - шаг субдискретизации, с которым декодировано изображение
+    public PixelStatistics analyze(BufferedImage image, int step) {
+        return pool.invoke(new BandTask(image, 0, image.getHeight())).toStatistics(step);
+    }
+
+    private static class BandTask extends RecursiveTask<Accumulator> {
+        private final BufferedImage image;
+        private final int fromRow;
+        private final int toRow;
+
+        BandTask(BufferedImage image, int fromRow, int toRow) {
+            this.image = image;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (toRow - fromRow <= ROWS_PER_TASK) {
+                Accumulator accumulator = Accumulator.forImage(image);
+                accumulator.accumulate(image, fromRow, toRow);
+                return accumulator;
+            }
+
+            int middle = (fromRow + toRow) >>> 1;
+            BandTask left = new BandTask(image, fromRow, middle);
+            BandTask right = new BandTask(image, middle, toRow);
+            left.fork();
+            Accumulator result = right.compute();
+            result.add(left.join());
+            return result;
+        }
+    }
+
+    private static class Accumulator {
+        private final String[] channels;
+        private final long[][] histograms;
+        private final long[] sums;
+        private long pixels;
+
+        private Accumulator(String[] channels) {
+            this.channels = channels;
+            this.histograms = new long[channels.length][256];
+            this.sums = new long[channels.length];
+        }
+
+        static Accumulator forImage(BufferedImage image) {
+            ColorModel colorModel = image.getColorModel();
+            if (colorModel instanceof IndexColorModel indexed) {
+                return new Accumulator(indexed.hasAlpha()
+                        ? new String[] {"Red", "Green", "Blue", "Alpha"}
+                        : new String[] {"Red", "Green", "Blue"});
+            }
+
+            int bands = image.getRaster().getNumBands();
+            String[] channels = new String[bands];
+            int colorComponents = colorModel.getColorSpace().getNumComponents();
+            for (int b = 0; b < bands; b++) {
+                channels[b] = b < colorComponents ? colorModel.getColorSpace().getName(b) : "Alpha";
+            }
+            return new Accumulator(channels);
+        }
+
+        void accumulate(BufferedImage image, int fromRow, int toRow) {
+            if (image.getColorModel() instanceof IndexColorModel indexed) {
+                accumulateIndexed(image.getRaster(), indexed, fromRow, toRow);
+            } else {
+                accumulateDirect(image.getRaster(), fromRow, toRow);
+            }
+        }
+
+        private void accumulateIndexed(Raster raster, IndexColorModel colorModel, int fromRow, int toRow) {
+            int mapSize = colorModel.getMapSize();
+            byte[][] palette = new byte[channels.length][mapSize];
+            colorModel.getReds(palette[0]);
+            colorModel.getGreens(palette[1]);
+            colorModel.getBlues(palette[2]);
+            if (channels.length > 3) {
+                colorModel.getAlphas(palette[3]);
+            }
+
+            int width = raster.getWidth();
+            int[] row = new int[width];
+            for (int y = fromRow; y < toRow; y++) {
+                raster.getSamples(raster.getMinX(), raster.getMinY() + y, width, 1, 0, row);
+                for (int x = 0; x < width; x++) {
+                    int index = Math.min(row[x], mapSize - 1);
+                    for (int c = 0; c < channels.length; c++) {
+                        int value = palette[c][index] & 0xFF;
+                        histograms[c][value]++;
+                        sums[c] += value;
+                    }
+                }
+            }
+            pixels += (long) width * (toRow - fromRow);
+        }
+
+        private void accumulateDirect(Raster raster, int fromRow, int toRow) {
+            int dataType = raster.getSampleModel().getDataType();
+            if (dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE) {
+                accumulateFloat(raster, fromRow, toRow);
+                return;
+            }
+
+            int bands = channels.length;
+            int width = raster.getWidth();
+
+            // Приведение отсчётов произвольной разрядности к шкале 0..255. Знаковые отсчёты
+            // (TYPE_SHORT, знаковый TIFF) сдвигаются на минимум типа, чтобы не уйти в отрицательные индексы
+            int offset = dataType == DataBuffer.TYPE_SHORT ? Short.MIN_VALUE : 0;
+            int[] shifts = new int[bands];
+            int[][] scales = new int[bands][];
+            for (int b = 0; b < bands; b++) {
+                int bits = raster.getSampleModel().getSampleSize(b);
+                if (bits > 8) {
+                    shifts[b] = bits - 8;
+                } else if (bits < 8) {
+                    int max = (1 << bits) - 1;
+                    scales[b] = new int[max + 1];
+                    for (int v = 0; v <= max; v++) {
+                        scales[b][v] = v * 255 / max;
+                    }
+                }
+            }
+
+            int[] row = new int[width * bands];
+            for (int y = fromRow; y < toRow; y++) {
+                raster.getPixels(raster.getMinX(), raster.getMinY() + y, width, 1, row);
+                for (int b = 0; b < bands; b++) {
+                    long[] histogram = histograms[b];
+                    int[] scale = scales[b];
+                    int shift = shifts[b];
+                    long sum = 0;
+                    for (int i = b; i < row.length; i += bands) {
+                        // Для >>> отрицательное значение - большое беззнаковое, min оставляет индекс в 0..255
+                        int value = scale != null
+                                ? scale[Math.min(row[i] - offset, scale.length - 1)]
+                                : Math.min((row[i] - offset) >>> shift, 255);
+                        histogram[value]++;
+                        sum += value;
+                    }
+                    sums[b] += sum;
+                }
+            }
+            pixels += (long) width * (toRow - fromRow);
+        }
+
+        // Отсчёты с плавающей точкой считаются нормированными к 0..1, значения вне диапазона прижимаются к краям
+        private void accumulateFloat(Raster raster, int fromRow, int toRow) {
+            int bands = channels.length;
+            int width = raster.getWidth();
+            double[] row = new double[width * bands];
+            for (int y = fromRow; y < toRow; y++) {
+                raster.getPixels(raster.getMinX(), raster.getMinY() + y, width, 1, row);
+                for (int i = 0; i < row.length; i++) {
+                    double sample = row[i];
+                    int value = sample > 0 ? (int) Math.min(255, Math.round(sample * 255)) : 0;
+                    histograms[i % bands][value]++;
+                    sums[i % bands] += value;
+                }
+            }
+            pixels += (long) width * (toRow - fromRow);
+        }
+
+        void add(Accumulator other) {
+            for (int c = 0; c < channels.length; c++) {
+                long[] histogram = histograms[c];
+                long[] otherHistogram = other.histograms[c];
+                for (int v = 0; v < 256; v++) {
+                    histogram[v] += otherHistogram[v];
+                }
+                sums[c] += other.sums[c];
+            }
+            pixels += other.pixels;
+        }
+
+        PixelStatistics toStatistics(int step) {
+            double[] mean = new double[channels.length];
+            double[] entropy = new double[channels.length];
+
+            for (int c = 0; c < channels.length; c++) {
+                if (pixels == 0) continue;
+                mean[c] = (double) sums[c] / pixels;
+
+                double e = 0;
+                for (long count : histograms[c]) {
+                    if (count == 0) continue;
+                    double p = (double) count / pixels;
+                    e -= p * (Math.log(p) / Math.log(2));
+                }
+                entropy[c] = e;
+            }
+
+            PixelStatistics statistics = new PixelStatistics();
+            statistics.setChannels(channels);
+            statistics.setMean(mean);
+            statistics.setEntropy(entropy);
+            statistics.setHistograms(histograms);
+            statistics.setSampledPixels(pixels);
+            statistics.setSubsampling(step);
+            return statistics;
+        }
+    }
+}
@@ -3,11 +3,15 @@ package by.pkg.pkg_lab_2.service;
 import by.pkg.pkg_lab_2.model.ImageMetadata;
 import org.springframework.stereotype.Service;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
 @Service
 public class PngAnalyzerService {
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A};
+    private static final int IHDR = ByteScan.fourCC("IHDR");
+
     private static String getCompressionMethod(int method) {
         return method == 0 ? "Deflate" : "Неизвестно";
     }
@@ -55,68 +59,53 @@ public class PngAnalyzerService {
     FM = Filter Method          ← fileBytes[i+15]
     IL = Interlace Method       ← fileBytes[i+16]
     */
-    public static void analyze(byte[] fileBytes, ImageMetadata metadata) {
+    public static void analyze(ByteBuffer fileBytes, ImageMetadata metadata) {
         Map<String, String> additionalInfo = new HashMap<>();
+        FormatAnalysisEvent event = FormatAnalysisEvent.start(metadata, "chunks", fileBytes.limit());
 
         try {
-            if (fileBytes.length > 8) {
-                byte[] pngSignature = {(byte)0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A};
-                boolean isPng = true;
-                for (int i = 0; i < 8; i++) {
-                    if (fileBytes[i] != pngSignature[i]) {
-                        isPng = false;
-                        break;
-                    }
-                }
+            if (fileBytes.limit() > 8) {
+                boolean isPng = ByteScan.matches(fileBytes, 0, PNG_SIGNATURE);
                 additionalInfo.put("Сигнатура PNG", isPng ? "Корректная" : "Некорректная");
                 if (isPng) {
-                    for (int i = 8; i <= fileBytes.length - 25; i++) {
-                        if (fileBytes[i] == 'I' && fileBytes[i+1] == 'H' &&
-                                fileBytes[i+2] == 'D' && fileBytes[i+3] == 'R') {
-
-                            int chunkLength = ((fileBytes[i-4] & 0xFF) << 24) |
-                                    ((fileBytes[i-3] & 0xFF) << 16) |
-                                    ((fileBytes[i-2] & 0xFF) << 8) |
-                                    (fileBytes[i-1] & 0xFF);
-
-                            if (chunkLength != 13) {
-                                continue;
-                            }
-
-                            int width = ((fileBytes[i+4] & 0xFF) << 24) |
-                                    ((fileBytes[i+5] & 0xFF) << 16) |
-                                    ((fileBytes[i+6] & 0xFF) << 8) |
-                                    (fileBytes[i+7] & 0xFF);
-
-                            int height = ((fileBytes[i+8] & 0xFF) << 24) |
-                                    ((fileBytes[i+9] & 0xFF) << 16) |
-                                    ((fileBytes[i+10] & 0xFF) << 8) |
-                                    (fileBytes[i+11] & 0xFF);
-
-                            int bitDepth = fileBytes[i+12] & 0xFF;
-                            int colorType = fileBytes[i+13] & 0xFF;
-                            int compression = fileBytes[i+14] & 0xFF;
-                            int filter = fileBytes[i+15] & 0xFF;
-                            int interlace = fileBytes[i+16] & 0xFF;
-
-                            additionalInfo.put("Тип цвета PNG", getColorType(colorType));
-                            additionalInfo.put("Глубина битов", bitDepth + " bit");
-                            additionalInfo.put("Размер", width + " × " + height + " px");
-                            additionalInfo.put("Сжатие", getCompressionMethod(compression));
-                            additionalInfo.put("Фильтрация", getFilterMethod(filter));
-                            additionalInfo.put("Чередование", getInterlaceMethod(interlace));
-                            additionalInfo.put("Поддержка прозрачности", hasTransparency(colorType) ? "Да" : "Нет");
-                            break;
+                    // i - позиция 'I'; после типа чанка нужно ещё 21 байт (данные IHDR и CRC)
+                    int i = 8;
+                    while ((i = ByteScan.indexOf(fileBytes, i, fileBytes.limit() - 21, IHDR)) >= 0) {
+                        ByteCursor cursor = new ByteCursor(fileBytes, i - 4, fileBytes.limit(), false);
+                        int chunkLength = cursor.s32();
+                        if (chunkLength != 13) {
+                            i++;
+                            continue;
                         }
+
+                        cursor.skip(4);
+                        int width = cursor.s32();
+                        int height = cursor.s32();
+                        int bitDepth = cursor.u8();
+                        int colorType = cursor.u8();
+                        int compression = cursor.u8();
+                        int filter = cursor.u8();
+                        int interlace = cursor.u8();
+
+                        additionalInfo.put("Тип цвета PNG", getColorType(colorType));
+                        additionalInfo.put("Глубина битов", bitDepth + " bit");
+                        additionalInfo.put("Размер", width + " × " + height + " px");
+                        additionalInfo.put("Сжатие", getCompressionMethod(compression));
+                        additionalInfo.put("Фильтрация", getFilterMethod(filter));
+                        additionalInfo.put("Чередование", getInterlaceMethod(interlace));
+                        additionalInfo.put("Поддержка прозрачности", hasTransparency(colorType) ? "Да" : "Нет");
+                        break;
                     }
                 }
             }
 
         } catch (Exception e) {
             System.err.println("Error analyzing PNG specifics: " + e.getMessage());
+            event.fail(e);
             additionalInfo = null;
         } finally {
             metadata.setAdditionalInfo(additionalInfo);
+            event.finish();
         }
     }
 }
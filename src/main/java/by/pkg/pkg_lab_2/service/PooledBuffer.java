@@ -0,0 +1,64 @@
+package by.pkg.pkg_lab_2.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Буфер из BufferPool со счётчиком ссылок: возвращается в пул, когда закрыты все владельцы.
+Это позволяет передать буфер потоку анализа, не опасаясь, что он будет переиспользован,
+пока поток ещё читает данные (например, после таймаута).
+*/
+public class PooledBuffer implements AutoCloseable {
+    private final BufferPool pool;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private ByteBuffer buffer;
+    private int sizeClass;
+    private int size;
+
+    PooledBuffer(BufferPool pool, ByteBuffer buffer, int sizeClass) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.sizeClass = sizeClass;
+    }
+
+    // Представление содержимого только для чтения: позиция 0, limit = размер данных
+    public ByteBuffer view() {
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        view.position(0).limit(size);
+        return view;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public PooledBuffer retain() {
+        references.incrementAndGet();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (references.decrementAndGet() == 0) {
+            pool.release(buffer, sizeClass);
+        }
+    }
+
+    void append(byte[] data, int length) throws IOException {
+        if (size + (long) length > buffer.capacity()) {
+            grow(size + (long) length);
+        }
+        buffer.put(size, data, 0, length);
+        size += length;
+    }
+
+    private void grow(long required) throws IOException {
+        PooledBuffer larger = pool.acquire(Math.max(required, buffer.capacity() * 2L));
+        larger.buffer.put(0, buffer, 0, size);
+
+        pool.release(buffer, sizeClass);
+        buffer = larger.buffer;
+        sizeClass = larger.sizeClass;
+    }
+}
@@ -0,0 +1,67 @@
+package by.pkg.pkg_lab_2.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+// Файл (например, запись ZIP архива), содержимое которого уже лежит в буфере из пула
+public class PooledMultipartFile implements MultipartFile {
+    private final String filename;
+    private final String contentType;
+    private final PooledBuffer buffer;
+
+    public PooledMultipartFile(String filename, String contentType, PooledBuffer buffer) {
+        this.filename = filename;
+        this.contentType = contentType;
+        this.buffer = buffer;
+    }
+
+    public PooledBuffer getPooledBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return filename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return buffer.size() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return buffer.size();
+    }
+
+    @Override
+    public byte[] getBytes() {
+        ByteBuffer view = buffer.view();
+        byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new ByteBufferInputStream(buffer.view());
+    }
+
+    @Override
+    public void transferTo(File dest) throws IllegalStateException {
+        throw new UnsupportedOperationException();
+    }
+}
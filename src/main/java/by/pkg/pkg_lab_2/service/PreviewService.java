@@ -0,0 +1,255 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ImagePreview;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+Встроенные миниатюры ищутся без декодирования изображения:
+- JPEG: сегмент APP1 "Exif\0\0" -> TIFF структура -> IFD1 -> теги 0x0201 (offset) и 0x0202 (длина)
+- TIFF: те же теги в цепочке IFD файла
+- PNG:  чанк eXIf с TIFF структурой внутри
+
+Найденная миниатюра (JPEG) копируется из файла как есть. Если миниатюры нет,
+изображение декодируется с субдискретизацией и сжимается в JPEG - в очереди AnalysisScheduler,
+с проверкой заявленного размера (analyzer.limits.max-pixels) и лимитами времени и памяти на файл.
+*/
+@Service
+public class PreviewService {
+    private static final int TAG_JPEG_OFFSET = 0x0201;
+    private static final int TAG_JPEG_LENGTH = 0x0202;
+    private static final int MAX_IFD_COUNT = 8;
+    private static final int EXIF_CHUNK = ByteScan.fourCC("eXIf");
+    private static final int IEND_CHUNK = ByteScan.fourCC("IEND");
+
+    @Autowired
+    private ImageReaderPool imageReaderPool;
+
+    @Autowired
+    private AnalysisScheduler analysisScheduler;
+
+    @Value("${analyzer.limits.file-timeout:30s}")
+    private Duration fileTimeout;
+
+    @Value("${analyzer.limits.max-allocation:2GB}")
+    private DataSize maxAllocation;
+
+    @Value("${analyzer.limits.max-pixels:1000000000}")
+    private long maxPixels;
+
+    @Value("${analyzer.scheduler.max-queue-wait:10m}")
+    private Duration maxQueueWait;
+
+    public ImagePreview getPreview(PooledBuffer buffer, int maxSize) throws IOException, AnalysisLimitException {
+        ByteBuffer fileBytes = buffer.view();
+        int[] range = findEmbeddedPreview(fileBytes);
+        if (range != null) {
+            byte[] preview = new byte[range[1]];
+            fileBytes.get(range[0], preview);
+            return new ImagePreview(preview, "image/jpeg", true);
+        }
+
+        // Декодирование - через общую очередь анализа и с теми же лимитами, что и анализ файла.
+        // Буфер удерживается задачей: после таймаута она может ещё читать его
+        AnalysisDeadline deadline = new AnalysisDeadline(fileTimeout, maxAllocation.toBytes());
+        PooledBuffer retained = buffer.retain();
+        AnalysisScheduler.Task<byte[]> future = analysisScheduler.submit(() -> {
+            deadline.start();
+            try (retained) {
+                return decodePreview(retained.view(), maxSize, deadline);
+            }
+        });
+
+        try {
+            if (!future.awaitStart(maxQueueWait.toMillis(), TimeUnit.MILLISECONDS) && future.cancelIfQueued()) {
+                retained.close();
+                throw new AnalysisLimitException("Сервер перегружен, файл не дождался очереди анализа");
+            }
+            return new ImagePreview(future.get(fileTimeout.toMillis(), TimeUnit.MILLISECONDS), "image/jpeg", false);
+        } catch (TimeoutException e) {
+            deadline.cancel();
+            future.cancel(true);
+            throw new AnalysisLimitException("Превышено время анализа (" + fileTimeout.toSeconds() + " с)");
+        } catch (InterruptedException e) {
+            deadline.cancel();
+            if (future.cancelIfQueued()) {
+                retained.close();
+            } else {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new AnalysisLimitException("Анализ прерван");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AnalysisLimitException limit) throw limit;
+            if (cause instanceof IOException io) throw io;
+            throw new IOException("Preview decode failed", cause);
+        }
+    }
+
+    // Возвращает {offset, длина} встроенной JPEG миниатюры или null
+    public static int[] findEmbeddedPreview(ByteBuffer fileBytes) {
+        if (fileBytes.limit() < 8) return null;
+
+        if (fileBytes.get(0) == (byte) 0xFF && fileBytes.get(1) == (byte) 0xD8) {
+            return findJpegExifThumbnail(fileBytes);
+        }
+        if ((fileBytes.get(0) == 0x49 && fileBytes.get(1) == 0x49) || (fileBytes.get(0) == 0x4D && fileBytes.get(1) == 0x4D)) {
+            return findExifThumbnail(fileBytes, 0, fileBytes.limit());
+        }
+        if (fileBytes.get(0) == (byte) 0x89 && fileBytes.get(1) == 'P' && fileBytes.get(2) == 'N' && fileBytes.get(3) == 'G') {
+            return findPngExifThumbnail(fileBytes);
+        }
+        return null;
+    }
+
+    public static int[] findJpegExifThumbnail(ByteBuffer fileBytes) {
+        int i = 2;
+        while (i + 4 < fileBytes.limit()) {
+            if (fileBytes.get(i) != (byte) 0xFF) return null;
+
+            int marker = fileBytes.get(i + 1) & 0xFF;
+            if (marker == 0xDA || marker == 0xD9) return null;
+
+            int length = ByteScan.u16be(fileBytes, i + 2);
+            if (length < 2) return null;
+
+            if (marker == 0xE1 && length >= 16 && isExifHeader(fileBytes, i + 4)) {
+                int[] range = findExifThumbnail(fileBytes, i + 10, Math.min(fileBytes.limit(), i + 2 + length));
+                if (range != null) return range;
+            }
+            i += 2 + length;
+        }
+        return null;
+    }
+
+    private static int[] findPngExifThumbnail(ByteBuffer fileBytes) {
+        int i = 8;
+        while (i + 8 <= fileBytes.limit()) {
+            int length = ByteScan.s32be(fileBytes, i);
+            if (length < 0 || i + 12L + length > fileBytes.limit()) return null;
+
+            int type = ByteScan.s32be(fileBytes, i + 4);
+            if (type == EXIF_CHUNK) {
+                return findExifThumbnail(fileBytes, i + 8, i + 8 + length);
+            }
+            if (type == IEND_CHUNK) {
+                return null;
+            }
+            i += 12 + length;
+        }
+        return null;
+    }
+
+    // tiffStart - начало TIFF заголовка, от него отсчитываются все offset внутри EXIF; tiffEnd - конец сегмента
+    public static int[] findExifThumbnail(ByteBuffer data, int tiffStart, int tiffEnd) {
+        if (tiffStart + 8 > tiffEnd) return null;
+
+        boolean isLittleEndian = data.get(tiffStart) == 0x49 && data.get(tiffStart + 1) == 0x49;
+        if (!isLittleEndian && !(data.get(tiffStart) == 0x4D && data.get(tiffStart + 1) == 0x4D)) return null;
+        if (ByteScan.u16(data, tiffStart + 2, isLittleEndian) != 42) return null;
+
+        long ifdOffset = ByteScan.s32(data, tiffStart + 4, isLittleEndian) & 0xFFFFFFFFL;
+
+        for (int n = 0; n < MAX_IFD_COUNT && ifdOffset >= 8; n++) {
+            long ifd = tiffStart + ifdOffset;
+            if (ifd + 2 > tiffEnd) return null;
+
+            int entryCount = ByteScan.u16(data, (int) ifd, isLittleEndian);
+            if (ifd + 2 + entryCount * 12L + 4 > tiffEnd) return null;
+
+            long thumbnailOffset = -1;
+            long thumbnailLength = -1;
+            for (int e = 0; e < entryCount; e++) {
+                int entry = (int) ifd + 2 + e * 12;
+                int tag = ByteScan.u16(data, entry, isLittleEndian);
+                if (tag == TAG_JPEG_OFFSET) {
+                    thumbnailOffset = ByteScan.s32(data, entry + 8, isLittleEndian) & 0xFFFFFFFFL;
+                } else if (tag == TAG_JPEG_LENGTH) {
+                    thumbnailLength = ByteScan.s32(data, entry + 8, isLittleEndian) & 0xFFFFFFFFL;
+                }
+            }
+
+            if (thumbnailOffset > 0 && thumbnailLength > 2) {
+                // Миниатюра должна лежать внутри того же сегмента APP1 / чанка eXIf, что и TIFF структура
+                long start = tiffStart + thumbnailOffset;
+                if (start + thumbnailLength <= tiffEnd &&
+                        data.get((int) start) == (byte) 0xFF && data.get((int) start + 1) == (byte) 0xD8) {
+                    return new int[] {(int) start, (int) thumbnailLength};
+                }
+            }
+
+            ifdOffset = ByteScan.s32(data, (int) (ifd + 2 + entryCount * 12L), isLittleEndian) & 0xFFFFFFFFL;
+        }
+        return null;
+    }
+
+    private static boolean isExifHeader(ByteBuffer data, int offset) {
+        return data.get(offset) == 'E' && data.get(offset + 1) == 'x' &&
+                data.get(offset + 2) == 'i' && data.get(offset + 3) == 'f' &&
+                data.get(offset + 4) == 0 && data.get(offset + 5) == 0;
+    }
+
+    byte[] decodePreview(ByteBuffer fileBytes, int maxSize, AnalysisDeadline deadline) throws Exception {
+        try (ImageInputStream iis = new ByteBufferImageInputStream(fileBytes)) {
+            ImageReader reader = imageReaderPool.acquire(iis);
+            if (reader == null) {
+                throw new IOException("No image reader for preview");
+            }
+
+            BufferedImage image;
+            try {
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if (width <= 0 || height <= 0 || (long) width * height > maxPixels) {
+                    throw new AnalysisLimitException("Заявленный размер изображения " + width + "×" + height + " превышает лимит");
+                }
+
+                // Субдискретизация при чтении: декодер пропускает строки и столбцы, лишние пиксели не хранятся
+                int step = Math.max(1, Math.max(width, height) / maxSize);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                deadline.attach(reader);
+                image = reader.read(0, param);
+                deadline.checkpoint();
+            } finally {
+                imageReaderPool.release(reader);
+            }
+
+            double scale = Math.min(1.0, (double) maxSize / Math.max(image.getWidth(), image.getHeight()));
+            int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+            int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+            BufferedImage preview = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = preview.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(image, 0, 0, targetWidth, targetHeight, Color.WHITE, null);
+            } finally {
+                g.dispose();
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(preview, "jpeg", out);
+            return out.toByteArray();
+        }
+    }
+}
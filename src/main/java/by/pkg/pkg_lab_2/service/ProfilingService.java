@@ -0,0 +1,218 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.RecordingStatus;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+Запись JFR по запросу, без перезапуска приложения.
+
+Одновременно идёт не больше одной записи. Профиль "analyzer" - src/main/resources/jfr/image-analyzer.jfc
+(события FileAnalysis/FormatAnalysis, сэмплы CPU и выделений памяти, GC), "default" и "profile" - стандартные
+профили JDK. Запись пишется в analyzer.profiling.dir и сама останавливается через analyzer.profiling.max-duration;
+остановка возвращает путь к готовому .jfr, который открывается в JDK Mission Control или `jfr print`.
+
+Эндпоинты записи доступны только при analyzer.profiling.enabled=true (по умолчанию выключены).
+В каталоге хранятся последние analyzer.profiling.max-files записей: более старые удаляются при запуске новой.
+*/
+@Service
+public class ProfilingService implements DisposableBean {
+    public static final String ANALYZER_SETTINGS = "analyzer";
+
+    private static final String ANALYZER_PROFILE = "/jfr/image-analyzer.jfc";
+    private static final String FILE_PREFIX = "analyzer-";
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    @Value("${analyzer.profiling.enabled:false}")
+    private boolean enabled;
+
+    @Value("${analyzer.profiling.max-files:5}")
+    private int maxFiles = 5;
+
+    @Value("${analyzer.profiling.dir:recordings}")
+    private String dir = "recordings";
+
+    @Value("${analyzer.profiling.max-duration:10m}")
+    private Duration maxDuration = Duration.ofMinutes(10);
+
+    @Value("${analyzer.profiling.max-size:256MB}")
+    private DataSize maxSize = DataSize.ofMegabytes(256);
+
+    private Recording recording;
+    private String recordingSettings;
+    private Path recordingFile;
+
+    public ProfilingService() {
+        // Типы событий видны в JMC и `jfr summary` ещё до первого анализа
+        if (FlightRecorder.isAvailable()) {
+            FlightRecorder.register(FileAnalysisEvent.class);
+            FlightRecorder.register(FormatAnalysisEvent.class);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized RecordingStatus start(String settings, Duration duration) throws IOException {
+        if (!FlightRecorder.isAvailable()) {
+            throw new IllegalStateException("JFR is not available in this JVM");
+        }
+        if (duration != null && (duration.isNegative() || duration.isZero())) {
+            throw new IllegalArgumentException("Recording duration must be positive");
+        }
+        Configuration configuration = loadConfiguration(settings);
+        if (isRunning()) {
+            throw new IllegalStateException("Recording " + recording.getId() + " is already running");
+        }
+        closeRecording();
+
+        Path directory = Path.of(dir);
+        Files.createDirectories(directory);
+        deleteOldRecordings(directory, maxFiles - 1);
+        Path file = directory.resolve(FILE_PREFIX + FILE_TIME.format(Instant.now()) + "-" + settings + ".jfr").toAbsolutePath();
+
+        Recording started = new Recording(configuration);
+        started.setName("image-analyzer");
+        started.setToDisk(true);
+        started.setDestination(file);
+        started.setDuration(duration != null && duration.compareTo(maxDuration) < 0 ? duration : maxDuration);
+        started.setMaxSize(maxSize.toBytes());
+        started.start();
+
+        recording = started;
+        recordingSettings = settings;
+        recordingFile = file;
+        System.out.println("JFR recording " + started.getId() + " started with '" + settings + "' settings, writing to " + file);
+        return status();
+    }
+
+    /*
+    Останавливает запись и возвращает файл. Запись, остановленная по max-duration, уже сброшена
+    в файл - тогда просто возвращается путь к нему.
+    */
+    public synchronized Path stop() {
+        if (recording == null) {
+            throw new IllegalStateException("No recording to stop");
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        Path file = recordingFile;
+        System.out.println("JFR recording " + recording.getId() + " stopped, " + fileSize(file) + " bytes written to " + file);
+        closeRecording();
+        return file;
+    }
+
+    public synchronized RecordingStatus status() {
+        RecordingStatus status = new RecordingStatus();
+        status.setAvailable(FlightRecorder.isAvailable());
+        if (recording == null) return status;
+
+        status.setRunning(isRunning());
+        status.setId(recording.getId());
+        status.setSettings(recordingSettings);
+        status.setFile(recordingFile.toString());
+        Instant startTime = recording.getStartTime();
+        if (startTime != null) {
+            status.setStartTime(startTime.toString());
+            // Для записи с duration getStopTime() - запланированное время остановки
+            Instant endTime = isRunning() || recording.getStopTime() == null ? Instant.now() : recording.getStopTime();
+            status.setElapsedSeconds(Duration.between(startTime, endTime).toSeconds());
+        }
+        Duration duration = recording.getDuration();
+        status.setMaxDurationSeconds(duration != null ? duration.toSeconds() : 0);
+        status.setSizeBytes(isRunning() ? recording.getSize() : fileSize(recordingFile));
+        return status;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (isRunning()) {
+            stop();
+        }
+        closeRecording();
+    }
+
+    private boolean isRunning() {
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+            recordingSettings = null;
+            recordingFile = null;
+        }
+    }
+
+    // Удаляются только свои файлы (analyzer-*.jfr), старые - первыми; в имени время запуска, поэтому порядок по имени
+    private static void deleteOldRecordings(Path directory, int keep) throws IOException {
+        List<Path> recordings;
+        try (Stream<Path> files = Files.list(directory)) {
+            recordings = files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(FILE_PREFIX) && name.endsWith(".jfr") && Files.isRegularFile(path);
+                    })
+                    .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+                    .toList();
+        }
+        for (int i = 0; i < recordings.size() - Math.max(0, keep); i++) {
+            Path old = recordings.get(i);
+            Files.deleteIfExists(old);
+            System.out.println("JFR recording " + old + " deleted by retention (analyzer.profiling.max-files)");
+        }
+    }
+
+    private static Configuration loadConfiguration(String settings) throws IOException {
+        if (ANALYZER_SETTINGS.equals(settings)) {
+            try (InputStream in = ProfilingService.class.getResourceAsStream(ANALYZER_PROFILE)) {
+                if (in == null) {
+                    throw new IOException("Profile " + ANALYZER_PROFILE + " not found on classpath");
+                }
+                return Configuration.create(new InputStreamReader(in, StandardCharsets.UTF_8));
+            } catch (ParseException e) {
+                throw new IOException("Invalid profile " + ANALYZER_PROFILE + ": " + e.getMessage(), e);
+            }
+        }
+        if ("default".equals(settings) || "profile".equals(settings)) {
+            try {
+                return Configuration.getConfiguration(settings);
+            } catch (ParseException e) {
+                throw new IOException("Invalid JDK profile " + settings + ": " + e.getMessage(), e);
+            }
+        }
+        throw new IllegalArgumentException("Unknown JFR settings: " + settings);
+    }
+
+    private static long fileSize(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
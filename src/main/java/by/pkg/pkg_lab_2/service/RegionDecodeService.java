@@ -0,0 +1,340 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ImageLayout;
+import by.pkg.pkg_lab_2.model.ImageRegion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+Чтение фрагмента или уменьшенной копии очень больших изображений (TIFF/JPEG на сотни мегапикселей).
+
+Файл читается с диска через FileImageInputStream и целиком в память не загружается. Декодер
+получает ImageReadParam с областью (setSourceRegion) и шагом субдискретизации, поэтому растр
+занимает память только под выходные пиксели. Шаг выбирается по maxSize или задаётся явно и
+увеличивается, пока результат не уложится в analyzer.region.max-output-pixels.
+
+TIFF:
+- читается TIFF reader из JDK: он находит нужные полосы и тайлы по StripOffsets/TileOffsets
+  и распаковывает только пересекающие область (а при субдискретизации - только полосы
+  с выбранными строками), поэтому время зависит от размера области, а не от её положения.
+  TIFF reader TwelveMonkeys 3.10 распаковывает все полосы до области и падает при чтении
+  области тайлового файла или со смещением по x и шагом > 1; он используется только
+  для файлов, которые не смог прочитать JDK
+- если в файле есть уменьшенные копии (следующие IFD с теми же пропорциями), обзор читается
+  с самого мелкого уровня пирамиды, не грубее нужного шага
+JPEG декодируется последовательно: память ограничена областью, но строки выше области
+всё равно распаковываются.
+*/
+@Service
+public class RegionDecodeService {
+    private static final String JDK_TIFF_PROVIDER_PACKAGE = "com.sun.imageio.plugins.tiff.";
+
+    @Autowired
+    private ImageReaderPool imageReaderPool;
+
+    @Autowired
+    private AnalysisScheduler analysisScheduler;
+
+    @Value("${analyzer.limits.file-timeout:30s}")
+    private Duration fileTimeout;
+
+    @Value("${analyzer.limits.max-allocation:2GB}")
+    private DataSize maxAllocation;
+
+    @Value("${analyzer.limits.max-pixels:1000000000}")
+    private long maxPixels;
+
+    @Value("${analyzer.region.max-output-pixels:16777216}")
+    private long maxOutputPixels;
+
+    @Value("${analyzer.scheduler.max-queue-wait:10m}")
+    private Duration maxQueueWait;
+
+    public ImageLayout getLayout(Path file) throws IOException {
+        try (ImageInputStream iis = new FileImageInputStream(file.toFile())) {
+            ImageReader reader = acquireRegionReader(iis);
+            try {
+                ImageLayout layout = new ImageLayout();
+                layout.setFormat(isTiff(reader) ? "TIFF" : reader.getFormatName().toUpperCase());
+                layout.setWidth(reader.getWidth(0));
+                layout.setHeight(reader.getHeight(0));
+                layout.getLevels().addAll(readLevels(reader));
+                return layout;
+            } finally {
+                imageReaderPool.release(reader);
+            }
+        }
+    }
+
+    /*
+    region - область в координатах полного изображения (null - всё изображение);
+    subsampling - шаг по обеим осям (0 - по maxSize, а без него 1);
+    format - "jpeg" или "png".
+    */
+    public ImageRegion decodeRegion(Path file, Rectangle region, int subsampling, int maxSize, String format)
+            throws IOException, AnalysisLimitException {
+        String outputFormat = format.toLowerCase();
+        if (!outputFormat.equals("jpeg") && !outputFormat.equals("png")) {
+            throw new IllegalArgumentException("Неподдерживаемый формат результата: " + format);
+        }
+
+        AnalysisDeadline deadline = new AnalysisDeadline(fileTimeout, maxAllocation.toBytes());
+        AnalysisScheduler.Task<ImageRegion> future = analysisScheduler.submit(() -> {
+            deadline.start();
+            return decode(file, region, subsampling, maxSize, outputFormat, deadline);
+        });
+
+        try {
+            if (!future.awaitStart(maxQueueWait.toMillis(), TimeUnit.MILLISECONDS) && future.cancelIfQueued()) {
+                throw new AnalysisLimitException("Сервер перегружен, файл не дождался очереди анализа");
+            }
+            return future.get(fileTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            deadline.cancel();
+            future.cancel(true);
+            throw new AnalysisLimitException("Превышено время анализа (" + fileTimeout.toSeconds() + " с)");
+        } catch (InterruptedException e) {
+            deadline.cancel();
+            if (!future.cancelIfQueued()) future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AnalysisLimitException("Анализ прерван");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AnalysisLimitException limit) throw limit;
+            if (cause instanceof IllegalArgumentException invalid) throw invalid;
+            if (cause instanceof IOException io) throw io;
+            throw new IOException("Region decode failed", cause);
+        }
+    }
+
+    ImageRegion decode(Path file, Rectangle region, int subsampling, int maxSize, String format,
+                       AnalysisDeadline deadline) throws Exception {
+        try (ImageInputStream iis = new FileImageInputStream(file.toFile())) {
+            ImageReader reader = acquireRegionReader(iis);
+            try {
+                return decode(reader, region, subsampling, maxSize, format, deadline);
+            } catch (IOException | RuntimeException e) {
+                if (!isJdkTiff(reader) || e instanceof IllegalArgumentException) throw e;
+                // Часть вариантов TIFF (например, старый JPEG в TIFF) JDK не поддерживает
+                System.err.println("JDK TIFF reader failed, falling back: " + e.getMessage());
+            } finally {
+                imageReaderPool.release(reader);
+            }
+
+            iis.seek(0);
+            ImageReader fallback = acquireReader(iis);
+            try {
+                return decode(fallback, region, subsampling, maxSize, format, deadline);
+            } finally {
+                imageReaderPool.release(fallback);
+            }
+        }
+    }
+
+    private ImageRegion decode(ImageReader reader, Rectangle requested, int subsampling, int maxSize, String format,
+                               AnalysisDeadline deadline) throws Exception {
+        long start = System.nanoTime();
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        if (width <= 0 || height <= 0 || (long) width * height > maxPixels) {
+            throw new AnalysisLimitException("Заявленный размер изображения " + width + "×" + height + " превышает лимит");
+        }
+        Rectangle region = clip(requested, width, height);
+        int step = chooseStep(region, subsampling, maxSize);
+
+        // Уровень пирамиды: самый мелкий, который не грубее выбранного шага
+        ImageLayout.Level level = step > 1 && isTiff(reader) ? chooseLevel(readLevels(reader), width, step) : null;
+        double scale = level == null ? 1 : (double) width / level.getWidth();
+        int levelStep = Math.max(1, (int) Math.round(step / scale));
+
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(level == null ? region : scaleRegion(region, scale, level));
+        param.setSourceSubsampling(levelStep, levelStep, 0, 0);
+
+        deadline.attach(reader);
+        BufferedImage image = reader.read(level == null ? 0 : level.getIndex(), param);
+        deadline.checkpoint();
+
+        ImageRegion result = new ImageRegion();
+        result.setImageWidth(width);
+        result.setImageHeight(height);
+        result.setX(region.x);
+        result.setY(region.y);
+        result.setWidth(region.width);
+        result.setHeight(region.height);
+        result.setSubsampling((int) Math.round(levelStep * scale));
+        result.setLevel(level == null ? 0 : level.getIndex());
+        result.setReader(reader.getClass().getName());
+        result.setOutputWidth(image.getWidth());
+        result.setOutputHeight(image.getHeight());
+        result.setData(encode(image, format));
+        result.setContentType("image/" + format);
+        result.setDecodeMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+
+    private int chooseStep(Rectangle region, int subsampling, int maxSize) {
+        int step = subsampling > 0
+                ? subsampling
+                : maxSize > 0 ? Math.max(1, (Math.max(region.width, region.height) + maxSize - 1) / maxSize) : 1;
+        while (outputPixels(region, step) > maxOutputPixels) {
+            step++;
+        }
+        return step;
+    }
+
+    private static long outputPixels(Rectangle region, int step) {
+        return (long) ((region.width + step - 1) / step) * ((region.height + step - 1) / step);
+    }
+
+    private static Rectangle clip(Rectangle requested, int width, int height) {
+        if (requested == null) return new Rectangle(0, 0, width, height);
+        if (requested.x < 0 || requested.y < 0 || requested.width < 0 || requested.height < 0
+                || requested.x >= width || requested.y >= height) {
+            throw new IllegalArgumentException("Область " + requested.x + "," + requested.y + " "
+                    + requested.width + "×" + requested.height + " вне изображения " + width + "×" + height);
+        }
+        // Нулевая ширина или высота - до края изображения
+        int regionWidth = requested.width == 0 ? width - requested.x : Math.min(requested.width, width - requested.x);
+        int regionHeight = requested.height == 0 ? height - requested.y : Math.min(requested.height, height - requested.y);
+        return new Rectangle(requested.x, requested.y, regionWidth, regionHeight);
+    }
+
+    // Уровень 0 - само изображение; уменьшенные копии TIFF - следующие IFD с теми же пропорциями
+    private List<ImageLayout.Level> readLevels(ImageReader reader) throws IOException {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        int images = isTiff(reader) ? reader.getNumImages(true) : 1;
+
+        List<ImageLayout.Level> levels = new ArrayList<>();
+        for (int i = 0; i < images; i++) {
+            int levelWidth = reader.getWidth(i);
+            int levelHeight = reader.getHeight(i);
+            if (i > 0) {
+                double scale = (double) width / levelWidth;
+                if (levelWidth >= width || Math.abs(levelHeight * scale - height) > scale + 1) continue;
+            }
+
+            // Для TIFF без тайлов JDK reader отдаёт полосы как тайлы шириной в изображение
+            ImageLayout.Level level = new ImageLayout.Level();
+            level.setIndex(i);
+            level.setWidth(levelWidth);
+            level.setHeight(levelHeight);
+            level.setTiled(reader.isImageTiled(i));
+            level.setBlockWidth(reader.getTileWidth(i));
+            level.setBlockHeight(reader.getTileHeight(i));
+            level.setBlocks(ceilDiv(levelWidth, level.getBlockWidth()) * ceilDiv(levelHeight, level.getBlockHeight()));
+            levels.add(level);
+        }
+        return levels;
+    }
+
+    // Самый мелкий уменьшенный уровень, масштаб которого не превышает шаг; null - читать уровень 0
+    private static ImageLayout.Level chooseLevel(List<ImageLayout.Level> levels, int width, int step) {
+        ImageLayout.Level best = null;
+        for (ImageLayout.Level level : levels) {
+            if (level.getIndex() == 0) continue;
+            double scale = (double) width / level.getWidth();
+            if (scale <= step * 1.001 && (best == null || level.getWidth() < best.getWidth())) {
+                best = level;
+            }
+        }
+        return best;
+    }
+
+    private static Rectangle scaleRegion(Rectangle region, double scale, ImageLayout.Level level) {
+        int x = Math.min(level.getWidth() - 1, (int) (region.x / scale));
+        int y = Math.min(level.getHeight() - 1, (int) (region.y / scale));
+        int right = Math.min(level.getWidth(), (int) Math.ceil((region.x + region.width) / scale));
+        int bottom = Math.min(level.getHeight(), (int) Math.ceil((region.y + region.height) / scale));
+        return new Rectangle(x, y, Math.max(1, right - x), Math.max(1, bottom - y));
+    }
+
+    private byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // JPEG - только 8-битный RGB или серый без альфа-канала; PNG - всё, что примет стандартный writer
+        boolean direct = format.equals("png")
+                ? ImageIO.getImageWriters(ImageTypeSpecifier.createFromRenderedImage(image), format).hasNext()
+                : image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_3BYTE_BGR
+                        || image.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        ImageIO.write(direct ? image : convert(image, format.equals("png")), format, out);
+        return out.toByteArray();
+    }
+
+    private static BufferedImage convert(BufferedImage image, boolean alpha) {
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(),
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = converted.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, alpha ? null : Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return converted;
+    }
+
+    private ImageReader acquireReader(ImageInputStream iis) throws IOException {
+        ImageReader reader = imageReaderPool.acquire(iis);
+        if (reader == null) {
+            throw new IllegalArgumentException("Формат файла не распознан");
+        }
+        reader.setInput(iis, false, true);
+        return reader;
+    }
+
+    // Для TIFF - reader из JDK (см. описание класса), для остальных форматов - обычный из пула
+    private ImageReader acquireRegionReader(ImageInputStream iis) throws IOException {
+        for (ImageReaderSpi provider : imageReaderPool.getProviders()) {
+            if (!provider.getClass().getName().startsWith(JDK_TIFF_PROVIDER_PACKAGE)) continue;
+            iis.mark();
+            boolean canDecode;
+            try {
+                canDecode = provider.canDecodeInput(iis);
+            } finally {
+                iis.reset();
+            }
+            if (canDecode) {
+                ImageReader reader = imageReaderPool.acquire(provider);
+                // Без seekForwardOnly: уровни пирамиды читаются по индексу IFD
+                reader.setInput(iis, false, true);
+                return reader;
+            }
+        }
+        return acquireReader(iis);
+    }
+
+    private static boolean isTiff(ImageReader reader) throws IOException {
+        return reader.getFormatName().toLowerCase().startsWith("tif");
+    }
+
+    private static boolean isJdkTiff(ImageReader reader) {
+        return reader.getClass().getName().startsWith(JDK_TIFF_PROVIDER_PACKAGE);
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,17 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ExportFormat;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+@Service
+public class ResultExportService {
+    public ResultExportWriter open(ExportFormat format, OutputStream out) throws IOException {
+        return switch (format) {
+            case CSV -> new CsvResultWriter(out);
+            case COLUMNAR -> new ColumnarResultWriter(out);
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+
+import java.io.IOException;
+
+public interface ResultExportWriter extends AutoCloseable {
+    /*
+    Колонки экспорта в фиксированном порядке - схема не зависит от содержимого.
+    perceptualHash и pixelStatistics в схему не входят: хеш нужен только индексу дубликатов,
+    а гистограммы не укладываются в строковые колонки. Новая колонка - новая версия PKGC.
+    */
+    String[] COLUMNS = {
+            "filename", "format", "dimensions", "resolution",
+            "colorDepth", "compression", "fileSize", "additionalInfo"
+    };
+
+    void write(ImageMetadata metadata) throws IOException;
+
+    void flush() throws IOException;
+
+    @Override
+    void close() throws IOException;
+
+    static String[] values(ImageMetadata metadata) {
+        return new String[] {
+                metadata.getFilename(),
+                metadata.getFormat(),
+                metadata.getDimensions(),
+                metadata.getResolution(),
+                metadata.getColorDepth(),
+                metadata.getCompression(),
+                metadata.getFileSize()
+        };
+    }
+}
@@ -2,70 +2,44 @@ package by.pkg.pkg_lab_2.service;
 
 import by.pkg.pkg_lab_2.model.ImageMetadata;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
 public class TifAnalyzerService {
-    private static int readShort(byte[] data, int offset, boolean isLittleEndian) {
-        if (offset + 1 >= data.length) return 0;
-        if (isLittleEndian) {
-            return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8);
-        } else {
-            return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
-        }
+    // Значения до 4 байт хранятся в самой записи IFD, выровненными по началу поля значения
+    // (в big endian SHORT - старшие 16 бит поля), более длинные - по смещению из этого поля
+    private static int getDataOffset(int dataType, int count, int valueFieldOffset, int valueOffset) {
+        int typeSize = switch (dataType) {
+            case 3 -> 2;
+            case 4 -> 4;
+            case 5 -> 8;
+            default -> 1;
+        };
+        return count >= 0 && (long) count * typeSize <= 4 ? valueFieldOffset : valueOffset;
     }
 
-    private static int readInt(byte[] data, int offset, boolean isLittleEndian) {
-        if (offset + 3 >= data.length) return 0;
-        if (isLittleEndian) {
-            return (data[offset] & 0xFF) |
-                    ((data[offset + 1] & 0xFF) << 8) |
-                    ((data[offset + 2] & 0xFF) << 16) |
-                    ((data[offset + 3] & 0xFF) << 24);
-        } else {
-            return ((data[offset] & 0xFF) << 24) |
-                    ((data[offset + 1] & 0xFF) << 16) |
-                    ((data[offset + 2] & 0xFF) << 8) |
-                    (data[offset + 3] & 0xFF);
-        }
-    }
-
-    private static int getDimensionValue(byte[] fileBytes, int dataType, int count, int valueOffset, boolean isLittleEndian) {
-        if (dataType == 3 || dataType == 4) {
-            if (count == 1) {
-                if (dataType == 3) {
-                    return valueOffset & 0xFFFF;
-                } else {
-                    return valueOffset;
-                }
-            } else {
-                if (dataType == 3) {
-                    return readShort(fileBytes, valueOffset, isLittleEndian);
-                } else {
-                    return readInt(fileBytes, valueOffset, isLittleEndian);
-                }
-            }
+    private static int getIntValue(ByteBuffer fileBytes, int dataType, int dataOffset, boolean isLittleEndian) {
+        if (dataType == 3) {
+            return ByteScan.u16(fileBytes, dataOffset, isLittleEndian);
+        } else if (dataType == 4) {
+            return ByteScan.s32(fileBytes, dataOffset, isLittleEndian);
         }
         return -1;
     }
 
-    private static String getBitsPerSample(byte[] fileBytes, int dataType, int count, int valueOffset, boolean isLittleEndian) {
+    private static String getBitsPerSample(ByteBuffer fileBytes, int dataType, int count, int dataOffset, boolean isLittleEndian) {
         if (dataType == 3 && count > 0) {
             StringBuilder sb = new StringBuilder();
-            if (count == 1) {
-                int bits = valueOffset & 0xFFFF;
-                return bits + " bit";
-            } else {
-                for (int i = 0; i < count; i++) {
-                    if (i > 0) sb.append("+");
-                    int bits = readShort(fileBytes, valueOffset + (i * 2), isLittleEndian);
-                    sb.append(bits);
-                }
-                sb.append(" bit");
-                return sb.toString();
+            for (int i = 0; i < count; i++) {
+                if (i > 0) sb.append("+");
+                int bits = ByteScan.u16(fileBytes, dataOffset + (i * 2), isLittleEndian);
+                sb.append(bits);
             }
+            sb.append(" bit");
+            return sb.toString();
         } else if (dataType == 4 && count == 1) {
-            return (valueOffset & 0xFFFF) + " bit";
+            return ByteScan.s32(fileBytes, dataOffset, isLittleEndian) + " bit";
         }
         return "N/A";
     }
@@ -99,11 +73,11 @@ public class TifAnalyzerService {
         };
     }
 
-    private static double getResolution(byte[] fileBytes, int dataType, int count, int valueOffset, boolean isLittleEndian) {
+    private static double getResolution(ByteBuffer fileBytes, int dataType, int count, int valueOffset, boolean isLittleEndian) {
         try {
             if (dataType == 5 && count == 1) { // RATIONAL
-                int numerator = readInt(fileBytes, valueOffset, isLittleEndian);
-                int denominator = readInt(fileBytes, valueOffset + 4, isLittleEndian);
+                int numerator = ByteScan.s32(fileBytes, valueOffset, isLittleEndian);
+                int denominator = ByteScan.s32(fileBytes, valueOffset + 4, isLittleEndian);
                 if (denominator != 0) {
                     return (double) numerator / denominator;
                 }
@@ -123,30 +97,33 @@ public class TifAnalyzerService {
         };
     }
 
-    private static void analyzeTag(byte[] fileBytes, int offset, boolean isLittleEndian, Map<String, String> additionalInfo) {
+    private static void analyzeTag(ByteBuffer fileBytes, int offset, boolean isLittleEndian, Map<String, String> additionalInfo) {
         int tagId = 0;
         try {
-            tagId = readShort(fileBytes, offset, isLittleEndian);
-            int dataType = readShort(fileBytes, offset + 2, isLittleEndian);
-            int count = readInt(fileBytes, offset + 4, isLittleEndian);
-            int valueOffset = readInt(fileBytes, offset + 8, isLittleEndian);
+            ByteCursor entry = new ByteCursor(fileBytes, offset, fileBytes.limit(), isLittleEndian);
+            tagId = entry.u16();
+            int dataType = entry.u16();
+            int count = entry.s32();
+            int valueFieldOffset = entry.position();
+            int valueOffset = entry.s32();
+            int dataOffset = getDataOffset(dataType, count, valueFieldOffset, valueOffset);
 
             switch (tagId) {
                 case 256:
-                    additionalInfo.put("Ширина", getDimensionValue(fileBytes, dataType, count, valueOffset, isLittleEndian) + " px");
+                    additionalInfo.put("Ширина", getIntValue(fileBytes, dataType, dataOffset, isLittleEndian) + " px");
                     break;
                 case 257:
-                    additionalInfo.put("Высота", getDimensionValue(fileBytes, dataType, count, valueOffset, isLittleEndian) + " px");
+                    additionalInfo.put("Высота", getIntValue(fileBytes, dataType, dataOffset, isLittleEndian) + " px");
                     break;
                 case 258:
-                    String bitsInfo = getBitsPerSample(fileBytes, dataType, count, valueOffset, isLittleEndian);
+                    String bitsInfo = getBitsPerSample(fileBytes, dataType, count, dataOffset, isLittleEndian);
                     additionalInfo.put("Глубина цвета", bitsInfo);
                     break;
                 case 259:
-                    additionalInfo.put("Сжатие", getCompressionType(valueOffset));
+                    additionalInfo.put("Сжатие", getCompressionType(getIntValue(fileBytes, dataType, dataOffset, isLittleEndian)));
                     break;
                 case 262:
-                    additionalInfo.put("Цветовое пространство", getColorSpace(valueOffset));
+                    additionalInfo.put("Цветовое пространство", getColorSpace(getIntValue(fileBytes, dataType, dataOffset, isLittleEndian)));
                     break;
                 case 282:
                     additionalInfo.put("Разрешение X", getResolution(fileBytes, dataType, count, valueOffset, isLittleEndian) + " dpi");
@@ -155,7 +132,7 @@ public class TifAnalyzerService {
                     additionalInfo.put("Разрешение Y", getResolution(fileBytes, dataType, count, valueOffset, isLittleEndian) + " dpi");
                     break;
                 case 296:
-                    additionalInfo.put("Единицы разрешения", getResolutionUnit(valueOffset));
+                    additionalInfo.put("Единицы разрешения", getResolutionUnit(getIntValue(fileBytes, dataType, dataOffset, isLittleEndian)));
                     break;
             }
 
@@ -164,9 +141,9 @@ public class TifAnalyzerService {
         }
     }
 
-    private static void analyzeIFD(byte[] fileBytes, int offset, boolean isLittleEndian, Map<String, String> additionalInfo) {
+    private static void analyzeIFD(ByteBuffer fileBytes, int offset, boolean isLittleEndian, Map<String, String> additionalInfo) {
         try {
-            int entryCount = readShort(fileBytes, offset, isLittleEndian);
+            int entryCount = ByteScan.u16(fileBytes, offset, isLittleEndian);
 
             if (entryCount < 0 || entryCount > 1000) {
                 additionalInfo.put("Ошибка IFD", "Некорректное количество записей: " + entryCount);
@@ -183,29 +160,29 @@ public class TifAnalyzerService {
         }
     }
 
-    public static String analyzeCompressionType(byte[] fileBytes) {
+    public static String analyzeCompressionType(ByteBuffer fileBytes) {
         try {
-            if (fileBytes.length < 8) return "N/A";
+            if (fileBytes.limit() < 8) return "N/A";
 
-            boolean isLittleEndian = (fileBytes[0] == 0x49 && fileBytes[1] == 0x49);
+            boolean isLittleEndian = (fileBytes.get(0) == 0x49 && fileBytes.get(1) == 0x49);
 
-            int magic = ((fileBytes[2] & 0xFF) | ((fileBytes[3] & 0xFF) << 8));
+            int magic = ByteScan.u16(fileBytes, 2, isLittleEndian);
             if (magic != 42) return "N/A";
 
-            int ifdOffset = readInt(fileBytes, 4, isLittleEndian);
-            if (ifdOffset < 8 || ifdOffset >= fileBytes.length - 8) {
+            int ifdOffset = ByteScan.s32(fileBytes, 4, isLittleEndian);
+            if (ifdOffset < 8 || ifdOffset >= fileBytes.limit() - 8) {
                 return "N/A";
             }
 
-            int entryCount = readShort(fileBytes, ifdOffset, isLittleEndian);
+            int entryCount = ByteScan.u16(fileBytes, ifdOffset, isLittleEndian);
 
             for (int i = 0; i < entryCount; i++) {
                 int entryOffset = ifdOffset + 2 + (i * 12);
-                int tagId = readShort(fileBytes, entryOffset, isLittleEndian);
+                int tagId = ByteScan.u16(fileBytes, entryOffset, isLittleEndian);
 
                 if (tagId == 259) {
-                    int compressionType = readShort(fileBytes, entryOffset + 8, isLittleEndian);
-                    return getCompressionType(compressionType);
+                    int dataType = ByteScan.u16(fileBytes, entryOffset + 2, isLittleEndian);
+                    return getCompressionType(getIntValue(fileBytes, dataType, entryOffset + 8, isLittleEndian));
                 }
             }
 
@@ -216,18 +193,19 @@ public class TifAnalyzerService {
         }
     }
 
-    public static void analyze(byte[] fileBytes, ImageMetadata metadata) {
+    public static void analyze(ByteBuffer fileBytes, ImageMetadata metadata) {
         Map<String, String> additionalInfo = new HashMap<>();
+        FormatAnalysisEvent event = FormatAnalysisEvent.start(metadata, "tags", fileBytes.limit());
 
         try {
-            if (fileBytes.length < 8) {
+            if (fileBytes.limit() < 8) {
                 additionalInfo.put("Ошибка", "Файл слишком мал для формата TIFF");
                 metadata.setAdditionalInfo(additionalInfo);
                 return;
             }
 
-            boolean isLittleEndian = (fileBytes[0] == 0x49 && fileBytes[1] == 0x49);
-            boolean isBigEndian = (fileBytes[0] == 0x4D && fileBytes[1] == 0x4D);
+            boolean isLittleEndian = (fileBytes.get(0) == 0x49 && fileBytes.get(1) == 0x49);
+            boolean isBigEndian = (fileBytes.get(0) == 0x4D && fileBytes.get(1) == 0x4D);
 
             if (!isLittleEndian && !isBigEndian) {
                 additionalInfo.put("Ошибка", "Неверная сигнатура TIFF");
@@ -237,16 +215,16 @@ public class TifAnalyzerService {
 
             additionalInfo.put("Порядок байт", isLittleEndian ? "Little endian" : "Big endian");
 
-            int magicNumber = readShort(fileBytes, 2, isLittleEndian);
+            int magicNumber = ByteScan.u16(fileBytes, 2, isLittleEndian);
             if (magicNumber != 42) {
                 additionalInfo.put("Ошибка", "Неверный magic number TIFF: " + magicNumber);
                 metadata.setAdditionalInfo(additionalInfo);
                 return;
             }
 
-            int firstIFDOffset = readInt(fileBytes, 4, isLittleEndian);
+            int firstIFDOffset = ByteScan.s32(fileBytes, 4, isLittleEndian);
 
-            if (firstIFDOffset < 8 || firstIFDOffset >= fileBytes.length) {
+            if (firstIFDOffset < 8 || firstIFDOffset >= fileBytes.limit()) {
                 additionalInfo.put("Ошибка", "Некорректный offset первого IFD: " + firstIFDOffset);
                 metadata.setAdditionalInfo(additionalInfo);
                 return;
@@ -256,9 +234,11 @@ public class TifAnalyzerService {
 
         } catch (Exception e) {
             System.err.println("Error analyzing TIFF specifics: " + e.getMessage());
+            event.fail(e);
             additionalInfo = null;
         } finally {
             metadata.setAdditionalInfo(additionalInfo);
+            event.finish();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package by.pkg.pkg_lab_2.service;
+
+// Token bucket: rate токенов в секунду, не больше capacity про запас. rate <= 0 - без ограничения
+public class TokenBucket {
+    private final double rate;
+    private final double capacity;
+    private double tokens;
+    private long lastNanos;
+
+    public TokenBucket(double rate, double capacity) {
+        this.rate = rate;
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+        this.lastNanos = System.nanoTime();
+    }
+
+    // 0 - токен взят, иначе сколько наносекунд ждать до появления токена
+    public synchronized long tryTake(long nowNanos) {
+        if (rate <= 0) return 0;
+
+        tokens = Math.min(capacity, tokens + (nowNanos - lastNanos) * rate / 1e9);
+        lastNanos = nowNanos;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) ((1 - tokens) * 1e9 / rate));
+    }
+
+    // Полный bucket неотличим от нового - такую запись можно удалить без потери состояния
+    public synchronized boolean isFull(long nowNanos) {
+        return rate <= 0 || tokens + (nowNanos - lastNanos) * rate / 1e9 >= capacity;
+    }
+
+    public synchronized double getTokens() {
+        return rate <= 0 ? Double.POSITIVE_INFINITY : tokens;
+    }
+}
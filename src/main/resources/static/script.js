@@ -144,35 +144,8 @@ class ImageAnalyzer {
             formData.append('files', file);
         });
 
-        const controller = new AbortController();
-        const timeoutId = setTimeout(() => controller.abort(), 300000);
-
-        try {
-            const response = await fetch('/api/images/analyze', {
-                method: 'POST',
-                body: formData,
-                signal: controller.signal
-            });
-
-            clearTimeout(timeoutId);
-
-            if (!response.ok) {
-                const errorText = await response.text();
-                throw new Error(`Ошибка сервера: ${response.status} - ${errorText}`);
-            }
-
-            const newResults = await response.json();
-
-            for (let i = 0; i < newResults.length; i++) {
-                this.results.push(newResults[i]);
-            }
-
-            this.displayResults();
-            this.showNotification(`Успешно проанализировано ${newResults.length} файлов`);
-
-        } finally {
-            clearTimeout(timeoutId);
-        }
+        const processed = await this.streamAnalysis('/api/images/analyze-stream', formData, 300000);
+        this.showNotification(`Успешно проанализировано ${processed} файлов`);
     }
 
     async processWithZip() {
@@ -196,42 +169,91 @@ class ImageAnalyzer {
         const zipFile = new File([zipBlob], `images_${Date.now()}.zip`, { type: 'application/zip' });
         formData.append('zipFile', zipFile);
 
+        const processed = await this.streamAnalysis('/api/images/analyze-zip-stream', formData, 600000); // 10 минут для ZIP
+        this.showNotification(`Успешно проанализировано ${processed} файлов из ZIP архива`);
+    }
+
+    // Отправка файлов и чтение потока событий: каждая строка таблицы появляется, как только файл проанализирован
+    async streamAnalysis(url, formData, timeout) {
         const controller = new AbortController();
-        const timeoutId = setTimeout(() => controller.abort(), 600000); // 10 минут для ZIP
+        const timeoutId = setTimeout(() => controller.abort(), timeout);
+        let processed = 0;
+
+        this.updateProgress(null);
 
         try {
-            const response = await fetch('/api/images/analyze-zip', {
+            const response = await fetch(url, {
                 method: 'POST',
                 body: formData,
+                headers: { 'Accept': 'text/event-stream' },
                 signal: controller.signal
             });
 
-            clearTimeout(timeoutId);
-
             if (!response.ok) {
                 const errorText = await response.text();
                 throw new Error(`Ошибка сервера: ${response.status} - ${errorText}`);
             }
 
-            const newResults = await response.json();
+            await this.readEventStream(response, (event, data) => {
+                if (event === 'failed') {
+                    throw new Error(data);
+                }
 
-            for (let i = 0; i < newResults.length; i++) {
-                this.results.push(newResults[i]);
-            }
+                const progress = JSON.parse(data);
+                if (event === 'result' && progress.result) {
+                    this.results.push(progress.result);
+                    this.scheduleRender();
+                }
+                processed = progress.processed;
+                this.updateProgress(progress);
+            });
 
-            this.displayResults();
-            this.showNotification(`Успешно проанализировано ${newResults.length} файлов из ZIP архива`);
+            this.renderPendingResults();
+            return processed;
 
         } finally {
             clearTimeout(timeoutId);
         }
     }
 
+    async readEventStream(response, onEvent) {
+        const reader = response.body.getReader();
+        const decoder = new TextDecoder();
+        let buffer = '';
+
+        while (true) {
+            const { done, value } = await reader.read();
+            if (done) break;
+
+            buffer += decoder.decode(value, { stream: true });
+
+            // События разделены пустой строкой, поля - строками "event:" и "data:"
+            let boundary;
+            while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+                const block = buffer.substring(0, boundary);
+                buffer = buffer.substring(boundary + 2);
+
+                let event = 'message';
+                const data = [];
+                block.split('\n').forEach(line => {
+                    if (line.startsWith('event:')) event = line.substring(6).trim();
+                    else if (line.startsWith('data:')) data.push(line.substring(5));
+                });
+
+                if (data.length > 0) {
+                    onEvent(event, data.join('\n'));
+                }
+            }
+        }
+    }
+
     handleAnalysisError(error) {
         if (error.name === 'AbortError') {
             this.showNotification('Время обработки превышено. Попробуйте меньший объем файлов.', 'error');
         } else if (error.message.includes('FileCountLimitExceededException')) {
             this.showNotification('Превышено максимальное количество файлов. Файлы автоматически упакованы в ZIP.', 'error');
+        } else if (error.message.includes('429')) {
+            this.showNotification('Слишком много запросов. Подождите несколько секунд и повторите.', 'warning');
         } else if (error.message.includes('413')) {
             this.showNotification('Слишком большой объем данных. Попробуйте разделить файлы на несколько партий.', 'error');
         } else {
@@ -248,52 +270,92 @@ class ImageAnalyzer {
             progress.style.display = 'block';
             progressFill.style.width = '0%';
             progressText.textContent = 'Обработка...';
-
-            let width = 0;
-            const interval = setInterval(() => {
-                if (width >= 90) {
-                    clearInterval(interval);
-                } else {
-                    width += 2;
-                    progressFill.style.width = width + '%';
-                }
-            }, 50);
-
-            this.progressInterval = interval;
         } else {
             progress.style.display = 'none';
-            if (this.progressInterval) {
-                clearInterval(this.progressInterval);
-            }
         }
     }
 
+    // Полоса прогресса отражает долю входных данных, реально обработанную сервером
+    updateProgress(progress) {
+        const progressFill = document.getElementById('progressFill');
+        const progressText = document.getElementById('progressText');
+
+        if (!progress) {
+            progressFill.style.width = '0%';
+            progressText.textContent = 'Загрузка файлов на сервер...';
+            return;
+        }
+
+        const percent = progress.totalBytes > 0
+            ? Math.min(100, progress.processedBytes * 100 / progress.totalBytes)
+            : 0;
+        progressFill.style.width = percent.toFixed(1) + '%';
+
+        let text = progress.total != null
+            ? `Обработано ${progress.processed} из ${progress.total} файлов`
+            : `Обработано ${progress.processed} файлов`;
+
+        if (progress.processed > 0) {
+            text += ` · ${progress.filesPerSecond.toFixed(1)} файлов/с`;
+            text += ` · ${this.formatFileSize(Math.round(progress.bytesPerSecond))}/с`;
+        }
+        if (progress.etaSeconds != null && progress.etaSeconds > 0) {
+            text += ` · осталось ~${this.formatDuration(progress.etaSeconds)}`;
+        }
+        progressText.textContent = text;
+    }
+
+    formatDuration(seconds) {
+        if (seconds < 60) return Math.ceil(seconds) + ' с';
+        const minutes = Math.floor(seconds / 60);
+        return `${minutes} мин ${Math.ceil(seconds - minutes * 60)} с`;
+    }
+
+    // Строки добавляются пачками не чаще одного раза за кадр, без перестроения всей таблицы
+    scheduleRender() {
+        if (this.renderScheduled) return;
+        this.renderScheduled = true;
+        requestAnimationFrame(() => this.renderPendingResults());
+    }
+
+    renderPendingResults() {
+        this.renderScheduled = false;
+        const tbody = document.getElementById('resultsBody');
+        const fragment = document.createDocumentFragment();
+
+        for (let index = tbody.rows.length; index < this.results.length; index++) {
+            fragment.appendChild(this.createResultRow(this.results[index], index));
+        }
+        tbody.appendChild(fragment);
+    }
+
     displayResults() {
         const tbody = document.getElementById('resultsBody');
         tbody.innerHTML = '';
+        this.renderPendingResults();
+    }
 
-        this.results.forEach((result, index) => {
-            const row = document.createElement('tr');
-            row.innerHTML = `
-                <td>${result.filename}</td>
-                <td>${result.dimensions || 'N/A'}</td>
-                <td>${result.resolution || 'N/A'}</td>
-                <td>${result.colorDepth || 'N/A'}</td>
-                <td>${result.compression || 'N/A'}</td>
-                <td>${result.fileSize || 'N/A'}</td>
-                <td>
-                    <button class="details-btn" onclick="showDetails(${index})">
-                        Подробнее
-                    </button>
-                </td>
-                <td>
-                    <button class="remove-btn" onclick="removeResult(${index})" title="Удалить из результатов">
-                        ×
-                    </button>
-                </td>
-            `;
-            tbody.appendChild(row);
-        });
+    createResultRow(result, index) {
+        const row = document.createElement('tr');
+        row.innerHTML = `
+            <td>${result.filename}</td>
+            <td>${result.dimensions || 'N/A'}</td>
+            <td>${result.resolution || 'N/A'}</td>
+            <td>${result.colorDepth || 'N/A'}</td>
+            <td>${result.compression || 'N/A'}</td>
+            <td>${result.fileSize || 'N/A'}</td>
+            <td>
+                <button class="details-btn" onclick="showDetails(${index})">
+                    Подробнее
+                </button>
+            </td>
+            <td>
+                <button class="remove-btn" onclick="removeResult(${index})" title="Удалить из результатов">
+                    ×
+                </button>
+            </td>
+        `;
+        return row;
     }
 
     showNotification(message, type = 'success') {
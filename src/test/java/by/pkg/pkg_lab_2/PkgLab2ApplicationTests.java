@@ -2,8 +2,10 @@ package by.pkg.pkg_lab_2;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 
 @SpringBootTest
+@ActiveProfiles("test")
 class PkgLab2ApplicationTests {
 
     @Test
@@ -0,0 +1,57 @@
+package by.pkg.pkg_lab_2.batch;
+
+import by.pkg.pkg_lab_2.model.ExportFormat;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchOptionsTests {
+
+    @Test
+    void usesDefaultsForMissingOptions() {
+        BatchOptions options = BatchOptions.parse(new String[] {"images"});
+
+        assertEquals(List.of("images"), options.inputs);
+        assertEquals("-", options.output);
+        assertEquals(ExportFormat.CSV, options.format);
+        assertEquals(Runtime.getRuntime().availableProcessors(), options.threads);
+    }
+
+    @Test
+    void parsesOptionsInAnyOrderAndKeepsInputOrder() {
+        BatchOptions options = BatchOptions.parse(new String[] {
+                "b.zip", "--format=columnar", "@list.txt", "--threads=3", "-", "--output=out=1.pkgc", "a.png"});
+
+        assertEquals(List.of("b.zip", "@list.txt", "-", "a.png"), options.inputs);
+        // Значение берётся после первого '=', остальные остаются в имени файла
+        assertEquals("out=1.pkgc", options.output);
+        assertEquals(ExportFormat.COLUMNAR, options.format);
+        assertEquals(3, options.threads);
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertMessage("No input files", "--output=a.csv");
+        assertMessage("No input files");
+        assertMessage("Unknown option: --verbose", "--verbose", "a.png");
+        assertMessage("--threads must be positive", "--threads=0", "a.png");
+        assertMessage("Unsupported export format: xml", "--format=xml", "a.png");
+        assertThrows(NumberFormatException.class, () -> BatchOptions.parse(new String[] {"--threads=many", "a.png"}));
+    }
+
+    @Test
+    void usageListsAllOptions() {
+        for (String option : List.of("--output=", "--format=", "--threads=")) {
+            assertTrue(BatchOptions.USAGE.contains(option), option);
+        }
+    }
+
+    private static void assertMessage(String expected, String... args) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> BatchOptions.parse(args));
+        assertEquals(expected, e.getMessage());
+    }
+}
@@ -0,0 +1,124 @@
+package by.pkg.pkg_lab_2.batch;
+
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import by.pkg.pkg_lab_2.service.AnalysisProgressService;
+import by.pkg.pkg_lab_2.service.AnalyzerWarmupService;
+import by.pkg.pkg_lab_2.service.ClusterCoordinator;
+import by.pkg.pkg_lab_2.service.ColumnarResultReader;
+import by.pkg.pkg_lab_2.service.DuplicateDetectionService;
+import by.pkg.pkg_lab_2.service.ImageAnalyzerService;
+import by.pkg.pkg_lab_2.service.ProfilingService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchRunnerTests {
+    @TempDir
+    Path dir;
+
+    @Test
+    void contextContainsOnlyAnalysisBeans() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+            context.register(BatchConfiguration.class);
+            context.refresh();
+
+            assertNotNull(context.getBean(BatchJob.class));
+            assertNotNull(context.getBean(ImageAnalyzerService.class));
+            for (Class<?> type : List.of(ClusterCoordinator.class, ProfilingService.class, AnalysisProgressService.class,
+                    AnalyzerWarmupService.class, DuplicateDetectionService.class)) {
+                assertEquals(0, context.getBeanNamesForType(type).length, type.getSimpleName());
+            }
+        }
+    }
+
+    @Test
+    void writesCsvRowsInInputOrder() throws Exception {
+        Path input = Files.createDirectory(dir.resolve("input"));
+        copy("png/picture1.png", input.resolve("a.png"));
+        copy("jpg/bad1.jpg", input.resolve("b.jpg"));
+        Files.createDirectory(input.resolve("nested"));
+        copy("gif/picture1.gif", input.resolve("nested/c.gif"));
+        Files.writeString(input.resolve("notes.txt"), "not an image");
+        Path archive = dir.resolve("archive.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("inner/d.tif"));
+            Files.copy(Path.of("images/tif/picture1.tif"), zip);
+            zip.closeEntry();
+        }
+        Path list = Files.writeString(dir.resolve("list.txt"), "# comment\n\n" + dir.resolve("missing.png") + "\n");
+        Path output = dir.resolve("results.csv");
+
+        int exitCode = BatchRunner.run(new String[] {
+                "--output=" + output, "--threads=2", input.toString(), archive.toString(), "@" + list});
+
+        assertEquals(0, exitCode);
+        List<String[]> rows = csvRows(output);
+        assertEquals("filename,format,dimensions,resolution,colorDepth,compression,fileSize,additionalInfo",
+                String.join(",", rows.get(0)));
+        assertEquals(List.of(
+                input.resolve("a.png").toString(),
+                input.resolve("b.jpg").toString(),
+                input.resolve("nested/c.gif").toString(),
+                archive + "!/inner/d.tif",
+                dir.resolve("missing.png").toString()), rows.subList(1, rows.size()).stream().map(row -> row[0]).toList());
+
+        assertEquals("PNG", rows.get(1)[1]);
+        assertTrue(rows.get(1)[2].matches("\\d+×\\d+"), rows.get(1)[2]);
+        assertTrue(rows.get(2)[7].contains("Ошибка="), rows.get(2)[7]);
+        assertEquals("GIF", rows.get(3)[1]);
+        assertEquals("TIFF", rows.get(4)[1]);
+        assertTrue(rows.get(5)[7].contains("Не удалось прочитать файл"), rows.get(5)[7]);
+    }
+
+    @Test
+    void writesColumnarFormat() throws Exception {
+        Path output = dir.resolve("results.pkgc");
+
+        assertEquals(0, BatchRunner.run(new String[] {"--format=columnar", "--output=" + output, "images/png"}));
+
+        List<ImageMetadata> results = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(output);
+             ColumnarResultReader reader = new ColumnarResultReader(in)) {
+            ImageMetadata metadata;
+            while ((metadata = reader.read()) != null) {
+                results.add(metadata);
+            }
+        }
+        assertEquals(3, results.size());
+        assertTrue(results.stream().allMatch(metadata -> "PNG".equals(metadata.getFormat())));
+    }
+
+    @Test
+    void returnsUsageErrorAndIoErrorCodes() {
+        assertEquals(2, BatchRunner.run(new String[] {"--threads=0", "images"}));
+        assertEquals(1, BatchRunner.run(new String[] {"--output=" + dir.resolve("missing/out.csv"), "images/png"}));
+    }
+
+    private static void copy(String image, Path target) throws Exception {
+        Files.copy(Path.of("images", image), target);
+    }
+
+    // В путях и значениях теста нет запятых и кавычек, поэтому строки делятся по разделителю
+    private static List<String[]> csvRows(Path file) throws Exception {
+        List<String[]> rows = new ArrayList<>();
+        for (String line : Files.readString(file, StandardCharsets.UTF_8).split("\r\n")) {
+            rows.add(line.split(",", -1));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,42 @@
+package by.pkg.pkg_lab_2.config;
+
+import by.pkg.pkg_lab_2.service.ClusterCoordinator;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ClientRateLimitFilterTests {
+    private final ClientRateLimitFilter filter = new ClientRateLimitFilter();
+
+    @Test
+    void trustsForwardedClientOnlyFromCoordinators() {
+        ReflectionTestUtils.setField(filter, "trustedCoordinators", Set.of("10.0.0.1"));
+
+        assertEquals("203.0.113.5", filter.resolveClient(request("10.0.0.1", ClusterCoordinator.CLIENT_HEADER, "203.0.113.5")));
+        // Любой другой адрес мог бы подменить заголовок и обойти лимиты своего адреса
+        assertEquals("10.0.0.2", filter.resolveClient(request("10.0.0.2", ClusterCoordinator.CLIENT_HEADER, "203.0.113.5")));
+        assertEquals("10.0.0.1", filter.resolveClient(request("10.0.0.1", null, null)));
+    }
+
+    @Test
+    void configuredClientHeaderTakesPrecedence() {
+        ReflectionTestUtils.setField(filter, "clientHeader", "X-Client-Id");
+        ReflectionTestUtils.setField(filter, "trustedCoordinators", Set.of("10.0.0.1"));
+
+        MockHttpServletRequest request = request("10.0.0.1", ClusterCoordinator.CLIENT_HEADER, "203.0.113.5");
+        request.addHeader("X-Client-Id", " batch-host ");
+
+        assertEquals("batch-host", filter.resolveClient(request));
+    }
+
+    private static MockHttpServletRequest request(String address, String header, String value) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/images/analyze");
+        request.setRemoteAddr(address);
+        if (header != null) request.addHeader(header, value);
+        return request;
+    }
+}
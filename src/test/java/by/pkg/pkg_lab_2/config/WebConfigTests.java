@@ -0,0 +1,77 @@
+package by.pkg.pkg_lab_2.config;
+
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class WebConfigTests {
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+    private static final TypeReference<List<ImageMetadata>> RESULTS = new TypeReference<>() {};
+
+    @Autowired
+    private WebApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+    @Test
+    void smileAndCborDecodeToSameMetadataAsJson() throws Exception {
+        byte[] json = analyze(MediaType.APPLICATION_JSON);
+        List<ImageMetadata> expected = JsonMapper.builder().build().readValue(json, RESULTS);
+        assertEquals(2, expected.size());
+        assertTrue(expected.get(0).getAdditionalInfo().size() > 1);
+
+        assertDecodes(expected, analyze(SMILE), SmileMapper.builder().build(), json.length);
+        assertDecodes(expected, analyze(CBOR), CBORMapper.builder().build(), json.length);
+    }
+
+    private static void assertDecodes(List<ImageMetadata> expected, byte[] body, ObjectMapper mapper, int jsonLength) {
+        assertEquals(expected, mapper.readValue(body, RESULTS));
+        // Повторяющиеся ключи additionalInfo записаны ссылками - ответ короче JSON
+        assertTrue(body.length < jsonLength, body.length + " >= " + jsonLength);
+    }
+
+    private byte[] analyze(MediaType accept) throws Exception {
+        return mockMvc.perform(multipart("/api/images/analyze")
+                        .file(image("png/picture1.png", "image/png"))
+                        .file(image("png/picture2.png", "image/png"))
+                        .header(HttpHeaders.ACCEPT, accept.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    private static MockMultipartFile image(String path, String contentType) throws Exception {
+        Path file = Path.of("images", path);
+        return new MockMultipartFile("files", file.getFileName().toString(), contentType, Files.readAllBytes(file));
+    }
+}
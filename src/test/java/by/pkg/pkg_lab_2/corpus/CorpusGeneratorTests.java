@@ -0,0 +1,130 @@
+package by.pkg.pkg_lab_2.corpus;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CorpusGeneratorTests {
+    private static final List<ByteOrder> BOTH_ORDERS = List.of(ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sameSeedGivesIdenticalFiles() throws Exception {
+        List<CorpusGenerator.Entry> first = CorpusGenerator.generate(config(dir.resolve("a"), 42));
+        List<CorpusGenerator.Entry> second = CorpusGenerator.generate(config(dir.resolve("b"), 42));
+
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            Path a = first.get(i).path();
+            Path b = second.get(i).path();
+            assertEquals(dir.resolve("a").relativize(a), dir.resolve("b").relativize(b));
+            assertArrayEquals(Files.readAllBytes(a), Files.readAllBytes(b), a.toString());
+        }
+        assertArrayEquals(Files.readAllBytes(dir.resolve("a/manifest.csv")), Files.readAllBytes(dir.resolve("b/manifest.csv")));
+    }
+
+    @Test
+    void differentSeedChangesPixels() throws Exception {
+        CorpusGenerator.generate(config(dir.resolve("a"), 1));
+        CorpusGenerator.generate(config(dir.resolve("b"), 2));
+
+        byte[] a = Files.readAllBytes(dir.resolve("a/images/png_16x12_rgb24_z6.png"));
+        byte[] b = Files.readAllBytes(dir.resolve("b/images/png_16x12_rgb24_z6.png"));
+        assertFalse(Arrays.equals(a, b));
+    }
+
+    @Test
+    void generatesBothTiffByteOrders() throws Exception {
+        CorpusGenerator.generate(config(dir, 42));
+
+        for (String mode : List.of("gray1", "gray8", "gray16", "indexed8", "rgb24", "rgba32", "rgb48")) {
+            for (String compression : List.of("none", "packbits", "deflate")) {
+                String base = "tif_16x12_" + mode + "_" + compression;
+                byte[] little = Files.readAllBytes(dir.resolve("images/" + base + ".tif"));
+                byte[] big = Files.readAllBytes(dir.resolve("images/" + base + "_be.tif"));
+
+                assertArrayEquals(new byte[] {'I', 'I', 42, 0}, Arrays.copyOf(little, 4), base);
+                assertArrayEquals(new byte[] {'M', 'M', 0, 42}, Arrays.copyOf(big, 4), base);
+                assertPixelsEqual(ImageIO.read(dir.resolve("images/" + base + ".tif").toFile()),
+                        ImageIO.read(dir.resolve("images/" + base + "_be.tif").toFile()), base);
+            }
+        }
+    }
+
+    @Test
+    void validFilesDecodeToDeclaredSize() throws Exception {
+        List<CorpusGenerator.Entry> entries = CorpusGenerator.generate(config(dir, 42));
+
+        // PCX ImageIO не читает, для него проверяется заголовок
+        Set<String> decoded = Set.of("png", "jpg", "tif", "gif", "bmp");
+        List<CorpusGenerator.Entry> valid = entries.stream().filter(e -> e.variant().equals("valid")).toList();
+        assertTrue(valid.size() > 40, String.valueOf(valid.size()));
+        for (CorpusGenerator.Entry entry : valid) {
+            assertEquals(Files.size(entry.path()), entry.size());
+            if (decoded.contains(entry.format())) {
+                BufferedImage image = ImageIO.read(entry.path().toFile());
+                assertNotNull(image, entry.path().toString());
+                assertEquals(entry.width(), image.getWidth(), entry.path().toString());
+                assertEquals(entry.height(), image.getHeight(), entry.path().toString());
+            } else {
+                byte[] header = Files.readAllBytes(entry.path());
+                assertEquals(0x0A, header[0], entry.path().toString());
+                assertEquals(entry.width() - 1, (header[8] & 0xFF) | (header[9] & 0xFF) << 8);
+            }
+        }
+    }
+
+    @Test
+    void manifestListsEveryGeneratedFile() throws Exception {
+        List<CorpusGenerator.Entry> entries = CorpusGenerator.generate(config(dir, 42));
+
+        List<String> lines = Files.readAllLines(dir.resolve("manifest.csv"));
+        assertEquals("path,format,width,height,mode,variant,frames,bytes", lines.get(0));
+        assertEquals(entries.size(), lines.size() - 1);
+
+        Set<String> listed = lines.stream().skip(1).map(line -> line.substring(0, line.indexOf(','))).collect(Collectors.toSet());
+        Set<String> onDisk;
+        try (Stream<Path> files = Files.walk(dir)) {
+            onDisk = files.filter(Files::isRegularFile).map(path -> dir.relativize(path).toString().replace('\\', '/'))
+                    .filter(name -> !name.equals("manifest.csv")).collect(Collectors.toSet());
+        }
+        assertEquals(onDisk, listed);
+        assertTrue(listed.contains("zip_5.zip"));
+        assertTrue(listed.contains("malformed/empty.png"));
+    }
+
+    private static CorpusConfig config(Path output, long seed) {
+        return new CorpusConfig(output, List.of("png", "jpg", "tif", "gif", "bmp", "pcx"), List.of(new int[] {16, 12}),
+                List.of(ColorMode.values()), List.of("none", "packbits", "deflate"), BOTH_ORDERS, List.of("none", "rle8"),
+                "6", "85", List.of(1, 3), true, List.of(5), seed);
+    }
+
+    private static void assertPixelsEqual(BufferedImage expected, BufferedImage actual, String message) {
+        assertNotNull(expected, message);
+        assertNotNull(actual, message);
+        Raster a = expected.getRaster();
+        Raster b = actual.getRaster();
+        assertEquals(a.getNumBands(), b.getNumBands(), message);
+        assertArrayEquals(a.getPixels(0, 0, a.getWidth(), a.getHeight(), (int[]) null),
+                b.getPixels(0, 0, b.getWidth(), b.getHeight(), (int[]) null), message);
+    }
+}
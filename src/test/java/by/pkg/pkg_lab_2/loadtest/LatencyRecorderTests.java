@@ -0,0 +1,64 @@
+package by.pkg.pkg_lab_2.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LatencyRecorderTests {
+
+    @Test
+    void percentilesUseNearestRank() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        // Порядок записи не важен: процентили считаются по отсортированной копии
+        for (int ms = 100; ms >= 1; ms--) {
+            recorder.record(ms * 1_000_000L, 2, true);
+        }
+
+        assertEquals(1.0, recorder.percentileMillis(0), 1e-9);
+        assertEquals(1.0, recorder.percentileMillis(1), 1e-9);
+        assertEquals(50.0, recorder.percentileMillis(50), 1e-9);
+        assertEquals(95.0, recorder.percentileMillis(95), 1e-9);
+        assertEquals(99.0, recorder.percentileMillis(99), 1e-9);
+        assertEquals(100.0, recorder.percentileMillis(100), 1e-9);
+        assertEquals(100, recorder.getCount());
+        assertEquals(200, recorder.getFiles());
+    }
+
+    @Test
+    void smallSamplesRoundRankUp() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.record(10_000_000L, 1, true);
+        recorder.record(20_000_000L, 1, true);
+        recorder.record(30_000_000L, 1, true);
+
+        // ceil(0.5 * 3) = 2-е значение, ceil(0.95 * 3) = 3-е
+        assertEquals(20.0, recorder.percentileMillis(50), 1e-9);
+        assertEquals(30.0, recorder.percentileMillis(95), 1e-9);
+    }
+
+    @Test
+    void errorsAreCountedButNotTimed() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.record(5_000_000L, 10, true);
+        recorder.record(900_000_000L, 10, false);
+        recorder.record(900_000_000L, 10, false);
+
+        assertEquals(1, recorder.getCount());
+        assertEquals(2, recorder.getErrors());
+        assertEquals(10, recorder.getFiles());
+        assertEquals(5.0, recorder.percentileMillis(99), 1e-9);
+    }
+
+    @Test
+    void emptyRecorderReportsZeroAndGrowsPastInitialCapacity() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        assertEquals(0.0, recorder.percentileMillis(50), 1e-9);
+
+        for (int i = 1; i <= 5000; i++) {
+            recorder.record(i * 1_000L, 1, true);
+        }
+        assertEquals(5000, recorder.getCount());
+        assertEquals(5.0, recorder.percentileMillis(100), 1e-9);
+        assertEquals(2.5, recorder.percentileMillis(50), 1e-9);
+    }
+}
@@ -0,0 +1,56 @@
+package by.pkg.pkg_lab_2.loadtest;
+
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadTestRunnerTests {
+
+    @Test
+    void reportIsJsonWithPerEndpointPercentiles() {
+        LatencyRecorder analyze = new LatencyRecorder();
+        for (int ms = 1; ms <= 20; ms++) {
+            analyze.record(ms * 1_000_000L, 10, true);
+        }
+        analyze.record(1_000_000_000L, 10, false);
+        LatencyRecorder zip = new LatencyRecorder();
+        zip.record(40_000_000L, 10, true);
+
+        Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+        recorders.put("analyze", analyze);
+        recorders.put("analyze-zip", zip);
+
+        String report = LoadTestRunner.report(new LoadTestConfig(), recorders, 2.0, 64L * 1024 * 1024);
+        JsonNode json = JsonMapper.builder().build().readTree(report);
+
+        assertEquals(List.of("endpoints", "filesPerSecond", "durationSeconds", "peakHeapBytes", "config"),
+                fieldNames(json));
+        assertEquals(List.of("analyze", "analyze-zip"), fieldNames(json.get("endpoints")));
+
+        JsonNode endpoint = json.get("endpoints").get("analyze");
+        assertEquals(List.of("requests", "errors", "p50Ms", "p95Ms", "p99Ms"), fieldNames(endpoint));
+        assertEquals(20, endpoint.get("requests").asInt());
+        assertEquals(1, endpoint.get("errors").asInt());
+        assertEquals(10.0, endpoint.get("p50Ms").asDouble(), 1e-9);
+        assertEquals(19.0, endpoint.get("p95Ms").asDouble(), 1e-9);
+        assertEquals(20.0, endpoint.get("p99Ms").asDouble(), 1e-9);
+        assertEquals(40.0, json.get("endpoints").get("analyze-zip").get("p50Ms").asDouble(), 1e-9);
+
+        // 20 успешных /analyze и 1 /analyze-zip по 10 файлов за 2 с; файлы ошибочного запроса не считаются
+        assertEquals(105.0, json.get("filesPerSecond").asDouble(), 1e-9);
+        assertEquals(2.0, json.get("durationSeconds").asDouble(), 1e-9);
+        assertEquals(64L * 1024 * 1024, json.get("peakHeapBytes").asLong());
+        assertTrue(json.get("config").asString().contains("concurrency="), json.get("config").asString());
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        return node.propertyNames().stream().toList();
+    }
+}
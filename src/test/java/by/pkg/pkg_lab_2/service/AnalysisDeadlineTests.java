@@ -0,0 +1,82 @@
+package by.pkg.pkg_lab_2.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnalysisDeadlineTests {
+
+    @Test
+    void passesWithinLimits() {
+        AnalysisDeadline deadline = new AnalysisDeadline(Duration.ofSeconds(30), 64L * 1024 * 1024);
+        deadline.start();
+        assertDoesNotThrow(deadline::checkpoint);
+    }
+
+    @Test
+    void failsAfterTimeout() throws Exception {
+        AnalysisDeadline deadline = new AnalysisDeadline(Duration.ofMillis(20), 0);
+        deadline.start();
+        Thread.sleep(50);
+
+        AnalysisLimitException e = assertThrows(AnalysisLimitException.class, deadline::checkpoint);
+        assertTrue(e.getMessage().startsWith("Превышено время анализа"), e.getMessage());
+    }
+
+    @Test
+    void failsWhenThreadAllocatesMoreThanLimit() {
+        AnalysisDeadline deadline = new AnalysisDeadline(Duration.ofSeconds(30), 256 * 1024);
+        deadline.start();
+        byte[][] chunks = new byte[16][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new byte[64 * 1024];
+        }
+
+        AnalysisLimitException e = assertThrows(AnalysisLimitException.class, deadline::checkpoint);
+        assertEquals("Превышен лимит памяти (256 KB)", e.getMessage());
+        assertEquals(16, chunks.length);
+    }
+
+    @Test
+    void cancelStopsAtNextCheckpoint() {
+        AnalysisDeadline deadline = new AnalysisDeadline(Duration.ofSeconds(30), 0);
+        deadline.start();
+        deadline.cancel();
+
+        AnalysisLimitException e = assertThrows(AnalysisLimitException.class, deadline::checkpoint);
+        assertEquals("Анализ отменён по таймауту", e.getMessage());
+    }
+
+    @Test
+    void abortsAttachedReaderOnceLimitIsExceeded() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(512, 512, BufferedImage.TYPE_INT_RGB), "png", png);
+
+        AnalysisDeadline deadline = new AnalysisDeadline(Duration.ofSeconds(30), 0);
+        deadline.start();
+        deadline.cancel();
+
+        ImageReaderPool pool = new ImageReaderPool();
+        try (ByteBufferImageInputStream iis = new ByteBufferImageInputStream(ByteBuffer.wrap(png.toByteArray()))) {
+            ImageReader reader = pool.acquire(iis);
+            deadline.attach(reader);
+            try {
+                reader.read(0);
+            } finally {
+                pool.release(reader);
+            }
+        }
+
+        assertThrows(AnalysisLimitException.class, deadline::checkpoint);
+    }
+}
@@ -0,0 +1,146 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.AnalysisProgress;
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class AnalysisProgressServiceTests {
+    private static final Pattern EVENT = Pattern.compile("^event:(\\S+)$", Pattern.MULTILINE);
+
+    private final AnalysisProgressService progressService = new AnalysisProgressService();
+
+    @Test
+    void estimatesRemainingTimeFromFileCountWhenSizeIsUnknown() {
+        AtomicLong clock = new AtomicLong(1_000_000_000L);
+        AnalysisProgressService.ProgressTracker tracker = new AnalysisProgressService.ProgressTracker(4, 0, clock::get);
+
+        AnalysisProgress start = tracker.snapshot(null);
+        assertEquals(0, start.getProcessed());
+        assertNull(start.getEtaSeconds());
+
+        clock.addAndGet(2_000_000_000L);
+        AnalysisProgress progress = tracker.next(new ImageMetadata("a.png"), 0);
+
+        assertEquals(1, progress.getProcessed());
+        assertEquals(2000, progress.getElapsedMillis());
+        assertEquals(0.5, progress.getFilesPerSecond(), 1e-9);
+        assertEquals(6.0, progress.getEtaSeconds(), 1e-9);
+        assertEquals("a.png", progress.getResult().getFilename());
+    }
+
+    @Test
+    void estimatesRemainingTimeFromConsumedBytes() {
+        AtomicLong clock = new AtomicLong();
+        AnalysisProgressService.ProgressTracker tracker = new AnalysisProgressService.ProgressTracker(null, 1000, clock::get);
+
+        clock.addAndGet(2_000_000_000L);
+        AnalysisProgress first = tracker.next(new ImageMetadata("a.png"), 250);
+        assertEquals(125.0, first.getBytesPerSecond(), 1e-9);
+        assertEquals(6.0, first.getEtaSeconds(), 1e-9);
+
+        // Накопительный объём не убывает и не превышает заявленный
+        clock.addAndGet(2_000_000_000L);
+        AnalysisProgress second = tracker.next(new ImageMetadata("b.png"), 100);
+        assertEquals(250, second.getProcessedBytes());
+        AnalysisProgress third = tracker.next(new ImageMetadata("c.png"), 5000);
+        assertEquals(1000, third.getProcessedBytes());
+        assertEquals(0.0, third.getEtaSeconds(), 1e-9);
+
+        AnalysisProgress complete = tracker.complete();
+        assertEquals(3, complete.getProcessed());
+        assertEquals(1000, complete.getProcessedBytes());
+        assertEquals(0.0, complete.getEtaSeconds(), 1e-9);
+        assertNull(complete.getResult());
+    }
+
+    @Test
+    void sendsStartResultsAndComplete() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new StreamController(listener -> {
+            listener.onResult(new ImageMetadata("a.png"), 10);
+            listener.onResult(new ImageMetadata("b.png"), 20);
+        })).build();
+
+        assertEquals(List.of("start", "result", "result", "complete"), events(mockMvc));
+    }
+
+    @Test
+    void sendsFailedWhenAnalysisThrows() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new StreamController(listener -> {
+            listener.onResult(new ImageMetadata("a.png"), 10);
+            throw new IllegalArgumentException("broken archive");
+        })).build();
+
+        assertEquals(List.of("start", "result", "failed"), events(mockMvc));
+    }
+
+    @Test
+    void rejectsStreamsOverLimit() throws Exception {
+        ReflectionTestUtils.setField(progressService, "maxStreams", 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        progressService.stream(1, 0, listener -> {
+            started.countDown();
+            release.await();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(RejectedExecutionException.class, () -> progressService.stream(1, 0, listener -> { }));
+
+        release.countDown();
+    }
+
+    private static List<String> events(MockMvc mockMvc) throws Exception {
+        MvcResult result = mockMvc.perform(post("/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5000);
+
+        String body = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        List<String> events = new ArrayList<>();
+        Matcher matcher = EVENT.matcher(body);
+        while (matcher.find()) {
+            events.add(matcher.group(1));
+        }
+        return events;
+    }
+
+    @RestController
+    private class StreamController {
+        private final AnalysisProgressService.AnalysisTask task;
+
+        StreamController(AnalysisProgressService.AnalysisTask task) {
+            this.task = task;
+        }
+
+        @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        SseEmitter stream() {
+            return progressService.stream(2, 20, task);
+        }
+    }
+}
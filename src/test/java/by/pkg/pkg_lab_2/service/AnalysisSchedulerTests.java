@@ -0,0 +1,213 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.SchedulerStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnalysisSchedulerTests {
+    private AnalysisScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        AnalysisScheduler.setCurrentClient(null);
+        if (scheduler != null) scheduler.destroy();
+    }
+
+    @Test
+    void clientsAreServedInWeightedRoundRobin() throws Exception {
+        scheduler = new AnalysisScheduler(1, "bulk=2", 0, 1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        // Единственный поток занят, пока обе очереди не заполнены
+        CountDownLatch gate = new CountDownLatch(1);
+        AnalysisScheduler.setCurrentClient("gate");
+        AnalysisScheduler.Task<Boolean> blocker = scheduler.submit(() -> gate.await(5, TimeUnit.SECONDS));
+        assertTrue(blocker.awaitStart(5, TimeUnit.SECONDS));
+
+        List<AnalysisScheduler.Task<Boolean>> tasks = new ArrayList<>();
+        for (String client : new String[] {"bulk", "interactive"}) {
+            AnalysisScheduler.setCurrentClient(client);
+            for (int i = 0; i < 6; i++) {
+                tasks.add(scheduler.submit(() -> order.add(client)));
+            }
+        }
+        assertEquals(12, scheduler.getStats().getQueued());
+
+        gate.countDown();
+        for (AnalysisScheduler.Task<Boolean> task : tasks) {
+            task.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(List.of("bulk", "bulk", "interactive", "bulk", "bulk", "interactive",
+                "bulk", "bulk", "interactive", "interactive", "interactive", "interactive"), order);
+
+        // get() возвращает результат раньше, чем поток учтёт задачу как завершённую
+        SchedulerStats stats = scheduler.getStats();
+        for (int i = 0; i < 500 && stats.getCompleted() < 13; i++) {
+            Thread.sleep(10);
+            stats = scheduler.getStats();
+        }
+        assertEquals(13, stats.getCompleted());
+        assertEquals(0, stats.getQueued());
+        assertEquals(12, stats.getMaxQueued());
+    }
+
+    @Test
+    void filesAboveRateLimitWaitForTokens() throws Exception {
+        scheduler = new AnalysisScheduler(2, "", 20, 1);
+        AnalysisScheduler.setCurrentClient("limited");
+
+        long start = System.nanoTime();
+        List<AnalysisScheduler.Task<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int value = i;
+            tasks.add(scheduler.submit(() -> value));
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            assertEquals(i, tasks.get(i).get(5, TimeUnit.SECONDS));
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Первый файл по запасу, остальные четыре - по токену раз в 50 мс
+        assertTrue(elapsedMillis >= 150, "elapsed " + elapsedMillis + " ms");
+        assertTrue(scheduler.getStats().getThrottled() > 0);
+    }
+
+    @Test
+    void queuedTaskCanBeWithdrawn() throws Exception {
+        scheduler = new AnalysisScheduler(1, "", 0, 1);
+        CountDownLatch gate = new CountDownLatch(1);
+        AnalysisScheduler.Task<Boolean> blocker = scheduler.submit(() -> gate.await(5, TimeUnit.SECONDS));
+        assertTrue(blocker.awaitStart(5, TimeUnit.SECONDS));
+
+        AnalysisScheduler.Task<String> queued = scheduler.submit(() -> "ran");
+        assertTrue(queued.cancelIfQueued());
+        assertEquals(0, scheduler.getStats().getQueued());
+
+        gate.countDown();
+        assertTrue(blocker.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.isCancelled());
+    }
+
+    @Test
+    void evictedIdleClientKeepsItsRequestBucket() {
+        scheduler = new AnalysisScheduler(1, "", 0, 1);
+        ReflectionTestUtils.setField(scheduler, "requestsPerSecond", 0.001);
+        ReflectionTestUtils.setField(scheduler, "requestsBurst", 1);
+
+        assertEquals(0, scheduler.tryAcquireRequest("greedy"));
+        assertTrue(scheduler.tryAcquireRequest("greedy") > 0);
+
+        // Больше клиентов, чем очередей в планировщике: простаивающий клиент не получает новый запас
+        for (int i = 0; i < 2000; i++) {
+            scheduler.tryAcquireRequest("client-" + i);
+        }
+        assertTrue(scheduler.tryAcquireRequest("greedy") > 0);
+    }
+
+    @Test
+    void clientQueuesAreBoundedByLeastRecentlyUsedEviction() throws Exception {
+        scheduler = new AnalysisScheduler(1, "", 0, 1);
+        for (int i = 0; i < 1100; i++) {
+            AnalysisScheduler.setCurrentClient("client-" + i);
+            scheduler.submit(() -> true).get(5, TimeUnit.SECONDS);
+        }
+
+        SchedulerStats stats = scheduler.getStats();
+        assertTrue(stats.getClients().size() <= 1024, "clients " + stats.getClients().size());
+        assertTrue(stats.getClients().stream().anyMatch(client -> client.getClient().equals("client-1099")));
+        assertFalse(stats.getClients().stream().anyMatch(client -> client.getClient().equals("client-0")));
+    }
+
+    @Test
+    void cancelledRunningTaskIsReplacedByNewWorker() throws Exception {
+        scheduler = new AnalysisScheduler(1, "", 0, 1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AnalysisScheduler.Task<Boolean> stuck = scheduler.submit(() -> {
+            running.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                // Задача, не реагирующая на прерывание, продолжает занимать поток
+                Thread.sleep(500);
+            }
+            return true;
+        });
+        // awaitStart срабатывает до входа в callable; прерывание доходит только до уже выполняющегося тела
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        AnalysisScheduler.Task<String> queued = scheduler.submit(() -> "ran");
+
+        assertTrue(stuck.cancel(true));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals("ran", queued.get(300, TimeUnit.MILLISECONDS));
+        assertFalse(queued.cancel(true));
+    }
+
+    @Test
+    void abandonedWorkersAreCappedAndQueueWaitsForThem() throws Exception {
+        scheduler = new AnalysisScheduler(1, "", 0, 10);
+        ReflectionTestUtils.setField(scheduler, "maxAbandonedWorkers", 1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CountDownLatch firstRunning = new CountDownLatch(1);
+        AnalysisScheduler.Task<Boolean> first = scheduler.submit(() -> stuck(firstRunning, release));
+        assertTrue(firstRunning.await(5, TimeUnit.SECONDS));
+        assertTrue(first.cancel(true));
+
+        // Первый отменённый поток замещён, второй - уже нет: лимит дополнительных потоков 1
+        CountDownLatch secondRunning = new CountDownLatch(1);
+        AnalysisScheduler.Task<Boolean> second = scheduler.submit(() -> stuck(secondRunning, release));
+        assertTrue(secondRunning.await(5, TimeUnit.SECONDS));
+        assertTrue(second.cancel(true));
+
+        AnalysisScheduler.Task<String> queued = scheduler.submit(() -> "ran");
+        assertFalse(queued.awaitStart(300, TimeUnit.MILLISECONDS));
+        SchedulerStats stats = scheduler.getStats();
+        assertEquals(2, stats.getAbandonedWorkers());
+        assertEquals(1, stats.getUnreplacedWorkers());
+
+        release.countDown();
+        assertEquals("ran", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void anonymizedStatsHideClientNames() throws Exception {
+        scheduler = new AnalysisScheduler(1, "", 0, 10);
+        AnalysisScheduler.setCurrentClient("10.0.0.5");
+        scheduler.submit(() -> true).get(5, TimeUnit.SECONDS);
+
+        String hidden = scheduler.getStats(true).getClients().get(0).getClient();
+        assertTrue(hidden.matches("client-[0-9a-f]{12}"), hidden);
+        // Имя стабильно в пределах запуска, чтобы счётчики одного клиента можно было сравнивать
+        assertEquals(hidden, scheduler.getStats(true).getClients().get(0).getClient());
+        assertEquals("10.0.0.5", scheduler.getStats().getClients().get(0).getClient());
+    }
+
+    // Задача, не реагирующая на прерывание, пока её не отпустят
+    private static boolean stuck(CountDownLatch running, CountDownLatch release) {
+        running.countDown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                release.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        return interrupted;
+    }
+}
@@ -0,0 +1,70 @@
+package by.pkg.pkg_lab_2.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BufferPoolTests {
+
+    private final BufferPool pool = new BufferPool();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(pool, "maxPooled", DataSize.ofMegabytes(16));
+    }
+
+    @Test
+    void returnsBufferToPoolWhenLastReferenceIsClosed() throws Exception {
+        PooledBuffer buffer = pool.acquire(100_000);
+        buffer.retain();
+
+        buffer.close();
+        assertEquals(0, pool.getPooledBytes(), "buffer is still held by the second owner");
+
+        buffer.close();
+        assertEquals(128 * 1024, pool.getPooledBytes());
+    }
+
+    @Test
+    void reusesBufferOfSameSizeClass() throws Exception {
+        pool.acquire(70_000).close();
+        pool.acquire(120_000).close();
+        pool.acquire(200_000).close();
+
+        // 70000 и 120000 округляются до 128 KB, 200000 - до 256 KB
+        assertEquals(2, pool.getAllocations());
+        assertEquals(1, pool.getReuses());
+    }
+
+    @Test
+    void growsBeyondSizeHintAsBytesArrive() throws Exception {
+        byte[] data = new byte[300_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        try (PooledBuffer buffer = pool.read(new ByteArrayInputStream(data), 10)) {
+            ByteBuffer view = buffer.view();
+            byte[] copy = new byte[view.remaining()];
+            view.get(copy);
+            assertArrayEquals(data, copy);
+        }
+    }
+
+    @Test
+    void rejectsStreamLongerThanLimitAndReleasesBuffer() {
+        ByteArrayInputStream in = new ByteArrayInputStream(new byte[100_000]);
+
+        assertThrows(IOException.class, () -> pool.read(in, 2_000_000_000L, 99_999));
+        assertEquals(128 * 1024, pool.getPooledBytes());
+    }
+}
@@ -0,0 +1,56 @@
+package by.pkg.pkg_lab_2.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ByteBufferImageInputStreamTests {
+
+    @Test
+    void seeksAndReadsWithinLimit() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+        for (int i = 0; i < 16; i++) {
+            buffer.put(i, (byte) (i * 16));
+        }
+        // Данные - первые 10 байт буфера
+        buffer.limit(10);
+
+        try (ByteBufferImageInputStream in = new ByteBufferImageInputStream(buffer)) {
+            assertEquals(10, in.length());
+
+            in.seek(8);
+            assertEquals(0x80, in.read());
+            assertEquals(9, in.getStreamPosition());
+
+            byte[] tail = new byte[4];
+            assertEquals(1, in.read(tail, 0, 4));
+            assertEquals((byte) 0x90, tail[0]);
+            assertEquals(-1, in.read());
+            assertEquals(-1, in.read(tail, 0, 4));
+
+            in.seek(2);
+            byte[] middle = new byte[3];
+            in.readFully(middle);
+            assertArrayEquals(new byte[] {0x20, 0x30, 0x40}, middle);
+            assertEquals(0x5060, in.readUnsignedShort());
+        }
+    }
+
+    @Test
+    void readsNothingPastEnd() throws Exception {
+        try (ByteBufferImageInputStream in = new ByteBufferImageInputStream(ByteBuffer.wrap(new byte[] {1, 2, 3}))) {
+            in.seek(100);
+            assertEquals(-1, in.read());
+            assertEquals(-1, in.read(new byte[4], 0, 4));
+
+            in.seek(1);
+            assertThrows(EOFException.class, () -> in.readFully(new byte[3]));
+            assertThrows(IndexOutOfBoundsException.class, () -> in.seek(-1));
+        }
+    }
+}
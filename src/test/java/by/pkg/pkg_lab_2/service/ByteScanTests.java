@@ -0,0 +1,87 @@
+package by.pkg.pkg_lab_2.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ByteScanTests {
+
+    @Test
+    void indexOfMatchesByteLoop() {
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            int length = random.nextInt(100);
+            ByteBuffer data = random.nextBoolean() ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+            // Малый алфавит даёт и соседние совпадения, и байты 0x00/0x01/0x80/0xFF, на которых ломается неверный SWAR
+            byte[] alphabet = {0x00, 0x01, 0x21, (byte) 0x80, (byte) 0xF9, (byte) 0xFF};
+            for (int i = 0; i < length; i++) {
+                data.put(i, alphabet[random.nextInt(alphabet.length)]);
+            }
+
+            int from = length == 0 ? 0 : random.nextInt(length);
+            int to = from + random.nextInt(length - from + 1);
+            byte value = alphabet[random.nextInt(alphabet.length)];
+            byte second = alphabet[random.nextInt(alphabet.length)];
+
+            assertEquals(naiveIndexOf(data, from, to, new byte[] {value}), ByteScan.indexOf(data, from, to, value));
+            assertEquals(naiveIndexOf(data, from, to, new byte[] {value, second}),
+                    ByteScan.indexOf(data, from, to, value, second));
+
+            byte[] four = {value, second, alphabet[random.nextInt(alphabet.length)], alphabet[random.nextInt(alphabet.length)]};
+            int pattern = ByteBuffer.wrap(four).getInt();
+            assertEquals(naiveIndexOf(data, from, to, four), ByteScan.indexOf(data, from, to, pattern));
+        }
+    }
+
+    @Test
+    void readsBothByteOrdersAndReturnsZeroOutOfBounds() {
+        ByteBuffer data = ByteBuffer.wrap(new byte[] {0x12, 0x34, 0x56, (byte) 0x9A});
+
+        assertEquals(0x1234, ByteScan.u16be(data, 0));
+        assertEquals(0x3412, ByteScan.u16le(data, 0));
+        assertEquals(0x569A, ByteScan.u16be(data, 2));
+        assertEquals(0x1234569A, ByteScan.s32be(data, 0));
+        assertEquals(0x9A563412, ByteScan.s32le(data, 0));
+        assertEquals(0x9A563412L, ByteScan.u32(data, 0, true));
+
+        assertEquals(0, ByteScan.u16be(data, 3));
+        assertEquals(0, ByteScan.s32be(data, 1));
+        assertEquals(0, ByteScan.u8(data, -1));
+        assertEquals(ByteScan.fourCC("IHDR"), 0x49484452);
+    }
+
+    @Test
+    void cursorStopsAtLimit() {
+        ByteBuffer data = ByteBuffer.wrap(new byte[] {1, 0, 2, 0, 0, 0, 7});
+        ByteCursor cursor = new ByteCursor(data, true);
+
+        assertEquals(1, cursor.u16());
+        assertEquals(2, cursor.s32());
+        assertTrue(cursor.isValid());
+        assertEquals(1, cursor.remaining());
+
+        assertEquals(0, cursor.u16());
+        assertFalse(cursor.isValid());
+        assertEquals(0, cursor.u8());
+        assertEquals(0, cursor.remaining());
+    }
+
+    private static int naiveIndexOf(ByteBuffer data, int from, int to, byte[] pattern) {
+        for (int i = from; i <= to - pattern.length; i++) {
+            boolean match = true;
+            for (int j = 0; j < pattern.length; j++) {
+                if (data.get(i + j) != pattern[j]) {
+                    match = false;
+                    break;
+                }
+            }
+            if (match) return i;
+        }
+        return -1;
+    }
+}
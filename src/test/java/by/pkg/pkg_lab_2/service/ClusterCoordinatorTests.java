@@ -0,0 +1,322 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ClusterStats;
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterCoordinatorTests {
+    private static final Pattern FILENAME = Pattern.compile("filename=\"([^\"]*)\"");
+
+    private final ClusterCoordinator coordinator = new ClusterCoordinator();
+    private final List<FakeWorker> workers = new ArrayList<>();
+    private final AtomicInteger localFiles = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        BufferPool bufferPool = new BufferPool();
+        ReflectionTestUtils.setField(bufferPool, "maxPooled", DataSize.ofMegabytes(16));
+        ImageArchiveReader archiveReader = new ImageArchiveReader();
+        ReflectionTestUtils.setField(archiveReader, "bufferPool", bufferPool);
+        ReflectionTestUtils.setField(coordinator, "imageArchiveReader", archiveReader);
+        ReflectionTestUtils.setField(coordinator, "imageAnalyzerService", new ImageAnalyzerService() {
+            @Override
+            public List<ImageMetadata> analyzeImages(MultipartFile[] files, boolean pixelStatistics) {
+                List<ImageMetadata> results = new ArrayList<>();
+                for (MultipartFile file : files) {
+                    results.add(metadata(file.getOriginalFilename(), "local"));
+                    localFiles.incrementAndGet();
+                }
+                return results;
+            }
+        });
+        ReflectionTestUtils.setField(coordinator, "shardFiles", 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.destroy();
+        workers.forEach(worker -> worker.server.stop(0));
+    }
+
+    @Test
+    void mergesShardsFromAllWorkersInInputOrder() throws Exception {
+        configure(startWorker(0), startWorker(0));
+
+        List<ImageMetadata> results = coordinator.analyzeImages(files(20), false);
+
+        assertNames(results, 20);
+        Set<String> analyzedBy = new HashSet<>();
+        results.forEach(metadata -> analyzedBy.add(metadata.getFormat()));
+        assertEquals(2, analyzedBy.size(), "both workers should receive shards");
+
+        ClusterStats stats = coordinator.getStats();
+        assertEquals(7, stats.getShards());
+        assertEquals(2, stats.getWorkers().get(0).getSlots());
+        assertEquals(0, stats.getLocalShards());
+    }
+
+    @Test
+    void readsZipEntriesIntoShards() throws Exception {
+        configure(startWorker(0));
+
+        List<ImageMetadata> results = coordinator.analyzeZip(new ByteArrayInputStream(zip(10)), false);
+
+        assertNames(results, 10);
+        assertEquals(4, coordinator.getStats().getShards());
+    }
+
+    @Test
+    void retriesFailedShardsOnHealthyWorker() throws Exception {
+        FakeWorker failing = startWorker(Integer.MAX_VALUE);
+        FakeWorker healthy = startWorker(0);
+        configure(failing, healthy);
+
+        List<ImageMetadata> results = coordinator.analyzeImages(files(12), false);
+
+        assertNames(results, 12);
+        results.forEach(metadata -> assertEquals(healthy.name, metadata.getFormat()));
+        assertTrue(failing.requests.get() > 0);
+        assertTrue(coordinator.getStats().getRetriedShards() > 0);
+        assertEquals(0, localFiles.get());
+    }
+
+    @Test
+    void analyzesLocallyWhenNoWorkerIsReachable() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        ReflectionTestUtils.setField(coordinator, "workerUrls", "http://localhost:" + closedPort);
+
+        List<ImageMetadata> results = coordinator.analyzeImages(files(7), false);
+
+        assertNames(results, 7);
+        assertEquals(7, localFiles.get());
+        assertEquals(3, coordinator.getStats().getLocalShards());
+    }
+
+    @Test
+    void sharesBoundedSlotThreadsBetweenConcurrentJobs() throws Exception {
+        configure(startWorker(0), startWorker(0));
+        ReflectionTestUtils.setField(coordinator, "maxSlotThreads", 1);
+
+        List<CompletableFuture<List<ImageMetadata>>> jobs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            jobs.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return coordinator.analyzeImages(files(9), false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+
+        for (CompletableFuture<List<ImageMetadata>> job : jobs) {
+            assertNames(job.get(30, TimeUnit.SECONDS), 9);
+        }
+        ThreadPoolExecutor slotExecutor = (ThreadPoolExecutor) ReflectionTestUtils.getField(coordinator, "slotExecutor");
+        assertEquals(1, slotExecutor.getLargestPoolSize());
+    }
+
+    @Test
+    void forwardsOriginalClientToWorkers() throws Exception {
+        FakeWorker worker = startWorker(0);
+        configure(worker);
+
+        AnalysisScheduler.setCurrentClient("10.0.0.7");
+        try {
+            assertNames(coordinator.analyzeImages(files(7), false), 7);
+        } finally {
+            AnalysisScheduler.setCurrentClient(null);
+        }
+
+        assertEquals(Set.of("10.0.0.7"), worker.clients);
+    }
+
+    @Test
+    void boundsShardsInFlightByBytes() throws Exception {
+        FakeWorker worker = startWorker(0, Executors.newCachedThreadPool());
+        configure(worker);
+        // Любой шард больше окна: следующий отправляется только после ответа на предыдущий
+        ReflectionTestUtils.setField(coordinator, "maxWindowBytes", DataSize.ofBytes(1));
+
+        assertNames(coordinator.analyzeImages(files(12), false), 12);
+
+        assertEquals(4, worker.requests.get());
+        assertEquals(1, worker.maxActive.get());
+    }
+
+    @Test
+    void rejectsJobWhenSlotQueueIsFull() throws Exception {
+        FakeWorker worker = startWorker(0);
+        worker.gate = new CountDownLatch(1);
+        configure(worker);
+        ReflectionTestUtils.setField(coordinator, "slotsPerWorker", 2);
+        ReflectionTestUtils.setField(coordinator, "maxSlotThreads", 1);
+        ReflectionTestUtils.setField(coordinator, "maxQueuedSlots", 1);
+
+        // Первый пакет занимает единственный поток, его второй слот - единственное место в очереди
+        CompletableFuture<List<ImageMetadata>> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return coordinator.analyzeImages(files(6), false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        while (worker.requests.get() == 0) {
+            Thread.sleep(5);
+        }
+
+        assertThrows(RejectedExecutionException.class, () -> coordinator.analyzeImages(files(3), false));
+
+        worker.gate.countDown();
+        assertNames(first.get(30, TimeUnit.SECONDS), 6);
+        assertEquals(1, coordinator.getStats().getRejectedJobs());
+    }
+
+    private void configure(FakeWorker... cluster) {
+        List<String> urls = new ArrayList<>();
+        for (FakeWorker worker : cluster) {
+            urls.add("http://localhost:" + worker.server.getAddress().getPort());
+        }
+        ReflectionTestUtils.setField(coordinator, "workerUrls", String.join(",", urls));
+    }
+
+    private static void assertNames(List<ImageMetadata> results, int count) {
+        assertEquals(count, results.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(name(i), results.get(i).getFilename());
+        }
+    }
+
+    private static MultipartFile[] files(int count) {
+        MultipartFile[] files = new MultipartFile[count];
+        for (int i = 0; i < count; i++) {
+            files[i] = new MockMultipartFile("files", name(i), "image/png", new byte[i * 10]);
+        }
+        return files;
+    }
+
+    private static byte[] zip(int count) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 0; i < count; i++) {
+                zip.putNextEntry(new ZipEntry(name(i)));
+                zip.write(new byte[i * 10]);
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static String name(int index) {
+        return "dir/image_" + index + ".png";
+    }
+
+    private static ImageMetadata metadata(String filename, String format) {
+        ImageMetadata metadata = new ImageMetadata(filename);
+        metadata.setFormat(format);
+        return metadata;
+    }
+
+    // Узел сообщает о двух потоках анализа и отвечает по одной записи на каждую часть multipart; первые failures запросов - 500
+    private FakeWorker startWorker(int failures) throws IOException {
+        return startWorker(failures, null);
+    }
+
+    // executor == null - запросы к узлу обрабатываются по одному
+    private FakeWorker startWorker(int failures, Executor executor) throws IOException {
+        FakeWorker worker = new FakeWorker(HttpServer.create(new InetSocketAddress("localhost", 0), 0));
+        worker.server.setExecutor(executor);
+        worker.name = "worker-" + worker.server.getAddress().getPort();
+        worker.server.createContext("/api/images/scheduler", exchange -> respond(exchange, 200, "{\"workers\":2}".getBytes()));
+        worker.server.createContext("/api/images/analyze", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.ISO_8859_1);
+            String client = exchange.getRequestHeaders().getFirst(ClusterCoordinator.CLIENT_HEADER);
+            if (client != null) worker.clients.add(client);
+            if (worker.requests.incrementAndGet() <= failures) {
+                respond(exchange, 500, new byte[0]);
+                return;
+            }
+            worker.maxActive.accumulateAndGet(worker.active.incrementAndGet(), Math::max);
+            try {
+                if (worker.gate != null) worker.gate.await();
+                // Один запрос за раз и 10 мс на шард - шарды достаются обоим узлам
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                worker.active.decrementAndGet();
+            }
+            List<ImageMetadata> results = new ArrayList<>();
+            Matcher matcher = FILENAME.matcher(body);
+            while (matcher.find()) {
+                results.add(metadata(matcher.group(1), worker.name));
+            }
+            respond(exchange, 200, SmileMapper.builder().build().writeValueAsBytes(results));
+        });
+        worker.server.start();
+        workers.add(worker);
+        return worker;
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static class FakeWorker {
+        final HttpServer server;
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final Set<String> clients = ConcurrentHashMap.newKeySet();
+        volatile CountDownLatch gate;
+        String name;
+
+        FakeWorker(HttpServer server) {
+            this.server = server;
+        }
+    }
+}
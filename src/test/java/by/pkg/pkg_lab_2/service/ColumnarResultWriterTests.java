@@ -0,0 +1,92 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ColumnarResultWriterTests {
+
+    @Test
+    void roundTripsRowsAcrossRowGroups() throws Exception {
+        List<ImageMetadata> rows = new ArrayList<>();
+        for (int i = 0; i < ColumnarResultWriter.ROW_GROUP_SIZE * 2 + 17; i++) {
+            rows.add(row(i));
+        }
+
+        byte[] bytes = write(rows);
+
+        try (ColumnarResultReader reader = new ColumnarResultReader(new ByteArrayInputStream(bytes))) {
+            for (ImageMetadata expected : rows) {
+                assertEquals(expected, reader.read());
+            }
+            assertNull(reader.read());
+            assertEquals(rows.size(), reader.getReadRows());
+        }
+    }
+
+    @Test
+    void keepsNullColumnsAndEmptyAdditionalInfo() throws Exception {
+        ImageMetadata nulls = new ImageMetadata(null);
+        ImageMetadata empty = new ImageMetadata("пустой, \"файл\"\n.png");
+        empty.setAdditionalInfo(new LinkedHashMap<>());
+
+        try (ColumnarResultReader reader = new ColumnarResultReader(new ByteArrayInputStream(write(List.of(nulls, empty))))) {
+            assertEquals(nulls, reader.read());
+            assertEquals(empty, reader.read());
+            assertNull(reader.read());
+        }
+    }
+
+    @Test
+    void rejectsTruncatedFile() throws Exception {
+        byte[] bytes = write(List.of(row(0), row(1)));
+
+        assertThrows(IOException.class, () -> {
+            try (ColumnarResultReader reader = new ColumnarResultReader(
+                    new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 3)))) {
+                while (reader.read() != null) {
+                    // читаем до ошибки
+                }
+            }
+        });
+    }
+
+    private static byte[] write(List<ImageMetadata> rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ColumnarResultWriter writer = new ColumnarResultWriter(out)) {
+            for (ImageMetadata row : rows) {
+                writer.write(row);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static ImageMetadata row(int i) {
+        ImageMetadata metadata = new ImageMetadata("dir/image_" + i + ".png");
+        metadata.setFormat(i % 3 == 0 ? "PNG" : "JPEG");
+        metadata.setDimensions(i + " x " + (i * 2));
+        metadata.setResolution(i % 5 == 0 ? null : "72 DPI");
+        metadata.setColorDepth("24 бит");
+        metadata.setCompression("Deflate");
+        metadata.setFileSize(i + " байт");
+        if (i % 4 != 0) {
+            Map<String, String> info = new LinkedHashMap<>();
+            info.put("Камера", "Model " + (i % 7));
+            info.put("Ключ=с;символами\\", i % 2 == 0 ? null : "значение");
+            metadata.setAdditionalInfo(info);
+        }
+        return metadata;
+    }
+}
@@ -0,0 +1,206 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CsvResultWriterTests {
+
+    @Test
+    void roundTripsQuotedFieldsAndNullColumns() throws Exception {
+        ImageMetadata quoted = new ImageMetadata("a,b \"c\"\r\nd.png");
+        quoted.setFormat("PNG");
+        quoted.setDimensions("10 x 20");
+        Map<String, String> info = new LinkedHashMap<>();
+        info.put("Описание", "x=1; y=2, \"z\"\nвторая строка");
+        info.put("Путь", "C:\\images");
+        quoted.setAdditionalInfo(info);
+
+        ImageMetadata nulls = new ImageMetadata("plain.jpg");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CsvResultWriter writer = new CsvResultWriter(out)) {
+            writer.write(quoted);
+            writer.write(nulls);
+        }
+
+        List<String[]> records = parse(out.toString(StandardCharsets.UTF_8));
+        assertEquals(3, records.size());
+        assertArrayEquals(ResultExportWriter.COLUMNS, records.get(0));
+
+        ImageMetadata first = toMetadata(records.get(1));
+        assertEquals(quoted, first);
+
+        ImageMetadata second = toMetadata(records.get(2));
+        assertEquals("plain.jpg", second.getFilename());
+        assertNull(second.getFormat());
+        assertNull(second.getFileSize());
+        assertNull(second.getAdditionalInfo());
+    }
+
+    @Test
+    void distinguishesEmptyStringsFromNulls() throws Exception {
+        ImageMetadata empty = new ImageMetadata("");
+        empty.setFormat("");
+        empty.setAdditionalInfo(new LinkedHashMap<>());
+
+        String csv = write(empty);
+
+        assertEquals(header() + "\"\",\"\",,,,,,\"\"\r\n", csv);
+        assertEquals(empty, toMetadata(parse(csv).get(1)));
+    }
+
+    @Test
+    void roundTripsNullAndEmptyAdditionalInfoValues() throws Exception {
+        ImageMetadata metadata = new ImageMetadata("a.png");
+        Map<String, String> info = new LinkedHashMap<>();
+        info.put("Пусто", "");
+        info.put("Нет значения", null);
+        info.put("", "пустой ключ");
+        metadata.setAdditionalInfo(info);
+
+        List<String[]> records = parse(write(metadata));
+
+        assertEquals("Пусто=;Нет значения;=пустой ключ", records.get(1)[7]);
+        assertEquals(info, toMetadata(records.get(1)).getAdditionalInfo());
+    }
+
+    @Test
+    void writesHeaderForEmptyExport() throws Exception {
+        assertEquals(header(), write());
+    }
+
+    @Test
+    void quotesOnlyFieldsWithSeparatorsQuotesOrLineBreaks() throws Exception {
+        ImageMetadata metadata = new ImageMetadata("with space;and=signs.png");
+        metadata.setFormat("a,b");
+        metadata.setDimensions("say \"hi\"");
+        metadata.setResolution("line\nbreak");
+        metadata.setColorDepth("cr\rlf");
+
+        String csv = write(metadata);
+
+        assertEquals(header() + "with space;and=signs.png,\"a,b\",\"say \"\"hi\"\"\",\"line\nbreak\",\"cr\rlf\",,,\r\n", csv);
+    }
+
+    @Test
+    void keepsRowsInWriteOrderAcrossFlushes() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CsvResultWriter writer = new CsvResultWriter(out)) {
+            for (int i = 0; i < 1000; i++) {
+                ImageMetadata metadata = new ImageMetadata("file" + i + ".png");
+                metadata.setFileSize(i + " B");
+                writer.write(metadata);
+                if (i % 100 == 0) writer.flush();
+            }
+        }
+
+        List<String[]> records = parse(out.toString(StandardCharsets.UTF_8));
+        assertEquals(1001, records.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("file" + i + ".png", records.get(i + 1)[0]);
+            assertEquals(i + " B", records.get(i + 1)[6]);
+        }
+    }
+
+    private static String write(ImageMetadata... rows) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CsvResultWriter writer = new CsvResultWriter(out)) {
+            for (ImageMetadata row : rows) {
+                writer.write(row);
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String header() {
+        return String.join(",", ResultExportWriter.COLUMNS) + "\r\n";
+    }
+
+    private static ImageMetadata toMetadata(String[] record) {
+        assertEquals(ResultExportWriter.COLUMNS.length, record.length);
+        ImageMetadata metadata = new ImageMetadata(record[0]);
+        metadata.setFormat(record[1]);
+        metadata.setDimensions(record[2]);
+        metadata.setResolution(record[3]);
+        metadata.setColorDepth(record[4]);
+        metadata.setCompression(record[5]);
+        metadata.setFileSize(record[6]);
+        metadata.setAdditionalInfo(parseAdditionalInfo(record[7]));
+        return metadata;
+    }
+
+    // RFC 4180: пустое поле - null, в кавычках допускаются ',', '"' (удвоенная) и переводы строк
+    private static List<String[]> parse(String csv) {
+        List<String[]> records = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        for (int i = 0; i < csv.length(); i++) {
+            char c = csv.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < csv.length() && csv.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',' || c == '\r') {
+                fields.add(field.length() == 0 && !wasQuoted ? null : field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+                if (c == '\r') {
+                    assertEquals('\n', csv.charAt(++i));
+                    records.add(fields.toArray(new String[0]));
+                    fields.clear();
+                }
+            } else {
+                field.append(c);
+            }
+        }
+        assertEquals(0, field.length());
+        return records;
+    }
+
+    private static Map<String, String> parseAdditionalInfo(String value) {
+        if (value == null) return null;
+        Map<String, String> info = new LinkedHashMap<>();
+        if (value.isEmpty()) return info;
+        StringBuilder current = new StringBuilder();
+        String key = null;
+        for (int i = 0; i <= value.length(); i++) {
+            char c = i < value.length() ? value.charAt(i) : ';';
+            if (c == '\\') {
+                current.append(value.charAt(++i));
+            } else if (c == '=' && key == null) {
+                key = current.toString();
+                current.setLength(0);
+            } else if (c == ';') {
+                // Ключ без '=' - значение null
+                if (key == null) info.put(current.toString(), null);
+                else info.put(key, current.toString());
+                key = null;
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        return info;
+    }
+}
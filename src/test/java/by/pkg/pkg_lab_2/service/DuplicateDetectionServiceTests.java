@@ -0,0 +1,104 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.DuplicateCluster;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DuplicateDetectionServiceTests {
+
+    private final DuplicateDetectionService service = new DuplicateDetectionService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "indexCapacity", 100);
+    }
+
+    @Test
+    void registersRepeatedUploadOnce() {
+        service.register("client", "a.png", 0x1234L);
+        service.register("client", "a.png", 0x1234L);
+        service.register("client", "copy of a.png", 0x1234L);
+
+        assertEquals(2, service.getIndexSize());
+        assertEquals(List.of("a.png", "copy of a.png"), sorted(service.lookup("client", 0x1234L, 0)));
+    }
+
+    @Test
+    void lookupReturnsOnlyFilesOfSameClient() {
+        service.register("alice", "alice.png", 0x1234L);
+        service.register("bob", "bob.png", 0x1235L);
+
+        assertEquals(List.of("alice.png"), service.lookup("alice", 0x1234L, 4));
+        assertEquals(List.of("bob.png"), service.lookup("bob", 0x1234L, 4));
+        assertEquals(List.of(), service.lookup("carol", 0x1234L, 4));
+    }
+
+    @Test
+    void findsNearDuplicatesUpToMaxDistance() {
+        long hash = 0x0F0F_F0F0_1234_5678L;
+        service.register("client", "original.png", hash);
+        // 10 отличий, разнесённых по всем четырём частям хеша
+        long edited = hash ^ 0x8003_8003_8001_8001L;
+        assertEquals(10, PerceptualHashService.distance(hash, edited));
+
+        assertEquals(List.of("original.png"), service.lookup("client", edited, 10));
+        assertEquals(List.of(), service.lookup("client", edited, 9));
+    }
+
+    @Test
+    void evictsLeastRecentlyRegisteredWhenFull() {
+        ReflectionTestUtils.setField(service, "indexCapacity", 3);
+        service.register("client", "a.png", 0x1L);
+        service.register("client", "b.png", 0x2L);
+        service.register("client", "c.png", 0x4L);
+        // Повторная загрузка a.png делает её самой свежей
+        service.register("client", "a.png", 0x1L);
+        service.register("client", "d.png", 0x8L);
+
+        assertEquals(3, service.getIndexSize());
+        assertEquals(1, service.getEvictedCount());
+        assertEquals(List.of("a.png", "c.png", "d.png"), sorted(service.lookup("client", 0L, 1)));
+
+        service.register("client", "e.png", 0x10L);
+        service.register("client", "f.png", 0x20L);
+        assertEquals(3, service.getIndexSize());
+        assertEquals(3, service.getEvictedCount());
+        assertEquals(List.of("d.png", "e.png", "f.png"), sorted(service.lookup("client", 0L, 1)));
+    }
+
+    @Test
+    void keepsCapacityUnderManyRegistrations() {
+        ReflectionTestUtils.setField(service, "indexCapacity", 50);
+        for (int i = 0; i < 1000; i++) {
+            service.register("client", "file" + i + ".png", i * 0x9E37_79B9_7F4A_7C15L);
+        }
+
+        assertEquals(50, service.getIndexSize());
+        assertEquals(950, service.getEvictedCount());
+        assertEquals(List.of("file999.png"), service.lookup("client", 999 * 0x9E37_79B9_7F4A_7C15L, 0));
+        assertEquals(List.of(), service.lookup("client", 0L, 0));
+    }
+
+    @Test
+    void reportsPairwiseMaximumDistance() {
+        // b и c отличаются от a на 3 бита каждый, но друг от друга - на 6
+        long a = 0L;
+        long b = 0b000111L;
+        long c = 0b111000L;
+
+        List<DuplicateCluster> clusters = service.cluster(List.of("a", "b", "c"), new long[] {a, b, c}, 4);
+
+        assertEquals(1, clusters.size());
+        assertEquals(List.of("a", "b", "c"), clusters.get(0).getFiles());
+        assertEquals(6, clusters.get(0).getMaxDistance());
+    }
+
+    private static List<String> sorted(List<String> names) {
+        return names.stream().sorted().toList();
+    }
+}
@@ -0,0 +1,145 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.corpus.ColorMode;
+import by.pkg.pkg_lab_2.corpus.CorpusConfig;
+import by.pkg.pkg_lab_2.corpus.CorpusGenerator;
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+Эталонный вывод анализаторов PNG, JPEG и TIFF (сжатие и additionalInfo) для images/ и синтетического корпуса.
+При расхождении фактический вывод сохраняется в build/golden/<имя>: после проверки изменений
+его можно скопировать в src/test/resources/golden.
+*/
+class FormatAnalyzerGoldenTests {
+    private static final Path GOLDEN = Path.of("src/test/resources/golden");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sampleImagesMatchGoldenOutput() throws Exception {
+        assertGolden("images.txt", Path.of("images"), List.of(Path.of("images/png"), Path.of("images/jpg"), Path.of("images/tif")));
+    }
+
+    @Test
+    void syntheticCorpusMatchesGoldenOutput() throws Exception {
+        CorpusConfig config = new CorpusConfig(dir, List.of("png", "jpg", "tif"), List.of(new int[] {16, 12}, new int[] {33, 7}),
+                List.of(ColorMode.values()), List.of("none", "packbits", "deflate"), List.of(ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN),
+                List.of("none"), "6", "85",
+                List.of(1), true, List.of(), 42);
+        CorpusGenerator.generate(config);
+
+        assertGolden("corpus.txt", dir, List.of(dir.resolve("images"), dir.resolve("malformed")));
+    }
+
+    @Test
+    void bigEndianTiffMatchesGoldenOutput() throws Exception {
+        // TIFF writer из JDK пишет big endian ("MM") независимо от генератора корпуса
+        Path tiffs = Files.createDirectory(dir.resolve("big-endian"));
+        writeJdkTiff(new BufferedImage(40, 30, BufferedImage.TYPE_BYTE_GRAY), tiffs.resolve("gray8.tif"));
+        writeJdkTiff(new BufferedImage(300, 70000 / 300, BufferedImage.TYPE_USHORT_GRAY), tiffs.resolve("gray16.tif"));
+        writeJdkTiff(new BufferedImage(17, 5, BufferedImage.TYPE_3BYTE_BGR), tiffs.resolve("rgb24.tif"));
+        writeJdkTiff(new BufferedImage(70000, 1, BufferedImage.TYPE_BYTE_BINARY), tiffs.resolve("wide-bilevel.tif"));
+
+        assertGolden("big-endian.txt", dir, List.of(tiffs));
+    }
+
+    private static void assertGolden(String name, Path root, List<Path> dirs) throws IOException {
+        StringBuilder actual = new StringBuilder();
+        for (Path dir : dirs) {
+            List<Path> files;
+            try (Stream<Path> list = Files.list(dir)) {
+                files = list.filter(FormatAnalyzerGoldenTests::isAnalyzed).sorted().toList();
+            }
+            for (Path file : files) {
+                describe(root.relativize(file), Files.readAllBytes(file), actual);
+            }
+        }
+
+        String expected = Files.readString(GOLDEN.resolve(name), StandardCharsets.UTF_8);
+        if (!expected.equals(actual.toString())) {
+            Path output = Files.createDirectories(Path.of("build/golden")).resolve(name);
+            Files.writeString(output, actual, StandardCharsets.UTF_8);
+            // Весь вывод в сообщение не помещается (больше 64 КБ), поэтому сравнивается первая отличающаяся строка
+            List<String> expectedLines = expected.lines().toList();
+            List<String> actualLines = actual.toString().lines().toList();
+            int line = 0;
+            while (line < Math.min(expectedLines.size(), actualLines.size()) && expectedLines.get(line).equals(actualLines.get(line))) {
+                line++;
+            }
+            assertEquals(line < expectedLines.size() ? expectedLines.get(line) : "<end>",
+                    line < actualLines.size() ? actualLines.get(line) : "<end>",
+                    name + " differs at line " + (line + 1) + ", actual output: " + output);
+        }
+    }
+
+    private static void describe(Path relative, byte[] data, StringBuilder out) {
+        String filename = relative.toString().replace('\\', '/');
+        String extension = filename.substring(filename.lastIndexOf('.') + 1);
+        ImageMetadata metadata = new ImageMetadata(filename);
+        ByteBuffer bytes = ByteBuffer.wrap(data);
+
+        out.append(filename).append('\n');
+        switch (extension) {
+            case "png" -> PngAnalyzerService.analyze(bytes, metadata);
+            case "jpg" -> JpgAnalyzerService.analyze(bytes, metadata);
+            case "tif" -> {
+                out.append("  compression: ").append(TifAnalyzerService.analyzeCompressionType(bytes)).append('\n');
+                TifAnalyzerService.analyze(bytes, metadata);
+            }
+            default -> throw new IllegalArgumentException(filename);
+        }
+
+        Map<String, String> info = metadata.getAdditionalInfo();
+        if (info == null) {
+            out.append("  null\n");
+            return;
+        }
+        for (Map.Entry<String, String> entry : new TreeMap<>(info).entrySet()) {
+            out.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+    }
+
+    private static boolean isAnalyzed(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".tif");
+    }
+
+    private static void writeJdkTiff(BufferedImage image, Path file) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("tiff");
+        while (writers.hasNext()) {
+            ImageWriter writer = writers.next();
+            if (!writer.getClass().getName().startsWith("com.sun.imageio")) continue;
+
+            Files.deleteIfExists(file);
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+                writer.setOutput(out);
+                writer.write(image);
+            } finally {
+                writer.dispose();
+            }
+            return;
+        }
+        throw new IllegalStateException("JDK TIFF writer not found");
+    }
+}
@@ -0,0 +1,173 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import by.pkg.pkg_lab_2.model.PixelStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageAnalyzerServiceTests {
+    private final ImageAnalyzerService service = new ImageAnalyzerService();
+    private final AnalysisScheduler scheduler = new AnalysisScheduler(1, "", 0, 100);
+    private final ImageReaderPool readerPool = new ImageReaderPool();
+
+    @BeforeEach
+    void setUp() {
+        BufferPool bufferPool = new BufferPool();
+        ReflectionTestUtils.setField(bufferPool, "maxPooled", DataSize.ofMegabytes(16));
+        PixelStatisticsService pixelStatisticsService = new PixelStatisticsService();
+        DuplicateDetectionService duplicateDetectionService = new DuplicateDetectionService();
+        ReflectionTestUtils.setField(duplicateDetectionService, "indexCapacity", 1000);
+
+        ReflectionTestUtils.setField(service, "pixelStatisticsService", pixelStatisticsService);
+        ReflectionTestUtils.setField(service, "duplicateDetectionService", duplicateDetectionService);
+        ReflectionTestUtils.setField(service, "bufferPool", bufferPool);
+        ReflectionTestUtils.setField(service, "imageReaderPool", readerPool);
+        ReflectionTestUtils.setField(service, "analysisScheduler", scheduler);
+        ReflectionTestUtils.setField(service, "fileTimeout", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(service, "maxAllocation", DataSize.ofMegabytes(256));
+        ReflectionTestUtils.setField(service, "maxPixels", 1_000_000_000L);
+        ReflectionTestUtils.setField(service, "maxQueueWait", Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.destroy();
+    }
+
+    @Test
+    void analyzesImageWithinLimits() throws Exception {
+        ImageMetadata metadata = service.analyzeImage(png("small.png", 64, 48), true);
+
+        assertEquals("64×48", metadata.getDimensions());
+        assertNotNull(metadata.getPerceptualHash());
+        assertNotNull(metadata.getPixelStatistics());
+        assertNull(metadata.getAdditionalInfo().get("Ошибка"));
+    }
+
+    @Test
+    void computesPixelStatisticsFromSingleDecode() throws Exception {
+        ReflectionTestUtils.setField(service, "maxDecodePixels", 1_000L);
+
+        ImageMetadata metadata = service.analyzeImage(png("stats.png", 100, 100), true);
+
+        // Статистика по растру readImage: шаг 4 (625 пикселей), reader взят из пула один раз
+        PixelStatistics statistics = metadata.getPixelStatistics();
+        assertEquals(4, statistics.getSubsampling());
+        assertEquals(625, statistics.getSampledPixels());
+        assertEquals(1, readerPool.getCreated() + readerPool.getReused());
+    }
+
+    @Test
+    void closesUploadedFileStreamAfterReading() throws Exception {
+        byte[] bytes = png("closed.png", 16, 16).getBytes();
+        AtomicBoolean closed = new AtomicBoolean();
+        MockMultipartFile file = new MockMultipartFile("files", "closed.png", "image/png", bytes) {
+            @Override
+            public InputStream getInputStream() {
+                return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+                    @Override
+                    public void close() throws IOException {
+                        closed.set(true);
+                        super.close();
+                    }
+                };
+            }
+        };
+
+        assertEquals("16×16", service.analyzeImage(file, false).getDimensions());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void decodesLargeImageSubsampledWithinAllocationLimit() throws Exception {
+        // Полный растр 4000×4000 - 48 МБ; с шагом субдискретизации 2 декодер выделяет около 12 МБ
+        ReflectionTestUtils.setField(service, "maxAllocation", DataSize.ofMegabytes(40));
+
+        ImageMetadata metadata = service.analyzeImage(png("large.png", 4000, 4000), false);
+
+        assertEquals("4000×4000", metadata.getDimensions());
+        assertNull(metadata.getAdditionalInfo().get("Ошибка"), String.valueOf(metadata.getAdditionalInfo()));
+    }
+
+    @Test
+    void reportsTimeLimit() throws Exception {
+        ReflectionTestUtils.setField(service, "fileTimeout", Duration.ofMillis(1));
+        MockMultipartFile file = noisePng("slow.png", 1500, 1500);
+
+        ImageMetadata metadata = service.analyzeImage(file, true);
+
+        assertError(metadata, file, "Превышено время анализа");
+    }
+
+    @Test
+    void reportsAllocationLimit() throws Exception {
+        ReflectionTestUtils.setField(service, "maxAllocation", DataSize.ofKilobytes(64));
+        MockMultipartFile file = png("big.png", 1000, 1000);
+
+        ImageMetadata metadata = service.analyzeImage(file, false);
+
+        assertError(metadata, file, "Превышен лимит памяти (64 KB)");
+    }
+
+    @Test
+    void rejectsDeclaredSizeAboveMaxPixels() throws Exception {
+        ReflectionTestUtils.setField(service, "maxPixels", 1000L);
+        MockMultipartFile file = png("wide.png", 100, 100);
+
+        ImageMetadata metadata = service.analyzeImage(file, false);
+
+        assertError(metadata, file, "Заявленный размер изображения 100×100 превышает лимит");
+    }
+
+    private static void assertError(ImageMetadata metadata, MockMultipartFile file, String expectedPrefix) {
+        Map<String, String> info = metadata.getAdditionalInfo();
+        assertEquals(file.getOriginalFilename(), metadata.getFilename());
+        assertNotNull(metadata.getFileSize());
+        assertNull(metadata.getDimensions());
+        assertEquals("image/png", info.get("MIME Type"));
+        assertTrue(info.get("Ошибка").startsWith(expectedPrefix), info.get("Ошибка"));
+    }
+
+    private static MockMultipartFile png(String name, int width, int height) throws Exception {
+        return encode(name, new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR));
+    }
+
+    // Шум плохо сжимается, поэтому декодирование заметно дольше миллисекунды
+    private static MockMultipartFile noisePng(String name, int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(1);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return encode(name, image);
+    }
+
+    private static MockMultipartFile encode(String name, BufferedImage image) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return new MockMultipartFile("files", name, "image/png", out.toByteArray());
+    }
+}
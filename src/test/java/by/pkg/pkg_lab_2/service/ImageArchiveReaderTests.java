@@ -0,0 +1,73 @@
+package by.pkg.pkg_lab_2.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageArchiveReaderTests {
+
+    private final ImageArchiveReader reader = new ImageArchiveReader();
+    private final BufferPool bufferPool = new BufferPool();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(bufferPool, "maxPooled", DataSize.ofMegabytes(16));
+        ReflectionTestUtils.setField(reader, "bufferPool", bufferPool);
+    }
+
+    @Test
+    void readsImageEntriesAndSkipsOthers() throws Exception {
+        byte[] zip = zip("a.png", new byte[1000], "notes.txt", new byte[10], "dir/b.JPG", new byte[70_000]);
+
+        List<String> names = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        reader.forEachImage(new ByteArrayInputStream(zip), file -> {
+            names.add(file.getOriginalFilename());
+            sizes.add(file.getSize());
+        });
+
+        assertEquals(List.of("a.png", "dir/b.JPG"), names);
+        assertEquals(List.of(1000L, 70_000L), sizes);
+        // Размер сжатых записей заранее неизвестен: буфер второй записи вырос с 64 KB до 128 KB,
+        // и оба вернулись в пул
+        assertEquals(64 * 1024 + 128 * 1024, bufferPool.getPooledBytes());
+    }
+
+    @Test
+    void rejectsEntryLargerThanLimit() throws Exception {
+        ReflectionTestUtils.setField(reader, "maxEntrySize", DataSize.ofKilobytes(64));
+        byte[] zip = zip("small.png", new byte[100], "large.png", new byte[100_000]);
+
+        List<String> names = new ArrayList<>();
+        IOException error = assertThrows(IOException.class,
+                () -> reader.forEachImage(new ByteArrayInputStream(zip), file -> names.add(file.getOriginalFilename())));
+
+        assertEquals(List.of("small.png"), names);
+        assertTrue(error.getMessage().contains("large.png"));
+    }
+
+    private static byte[] zip(Object... entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry((String) entries[i]));
+                zip.write((byte[]) entries[i + 1]);
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,88 @@
+package by.pkg.pkg_lab_2.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ImageReaderPoolTests {
+    private final ImageReaderPool pool = new ImageReaderPool();
+
+    @Test
+    void reusesReleasedReaderWithoutInput() throws Exception {
+        byte[] png = png(7, 5);
+
+        ImageReader first;
+        try (ByteBufferImageInputStream iis = new ByteBufferImageInputStream(ByteBuffer.wrap(png))) {
+            first = pool.acquire(iis);
+            assertNotNull(first);
+            assertSame(iis, first.getInput());
+            assertEquals(7, first.getWidth(0));
+            pool.release(first);
+        }
+
+        // reset() при возврате снимает input, иначе reader держал бы поток предыдущего файла
+        assertNull(first.getInput());
+
+        try (ByteBufferImageInputStream iis = new ByteBufferImageInputStream(ByteBuffer.wrap(png(3, 9)))) {
+            ImageReader second = pool.acquire(iis);
+            assertSame(first, second);
+            assertSame(iis, second.getInput());
+            assertEquals(9, second.getHeight(0));
+            pool.release(second);
+        }
+
+        assertEquals(1, pool.getCreated());
+        assertEquals(1, pool.getReused());
+    }
+
+    @Test
+    void returnsNullForUnknownFormat() throws Exception {
+        try (ByteBufferImageInputStream iis = new ByteBufferImageInputStream(ByteBuffer.wrap(new byte[64]))) {
+            assertNull(pool.acquire(iis));
+            // Проверка провайдеров не должна сдвигать позицию потока
+            assertEquals(0, iis.getStreamPosition());
+        }
+        assertEquals(0, pool.getCreated());
+    }
+
+    @Test
+    void keepsAtMostMaxPooledReadersPerFormat() throws Exception {
+        ReflectionTestUtils.setField(pool, "maxPooledPerFormat", 1);
+        byte[] png = png(2, 2);
+
+        try (ByteBufferImageInputStream a = new ByteBufferImageInputStream(ByteBuffer.wrap(png));
+             ByteBufferImageInputStream b = new ByteBufferImageInputStream(ByteBuffer.wrap(png))) {
+            ImageReader first = pool.acquire(a);
+            ImageReader second = pool.acquire(b);
+            assertNotSame(first, second);
+            pool.release(first);
+            pool.release(second);
+
+            // В пуле остался только первый, второй освобождён через dispose()
+            assertSame(first, pool.acquire(first.getOriginatingProvider()));
+            ImageReader third = pool.acquire(first.getOriginatingProvider());
+            assertNotSame(first, third);
+            assertNotSame(second, third);
+        }
+
+        assertEquals(3, pool.getCreated());
+        assertEquals(1, pool.getReused());
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+}
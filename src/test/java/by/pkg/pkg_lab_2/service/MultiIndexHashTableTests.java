@@ -0,0 +1,142 @@
+package by.pkg.pkg_lab_2.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MultiIndexHashTableTests {
+
+    @Test
+    void searchMatchesBruteForce() {
+        Random random = new Random(42);
+        MultiIndexHashTable table = new MultiIndexHashTable();
+        long[] hashes = new long[5000];
+
+        for (int i = 0; i < hashes.length; i++) {
+            // Половина хешей - слегка изменённые копии предыдущих
+            hashes[i] = (i % 2 == 0 || i == 0)
+                    ? random.nextLong()
+                    : hashes[i - 1] ^ (1L << random.nextInt(64)) ^ (1L << random.nextInt(64));
+            table.add(hashes[i]);
+        }
+
+        for (int distance : new int[] {0, 3, 10, 16}) {
+            for (int q = 0; q < 200; q++) {
+                long query = hashes[random.nextInt(hashes.length)] ^ (1L << random.nextInt(64));
+
+                List<Integer> expected = new ArrayList<>();
+                for (int i = 0; i < hashes.length; i++) {
+                    if (Long.bitCount(hashes[i] ^ query) <= distance) expected.add(i);
+                }
+
+                List<Integer> actual = new ArrayList<>();
+                table.search(query, distance, actual::add);
+                actual.sort(null);
+
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    void findsHashesExactlyAtThresholdButNotBeyond() {
+        MultiIndexHashTable table = new MultiIndexHashTable();
+        for (int distance = 0; distance <= MultiIndexHashTable.MAX_DISTANCE; distance++) {
+            // Младшие distance бит - ровно distance отличий от нуля
+            table.add((1L << distance) - 1);
+        }
+
+        for (int maxDistance = 0; maxDistance <= MultiIndexHashTable.MAX_DISTANCE; maxDistance++) {
+            List<Integer> found = new ArrayList<>();
+            table.search(0L, maxDistance, found::add);
+            found.sort(null);
+
+            List<Integer> expected = new ArrayList<>();
+            for (int id = 0; id <= maxDistance; id++) expected.add(id);
+            assertEquals(expected, found, "maxDistance " + maxDistance);
+        }
+    }
+
+    @Test
+    void findsDifferencesSpreadEvenlyAcrossChunkBoundaries() {
+        // Отличия на границах 16-битных частей (биты 15/16, 31/32, 47/48) и поровну во всех частях -
+        // худший случай для поиска, когда ни одна часть не совпадает точно
+        int[][] spreads = {
+                {15, 16, 31, 32, 47, 48, 63},
+                {0, 16, 32, 48},
+                {15, 31, 47, 63},
+                {14, 15, 16, 17, 30, 31, 32, 33, 46, 47, 48, 49, 62, 63, 0},
+                {15, 16, 17, 31, 32, 33, 47, 48, 49, 63, 0, 1, 14, 30, 46, 62}
+        };
+        for (int[] bits : spreads) {
+            long hash = 0x0123_4567_89AB_CDEFL;
+            long query = hash;
+            for (int bit : bits) query ^= 1L << bit;
+
+            MultiIndexHashTable table = new MultiIndexHashTable();
+            int id = table.add(hash);
+
+            List<Integer> found = new ArrayList<>();
+            table.search(query, bits.length, found::add);
+            assertEquals(List.of(id), found, bits.length + " bits");
+
+            found.clear();
+            table.search(query, bits.length - 1, found::add);
+            assertEquals(List.of(), found, (bits.length - 1) + " bits");
+        }
+    }
+
+    @Test
+    void everyDistributionOfDifferencesIsFoundAtMaxDistance() {
+        Random random = new Random(7);
+        MultiIndexHashTable table = new MultiIndexHashTable();
+        long hash = random.nextLong();
+        table.add(hash);
+
+        for (int q = 0; q < 2000; q++) {
+            int distance = 1 + random.nextInt(MultiIndexHashTable.MAX_DISTANCE);
+            long query = hash;
+            while (Long.bitCount(query ^ hash) < distance) {
+                query ^= 1L << random.nextInt(64);
+            }
+
+            List<Integer> found = new ArrayList<>();
+            table.search(query, distance, found::add);
+            assertEquals(List.of(0), found, Long.toHexString(query ^ hash));
+        }
+    }
+
+    @Test
+    void removedHashesAreNotFoundAndIdsAreReused() {
+        MultiIndexHashTable table = new MultiIndexHashTable();
+        int a = table.add(0L);
+        int b = table.add(1L);
+        int c = table.add(3L);
+
+        table.remove(b);
+        assertEquals(2, table.size());
+        List<Integer> found = new ArrayList<>();
+        table.search(0L, 2, found::add);
+        found.sort(null);
+        assertEquals(List.of(a, c), found);
+
+        int d = table.add(0xFFL);
+        assertEquals(b, d);
+        assertEquals(0xFFL, table.get(d));
+        found.clear();
+        table.search(0xFFL, 0, found::add);
+        assertEquals(List.of(d), found);
+    }
+
+    @Test
+    void rejectsDistanceOutOfRange() {
+        MultiIndexHashTable table = new MultiIndexHashTable();
+        assertThrows(IllegalArgumentException.class, () -> table.search(0L, -1, id -> { }));
+        assertThrows(IllegalArgumentException.class, () -> table.search(0L, MultiIndexHashTable.MAX_DISTANCE + 1, id -> { }));
+    }
+}
@@ -0,0 +1,89 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.PixelStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PixelStatisticsServiceTests {
+
+    private final PixelStatisticsService service = new PixelStatisticsService();
+
+    @Test
+    void computesHistogramMeanAndEntropy() {
+        // Левая половина чёрная, правая - красная
+        BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 100; y++) {
+            for (int x = 50; x < 100; x++) {
+                image.setRGB(x, y, 0xFF0000);
+            }
+        }
+
+        PixelStatistics statistics = service.analyze(image, 1);
+
+        assertArrayEquals(new String[] {"Red", "Green", "Blue"}, statistics.getChannels());
+        assertEquals(10_000, statistics.getSampledPixels());
+        assertEquals(127.5, statistics.getMean()[0], 1e-9);
+        assertEquals(0.0, statistics.getMean()[1], 1e-9);
+        assertEquals(1.0, statistics.getEntropy()[0], 1e-9);
+        assertEquals(0.0, statistics.getEntropy()[2], 1e-9);
+        assertEquals(5_000, statistics.getHistograms()[0][255]);
+        assertEquals(1, statistics.getSubsampling());
+    }
+
+    @Test
+    void reportsSubsamplingOfDecodedImage() {
+        // 40×40 - растр, декодированный с шагом 3 из 120×120
+        PixelStatistics statistics = service.analyze(new BufferedImage(40, 40, BufferedImage.TYPE_BYTE_GRAY), 3);
+
+        assertEquals(1_600, statistics.getSampledPixels());
+        assertEquals(3, statistics.getSubsampling());
+        assertEquals(1_600, statistics.getHistograms()[0][0]);
+    }
+
+    @Test
+    void scalesSixteenBitSamplesToByteHistogram() {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_USHORT_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                raster.setSample(x, y, 0, x < 32 ? 0x0100 : 0xFFFF);
+            }
+        }
+
+        PixelStatistics statistics = service.analyze(image, 1);
+
+        assertEquals(4096, statistics.getSampledPixels());
+        assertEquals(2048, statistics.getHistograms()[0][1]);
+        assertEquals(2048, statistics.getHistograms()[0][255]);
+        assertEquals(128.0, statistics.getMean()[0], 1e-9);
+    }
+
+    @Test
+    void offsetsSignedSamplesByTypeMinimum() {
+        ComponentColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+                false, false, Transparency.OPAQUE, DataBuffer.TYPE_SHORT);
+        WritableRaster raster = colorModel.createCompatibleWritableRaster(64, 64);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                raster.setSample(x, y, 0, x < 32 ? Short.MIN_VALUE : Short.MAX_VALUE);
+            }
+        }
+        BufferedImage image = new BufferedImage(colorModel, raster, false, null);
+
+        PixelStatistics statistics = service.analyze(image, 1);
+
+        assertEquals(4096, statistics.getSampledPixels());
+        assertEquals(2048, statistics.getHistograms()[0][0]);
+        assertEquals(2048, statistics.getHistograms()[0][255]);
+        assertEquals(1.0, statistics.getEntropy()[0], 1e-9);
+    }
+}
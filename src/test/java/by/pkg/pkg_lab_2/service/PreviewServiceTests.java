@@ -0,0 +1,152 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ImagePreview;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PreviewServiceTests {
+    // Начало миниатюры внутри TIFF структуры: заголовок, пустой IFD0 и IFD1 из двух записей
+    private static final int THUMBNAIL_OFFSET = 44;
+    private static final byte[] THUMBNAIL = {(byte) 0xFF, (byte) 0xD8, 1, 2, 3, 4, (byte) 0xFF, (byte) 0xD9};
+
+    private final PreviewService service = new PreviewService();
+    private final BufferPool bufferPool = new BufferPool();
+    private final AnalysisScheduler scheduler = new AnalysisScheduler(1, "", 0, 100);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(bufferPool, "maxPooled", DataSize.ofMegabytes(16));
+        ReflectionTestUtils.setField(service, "imageReaderPool", new ImageReaderPool());
+        ReflectionTestUtils.setField(service, "analysisScheduler", scheduler);
+        ReflectionTestUtils.setField(service, "fileTimeout", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(service, "maxAllocation", DataSize.ofMegabytes(256));
+        ReflectionTestUtils.setField(service, "maxPixels", 1_000_000_000L);
+        ReflectionTestUtils.setField(service, "maxQueueWait", Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.destroy();
+    }
+
+    @Test
+    void copiesJpegExifThumbnailWithoutDecoding() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(new byte[] {(byte) 0xFF, (byte) 0xD8});
+        writeApp1(file, exif(THUMBNAIL_OFFSET, THUMBNAIL.length, THUMBNAIL));
+        file.write(new byte[] {(byte) 0xFF, (byte) 0xD9});
+
+        ImagePreview preview = preview(file.toByteArray(), 256);
+
+        assertTrue(preview.isEmbedded());
+        assertArrayEquals(THUMBNAIL, preview.getData());
+    }
+
+    @Test
+    void ignoresThumbnailOffsetOutsideExifSegment() throws Exception {
+        // Offset указывает на байты FF D8 сразу за сегментом APP1
+        byte[] tiff = exif(THUMBNAIL_OFFSET, THUMBNAIL.length, new byte[0]);
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(new byte[] {(byte) 0xFF, (byte) 0xD8});
+        writeApp1(file, tiff);
+        file.write(THUMBNAIL);
+
+        assertNull(PreviewService.findEmbeddedPreview(ByteBuffer.wrap(file.toByteArray())));
+    }
+
+    @Test
+    void findsThumbnailInPngExifChunk() throws Exception {
+        byte[] tiff = exif(THUMBNAIL_OFFSET, THUMBNAIL.length, THUMBNAIL);
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+        writeChunk(file, "eXIf", tiff);
+        writeChunk(file, "IEND", new byte[0]);
+
+        int[] range = PreviewService.findEmbeddedPreview(ByteBuffer.wrap(file.toByteArray()));
+
+        assertArrayEquals(new int[] {8 + 8 + THUMBNAIL_OFFSET, THUMBNAIL.length}, range);
+    }
+
+    @Test
+    void decodesSubsampledPreviewWhenNoThumbnail() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB), "png", file);
+
+        ImagePreview preview = preview(file.toByteArray(), 100);
+
+        assertFalse(preview.isEmbedded());
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(preview.getData()));
+        assertEquals(100, image.getWidth());
+        assertEquals(50, image.getHeight());
+    }
+
+    @Test
+    void rejectsDeclaredSizeAboveLimitBeforeDecoding() throws Exception {
+        ReflectionTestUtils.setField(service, "maxPixels", 10_000L);
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB), "png", file);
+
+        assertThrows(AnalysisLimitException.class, () -> preview(file.toByteArray(), 100));
+    }
+
+    @Test
+    void abortsDecodeAfterFileTimeout() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB), "png", file);
+        AnalysisDeadline deadline = new AnalysisDeadline(Duration.ZERO, 0);
+        deadline.start();
+
+        assertThrows(AnalysisLimitException.class,
+                () -> service.decodePreview(ByteBuffer.wrap(file.toByteArray()), 100, deadline));
+    }
+
+    private ImagePreview preview(byte[] file, int maxSize) throws Exception {
+        try (PooledBuffer buffer = bufferPool.read(new ByteArrayInputStream(file), file.length)) {
+            return service.getPreview(buffer, maxSize);
+        }
+    }
+
+    // TIFF (little endian): пустой IFD0 -> IFD1 с тегами JPEGInterchangeFormat и JPEGInterchangeFormatLength
+    private static byte[] exif(int thumbnailOffset, int thumbnailLength, byte[] thumbnail) {
+        ByteBuffer tiff = ByteBuffer.allocate(THUMBNAIL_OFFSET + thumbnail.length).order(ByteOrder.LITTLE_ENDIAN);
+        tiff.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(8);
+        tiff.putShort((short) 0).putInt(14);
+        tiff.putShort((short) 2);
+        tiff.putShort((short) 0x0201).putShort((short) 4).putInt(1).putInt(thumbnailOffset);
+        tiff.putShort((short) 0x0202).putShort((short) 4).putInt(1).putInt(thumbnailLength);
+        tiff.putInt(0);
+        tiff.put(thumbnail);
+        return tiff.array();
+    }
+
+    private static void writeApp1(ByteArrayOutputStream out, byte[] tiff) {
+        int length = 2 + 6 + tiff.length;
+        out.writeBytes(new byte[] {(byte) 0xFF, (byte) 0xE1, (byte) (length >> 8), (byte) length});
+        out.writeBytes(new byte[] {'E', 'x', 'i', 'f', 0, 0});
+        out.writeBytes(tiff);
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data) {
+        out.writeBytes(ByteBuffer.allocate(8).putInt(data.length).put(type.getBytes()).array());
+        out.writeBytes(data);
+        out.writeBytes(new byte[4]);
+    }
+}
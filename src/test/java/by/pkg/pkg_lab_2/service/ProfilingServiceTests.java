@@ -0,0 +1,147 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import by.pkg.pkg_lab_2.model.RecordingStatus;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProfilingServiceTests {
+    private static final String FILE_EVENT = "by.pkg.pkg_lab_2.FileAnalysis";
+    private static final String FORMAT_EVENT = "by.pkg.pkg_lab_2.FormatAnalysis";
+
+    @TempDir
+    Path dir;
+
+    private final ProfilingService profilingService = new ProfilingService();
+
+    @AfterEach
+    void tearDown() {
+        profilingService.destroy();
+    }
+
+    @Test
+    void isDisabledByDefault() {
+        assertFalse(profilingService.isEnabled());
+    }
+
+    @Test
+    void startsOneRecordingAndReturnsFileOnStop() throws Exception {
+        ReflectionTestUtils.setField(profilingService, "dir", dir.toString());
+
+        RecordingStatus status = profilingService.start(ProfilingService.ANALYZER_SETTINGS, Duration.ofMinutes(1));
+        assertTrue(status.isRunning());
+        assertEquals(ProfilingService.ANALYZER_SETTINGS, status.getSettings());
+        assertEquals(60, status.getMaxDurationSeconds());
+        assertThrows(IllegalStateException.class, () -> profilingService.start("default", null));
+
+        Path file = profilingService.stop();
+        assertTrue(file.startsWith(dir.toAbsolutePath()));
+        assertTrue(Files.size(file) > 0);
+        assertFalse(profilingService.status().isRunning());
+        assertThrows(IllegalStateException.class, profilingService::stop);
+    }
+
+    @Test
+    void rejectsUnknownSettingsAndNonPositiveDuration() {
+        ReflectionTestUtils.setField(profilingService, "dir", dir.toString());
+
+        assertThrows(IllegalArgumentException.class, () -> profilingService.start("unknown", null));
+        assertThrows(IllegalArgumentException.class, () -> profilingService.start("default", Duration.ZERO));
+        assertFalse(profilingService.status().isRunning());
+    }
+
+    @Test
+    void keepsOnlyLastRecordings() throws Exception {
+        ReflectionTestUtils.setField(profilingService, "dir", dir.toString());
+        ReflectionTestUtils.setField(profilingService, "maxFiles", 3);
+        for (int day = 1; day <= 4; day++) {
+            Files.write(dir.resolve("analyzer-2020010" + day + "-000000-default.jfr"), new byte[10]);
+        }
+        Path foreign = Files.write(dir.resolve("notes.jfr"), new byte[10]);
+
+        profilingService.start("default", null);
+        Path current = profilingService.stop();
+
+        List<String> names;
+        try (Stream<Path> files = Files.list(dir)) {
+            names = files.map(path -> path.getFileName().toString()).sorted().toList();
+        }
+        assertEquals(List.of("analyzer-20200103-000000-default.jfr", "analyzer-20200104-000000-default.jfr",
+                current.getFileName().toString(), "notes.jfr"), names);
+        assertTrue(Files.exists(foreign));
+    }
+
+    @Test
+    void fileAnalysisEventRecordsStagesWhenEnabled() throws Exception {
+        Path file = dir.resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(FILE_EVENT).withThreshold(Duration.ZERO);
+            recording.enable(FORMAT_EVENT).withThreshold(Duration.ZERO);
+            recording.start();
+
+            FileAnalysisEvent event = FileAnalysisEvent.start("a.png", 1234);
+            event.format = "PNG";
+            Thread.sleep(2);
+            event.decodeTime = event.stage();
+            event.fail(new IllegalStateException("broken"));
+            event.finish();
+
+            ImageMetadata metadata = new ImageMetadata("a.png");
+            metadata.setFormat("PNG");
+            FormatAnalysisEvent formatEvent = FormatAnalysisEvent.start(metadata, "compression", 1234);
+            formatEvent.finish();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent fileEvent = events.stream().filter(e -> e.getEventType().getName().equals(FILE_EVENT)).findFirst().orElseThrow();
+        assertEquals("a.png", fileEvent.getString("filename"));
+        assertEquals("PNG", fileEvent.getString("format"));
+        assertEquals(1234, fileEvent.getLong("fileSize"));
+        assertTrue(fileEvent.getDuration("decodeTime").toMillis() >= 2);
+        assertEquals("IllegalStateException: broken", fileEvent.getString("error"));
+
+        RecordedEvent formatRecorded = events.stream().filter(e -> e.getEventType().getName().equals(FORMAT_EVENT)).findFirst().orElseThrow();
+        assertEquals("compression", formatRecorded.getString("stage"));
+    }
+
+    @Test
+    void eventStartedWithoutRecordingStaysEmptyWhenRecordingStartsMidAnalysis() throws Exception {
+        FileAnalysisEvent event = FileAnalysisEvent.start("late.png", 10);
+        assertEquals(0, event.stage());
+
+        Path file = dir.resolve("late.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(FILE_EVENT).withThreshold(Duration.ZERO);
+            recording.start();
+
+            // Флаг взят в start(): без begin() событие не записывается и этапы не считаются
+            assertEquals(0, event.stage());
+            event.finish();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        assertTrue(RecordingFile.readAllEvents(file).stream()
+                .noneMatch(e -> e.getEventType().getName().equals(FILE_EVENT)));
+    }
+}
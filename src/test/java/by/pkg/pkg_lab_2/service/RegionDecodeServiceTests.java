@@ -0,0 +1,177 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ImageLayout;
+import by.pkg.pkg_lab_2.model.ImageRegion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionDecodeServiceTests {
+
+    @TempDir
+    Path tempDir;
+
+    private final RegionDecodeService service = new RegionDecodeService();
+    private final BufferedImage source = createImage(300, 200);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "imageReaderPool", new ImageReaderPool());
+        ReflectionTestUtils.setField(service, "fileTimeout", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(service, "maxAllocation", DataSize.ofMegabytes(256));
+        ReflectionTestUtils.setField(service, "maxPixels", 1_000_000_000L);
+        ReflectionTestUtils.setField(service, "maxOutputPixels", 16_777_216L);
+    }
+
+    @Test
+    void decodesRegionOfTiledTiffAtImageEdge() throws Exception {
+        Path file = writeTiff("tiled.tif", true, source);
+
+        ImageRegion region = decode(file, new Rectangle(250, 150, 50, 50), 2, 0);
+
+        assertEquals(25, region.getOutputWidth());
+        assertEquals(25, region.getOutputHeight());
+        assertPixels(region, 250, 150, 2, source);
+    }
+
+    @Test
+    void decodesSubsampledRegionOfStrippedTiff() throws Exception {
+        Path file = writeTiff("strips.tif", false, source);
+
+        ImageRegion region = decode(file, new Rectangle(37, 101, 200, 90), 3, 0);
+
+        assertEquals(67, region.getOutputWidth());
+        assertEquals(30, region.getOutputHeight());
+        assertPixels(region, 37, 101, 3, source);
+    }
+
+    @Test
+    void zeroSizeExtendsRegionToImageEdge() throws Exception {
+        Path file = writeTiff("strips.tif", false, source);
+
+        ImageRegion region = decode(file, new Rectangle(280, 190, 0, 0), 1, 0);
+
+        assertEquals(20, region.getWidth());
+        assertEquals(10, region.getHeight());
+        assertPixels(region, 280, 190, 1, source);
+    }
+
+    @Test
+    void choosesStepFromMaxSizeAndOutputLimit() throws Exception {
+        Path file = writeTiff("strips.tif", false, source);
+
+        assertEquals(3, decode(file, null, 0, 100).getSubsampling());
+
+        ReflectionTestUtils.setField(service, "maxOutputPixels", 1_000L);
+        ImageRegion limited = decode(file, null, 1, 0);
+        assertTrue((long) limited.getOutputWidth() * limited.getOutputHeight() <= 1_000);
+        assertEquals(limited.getSubsampling(), (300 + limited.getOutputWidth() - 1) / limited.getOutputWidth());
+    }
+
+    @Test
+    void readsOverviewFromReducedResolutionLevel() throws Exception {
+        BufferedImage reduced = createImage(75, 50);
+        Path file = writeTiff("pyramid.tif", true, source, reduced);
+
+        ImageLayout layout = service.getLayout(file);
+        assertEquals(2, layout.getLevels().size());
+        assertEquals(75, layout.getLevels().get(1).getWidth());
+        assertEquals(64, layout.getLevels().get(0).getBlockWidth());
+
+        ImageRegion region = decode(file, null, 0, 75);
+        assertEquals(1, region.getLevel());
+        assertEquals(4, region.getSubsampling());
+        assertPixels(region, 0, 0, 1, reduced);
+
+        // Без субдискретизации читается полное изображение
+        assertEquals(0, decode(file, new Rectangle(10, 10, 20, 20), 1, 0).getLevel());
+    }
+
+    @Test
+    void rejectsRegionOutsideImage() throws Exception {
+        Path file = writeTiff("strips.tif", false, source);
+
+        assertThrows(IllegalArgumentException.class, () -> decode(file, new Rectangle(300, 0, 10, 10), 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> decode(file, new Rectangle(-1, 0, 10, 10), 1, 0));
+    }
+
+    private ImageRegion decode(Path file, Rectangle region, int subsampling, int maxSize) throws Exception {
+        AnalysisDeadline deadline = new AnalysisDeadline(Duration.ofSeconds(30), 0);
+        return service.decode(file, region, subsampling, maxSize, "png", deadline);
+    }
+
+    private static void assertPixels(ImageRegion region, int x0, int y0, int step, BufferedImage expected) throws Exception {
+        BufferedImage actual = ImageIO.read(new ByteArrayInputStream(region.getData()));
+        assertNotNull(actual);
+        for (int y = 0; y < actual.getHeight(); y++) {
+            for (int x = 0; x < actual.getWidth(); x++) {
+                assertEquals(expected.getRGB(x0 + x * step, y0 + y * step) & 0xFFFFFF, actual.getRGB(x, y) & 0xFFFFFF,
+                        "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    // Уникальный цвет каждого пикселя
+    private static BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x << 12) | (y << 1) | (width & 1));
+            }
+        }
+        return image;
+    }
+
+    // Deflate, тайлы 64×64 или полосы по умолчанию; каждое следующее изображение - отдельный IFD
+    private Path writeTiff(String name, boolean tiled, BufferedImage... images) throws Exception {
+        ImageWriter writer = null;
+        for (Iterator<ImageWriter> it = ImageIO.getImageWritersByFormatName("tiff"); it.hasNext(); ) {
+            ImageWriter candidate = it.next();
+            if (candidate.getDefaultWriteParam().canWriteTiles()) {
+                writer = candidate;
+                break;
+            }
+        }
+        assertNotNull(writer);
+
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionType("Deflate");
+        if (tiled) {
+            param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setTiling(64, 64, 0, 0);
+        }
+
+        Path file = tempDir.resolve(name);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            writer.prepareWriteSequence(null);
+            for (BufferedImage image : images) {
+                writer.writeToSequence(new IIOImage(image, null, null), param);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,54 @@
+package by.pkg.pkg_lab_2.service;
+
+import by.pkg.pkg_lab_2.model.ImageMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TifAnalyzerServiceTests {
+
+    @Test
+    void readsSameTagsInBothByteOrders() {
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            ByteBuffer tiff = tiff(order);
+            ImageMetadata metadata = new ImageMetadata("a.tif");
+
+            TifAnalyzerService.analyze(tiff, metadata);
+
+            Map<String, String> info = metadata.getAdditionalInfo();
+            assertEquals(order == ByteOrder.LITTLE_ENDIAN ? "Little endian" : "Big endian", info.get("Порядок байт"));
+            assertEquals("300 px", info.get("Ширина"), order.toString());
+            assertEquals("70000 px", info.get("Высота"), order.toString());
+            assertEquals("8+8 bit", info.get("Глубина цвета"), order.toString());
+            assertEquals("Deflate", info.get("Сжатие"), order.toString());
+            assertEquals("BlackIsZero (Grayscale)", info.get("Цветовое пространство"), order.toString());
+            assertEquals("Сантиметр", info.get("Единицы разрешения"), order.toString());
+            assertEquals("Deflate", TifAnalyzerService.analyzeCompressionType(tiff), order.toString());
+        }
+    }
+
+    // Значения помещаются в запись IFD: SHORT и пара SHORT выровнены по началу поля значения
+    private static ByteBuffer tiff(ByteOrder order) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 2 + 6 * 12 + 4).order(order);
+        buffer.put(order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M');
+        buffer.put(order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M');
+        buffer.putShort((short) 42).putInt(8);
+        buffer.putShort((short) 6);
+        entry(buffer, 256, 3, 1).putShort((short) 300).putShort((short) 0);
+        entry(buffer, 257, 4, 1).putInt(70000);
+        entry(buffer, 258, 3, 2).putShort((short) 8).putShort((short) 8);
+        entry(buffer, 259, 3, 1).putShort((short) 8).putShort((short) 0);
+        entry(buffer, 262, 3, 1).putShort((short) 1).putShort((short) 0);
+        entry(buffer, 296, 3, 1).putShort((short) 3).putShort((short) 0);
+        buffer.putInt(0);
+        return buffer.flip();
+    }
+
+    private static ByteBuffer entry(ByteBuffer buffer, int tag, int type, int count) {
+        return buffer.putShort((short) tag).putShort((short) type).putInt(count);
+    }
+}